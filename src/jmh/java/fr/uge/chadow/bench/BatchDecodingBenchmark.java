@@ -0,0 +1,106 @@
+package fr.uge.chadow.bench;
+
+import fr.uge.chadow.core.protocol.YellMessage;
+import fr.uge.chadow.core.protocol.client.NeedChunk;
+import fr.uge.chadow.core.reader.ArrayReader;
+import fr.uge.chadow.core.reader.FrameReader;
+import fr.uge.chadow.core.reader.IntReader;
+import fr.uge.chadow.core.reader.Reader;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.LogManager;
+
+/**
+ * Decode a full input buffer of small frames, the way a context drains its bufferIn
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+@State(Scope.Thread)
+public class BatchDecodingBenchmark {
+  private static final int BUFFER_SIZE = 16 * 1024;
+  private static final int INTS = 1024;
+
+  private byte[] frames;
+  private byte[] ints;
+  private ByteBuffer input;
+  private FrameReader reader;
+
+  static byte[] frames() {
+    var bb = ByteBuffer.allocate(BUFFER_SIZE);
+    for (int i = 0; ; i++) {
+      var frame = (i % 2 == 0 ? new NeedChunk(i * 4096L, 4096) : new YellMessage("login", "hi", i)).toByteBuffer().flip();
+      if (frame.remaining() > bb.remaining()) {
+        break;
+      }
+      bb.put(frame);
+    }
+    var bytes = new byte[bb.position()];
+    bb.flip().get(bytes);
+    return bytes;
+  }
+
+  @Setup
+  public void setup() {
+    // the frame reader logs every opcode
+    LogManager.getLogManager().reset();
+    frames = frames();
+    var bb = ByteBuffer.allocate(Integer.BYTES * (INTS + 1)).putInt(INTS);
+    for (int i = 0; i < INTS; i++) {
+      bb.putInt(i);
+    }
+    ints = bb.array();
+    input = ByteBuffer.allocate(BUFFER_SIZE);
+    reader = new FrameReader();
+  }
+
+  /**
+   * One compact of the input buffer per frame
+   */
+  @Benchmark
+  public int compactPerFrame() {
+    input.clear().put(frames);
+    int count = 0;
+    while (input.position() > 0) {
+      if (reader.process(input) != Reader.ProcessStatus.DONE) {
+        throw new AssertionError();
+      }
+      reader.reset();
+      count++;
+    }
+    return count;
+  }
+
+  /**
+   * All the frames are read in read-mode, one compact at the end
+   */
+  @Benchmark
+  public int compactPerBatch() {
+    input.clear().put(frames);
+    input.flip();
+    int count = 0;
+    while (input.hasRemaining()) {
+      if (reader.read(input) != Reader.ProcessStatus.DONE) {
+        throw new AssertionError();
+      }
+      reader.reset();
+      count++;
+    }
+    input.compact();
+    return count;
+  }
+
+  @Benchmark
+  public Object arrayOfInts() {
+    input.clear().put(ints);
+    var arrayReader = new ArrayReader<>(new IntReader(), Integer.class);
+    if (arrayReader.process(input) != Reader.ProcessStatus.DONE) {
+      throw new AssertionError();
+    }
+    return arrayReader.get();
+  }
+}
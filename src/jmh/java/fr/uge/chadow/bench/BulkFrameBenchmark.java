@@ -0,0 +1,100 @@
+package fr.uge.chadow.bench;
+
+import fr.uge.chadow.core.protocol.Frame;
+import fr.uge.chadow.core.protocol.client.HereChunk;
+import fr.uge.chadow.core.protocol.client.Hidden;
+import fr.uge.chadow.core.protocol.server.SearchResponse;
+import fr.uge.chadow.core.reader.DecodingBudget;
+import fr.uge.chadow.core.reader.FrameReader;
+import fr.uge.chadow.core.reader.Reader;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.LogManager;
+
+/**
+ * Search responses with many results and chunks wrapped in Hidden envelopes
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+public class BulkFrameBenchmark {
+
+  @State(Scope.Thread)
+  public static class Search {
+    @Param({"100", "10000"})
+    public int results;
+
+    private SearchResponse response;
+    private byte[] bytes;
+    private FrameReader reader;
+    private ByteBuffer input;
+
+    @Setup
+    public void setup() {
+      LogManager.getLogManager().reset();
+      response = SampleFrames.searchResponse(results);
+      bytes = CodecBenchmark.encode(response);
+      reader = new FrameReader(DecodingBudget.of(Long.MAX_VALUE));
+      input = ByteBuffer.allocate(CodecBenchmark.CONTEXT_BUFFER_SIZE);
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class Envelope {
+    @Param({"4096", "131072", "1048576"})
+    public int chunkSize;
+
+    private HereChunk chunk;
+    private byte[] bytes;
+    private FrameReader outer;
+    private FrameReader inner;
+    private ByteBuffer input;
+
+    @Setup
+    public void setup() {
+      LogManager.getLogManager().reset();
+      chunk = new HereChunk(0L, new byte[chunkSize]);
+      bytes = CodecBenchmark.encode(new Hidden(42, chunk.toByteBuffer().array()));
+      outer = new FrameReader(DecodingBudget.of(Long.MAX_VALUE));
+      inner = new FrameReader(DecodingBudget.of(Long.MAX_VALUE));
+      input = ByteBuffer.allocate(CodecBenchmark.CONTEXT_BUFFER_SIZE);
+    }
+  }
+
+  @Benchmark
+  public ByteBuffer encodeSearchResponse(Search state) {
+    return state.response.toByteBuffer();
+  }
+
+  @Benchmark
+  public Frame decodeSearchResponseFragmented(Search state) {
+    state.reader.reset();
+    return CodecBenchmark.decodeFragmented(state.reader, state.input, state.bytes);
+  }
+
+  /**
+   * What a sharer behind a proxy chain does: the chunk frame, then its envelope
+   */
+  @Benchmark
+  public ByteBuffer encodeHidden(Envelope state) {
+    return new Hidden(42, state.chunk.toByteBuffer().array()).toByteBuffer();
+  }
+
+  /**
+   * What a downloader behind a proxy chain does: the envelope as it arrives, then the chunk inside
+   */
+  @Benchmark
+  public Frame decodeHiddenFragmented(Envelope state) {
+    state.outer.reset();
+    var hidden = (Hidden) CodecBenchmark.decodeFragmented(state.outer, state.input, state.bytes);
+    state.inner.reset();
+    if (state.inner.read(ByteBuffer.wrap(hidden.payload())) != Reader.ProcessStatus.DONE) {
+      throw new AssertionError();
+    }
+    return state.inner.get();
+  }
+}
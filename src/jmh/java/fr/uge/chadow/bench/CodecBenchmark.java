@@ -0,0 +1,95 @@
+package fr.uge.chadow.bench;
+
+import fr.uge.chadow.core.protocol.Frame;
+import fr.uge.chadow.core.protocol.Opcode;
+import fr.uge.chadow.core.reader.DecodingBudget;
+import fr.uge.chadow.core.reader.FrameReader;
+import fr.uge.chadow.core.reader.Reader;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.LogManager;
+
+/**
+ * Encode and decode a representative frame of every opcode.
+ * <p>
+ * decodeFragmented feeds the frame through a buffer of the size of the input buffer
+ * of the contexts, as it arrives from the network.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+@State(Scope.Thread)
+public class CodecBenchmark {
+  static final int CONTEXT_BUFFER_SIZE = 1024;
+
+  @Param // every opcode
+  public Opcode opcode;
+
+  private Frame frame;
+  private byte[] bytes;
+  private FrameReader reader;
+  private ByteBuffer input;
+
+  static byte[] encode(Frame frame) {
+    var bb = frame.toByteBuffer().flip();
+    return Arrays.copyOf(bb.array(), bb.limit());
+  }
+
+  /**
+   * Decode a frame arriving in pieces of the size of the input buffer
+   *
+   * @param reader the reader, reset
+   * @param input  the input buffer, in write-mode
+   * @param bytes  the encoded frame
+   * @return the frame
+   */
+  static Frame decodeFragmented(FrameReader reader, ByteBuffer input, byte[] bytes) {
+    input.clear();
+    var status = Reader.ProcessStatus.REFILL;
+    for (int i = 0; i < bytes.length; ) {
+      var length = Math.min(input.remaining(), bytes.length - i);
+      input.put(bytes, i, length);
+      i += length;
+      status = reader.process(input);
+    }
+    if (status != Reader.ProcessStatus.DONE) {
+      throw new AssertionError(status);
+    }
+    return reader.get();
+  }
+
+  @Setup
+  public void setup() {
+    // the codec logs every frame
+    LogManager.getLogManager().reset();
+    frame = SampleFrames.sample(opcode);
+    bytes = encode(frame);
+    reader = new FrameReader(DecodingBudget.of(Long.MAX_VALUE));
+    input = ByteBuffer.allocate(CONTEXT_BUFFER_SIZE);
+  }
+
+  @Benchmark
+  public ByteBuffer encode() {
+    return frame.toByteBuffer();
+  }
+
+  @Benchmark
+  public Frame decode() {
+    reader.reset();
+    if (reader.read(ByteBuffer.wrap(bytes)) != Reader.ProcessStatus.DONE) {
+      throw new AssertionError();
+    }
+    return reader.get();
+  }
+
+  @Benchmark
+  public Frame decodeFragmented() {
+    reader.reset();
+    return decodeFragmented(reader, input, bytes);
+  }
+}
@@ -0,0 +1,81 @@
+package fr.uge.chadow.bench;
+
+import fr.uge.chadow.core.protocol.CodexAssembler;
+import fr.uge.chadow.core.protocol.CodexSegment;
+import fr.uge.chadow.core.protocol.Frame;
+import fr.uge.chadow.core.protocol.client.Propose;
+import fr.uge.chadow.core.protocol.field.Codex;
+import fr.uge.chadow.core.reader.DecodingBudget;
+import fr.uge.chadow.core.reader.FrameReader;
+import fr.uge.chadow.core.reader.Reader;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.LogManager;
+
+/**
+ * Codex metadata, sent whole in a Propose or split in deflated segments
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--enable-preview", "-Xmx2g"})
+@State(Scope.Thread)
+public class CodexBenchmark {
+  @Param({"10", "1000", "100000"})
+  public int files;
+
+  private Codex codex;
+  private Propose propose;
+  private byte[] bytes;
+  private CodexSegment[] segments;
+  private FrameReader reader;
+  private ByteBuffer input;
+
+  @Setup
+  public void setup() {
+    LogManager.getLogManager().reset();
+    codex = SampleFrames.codex(files);
+    propose = new Propose(codex);
+    bytes = CodecBenchmark.encode(propose);
+    segments = CodexSegment.split(codex);
+    reader = new FrameReader(DecodingBudget.of(Long.MAX_VALUE));
+    input = ByteBuffer.allocate(CodecBenchmark.CONTEXT_BUFFER_SIZE);
+  }
+
+  @Benchmark
+  public ByteBuffer encodePropose() {
+    return propose.toByteBuffer();
+  }
+
+  @Benchmark
+  public Frame decodePropose() {
+    reader.reset();
+    if (reader.read(ByteBuffer.wrap(bytes)) != Reader.ProcessStatus.DONE) {
+      throw new AssertionError();
+    }
+    return reader.get();
+  }
+
+  @Benchmark
+  public Frame decodeProposeFragmented() {
+    reader.reset();
+    return CodecBenchmark.decodeFragmented(reader, input, bytes);
+  }
+
+  @Benchmark
+  public CodexSegment[] splitSegments() {
+    return CodexSegment.split(codex);
+  }
+
+  @Benchmark
+  public Codex assembleSegments() {
+    var assembler = new CodexAssembler(segments[0]);
+    for (var segment : segments) {
+      assembler.add(segment);
+    }
+    return assembler.codex();
+  }
+}
@@ -0,0 +1,47 @@
+package fr.uge.chadow.bench;
+
+import fr.uge.chadow.core.protocol.Opcode;
+import fr.uge.chadow.core.reader.ByteReader;
+import fr.uge.chadow.core.reader.FrameReader;
+import fr.uge.chadow.core.reader.Reader;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.LogManager;
+
+/**
+ * The frame decoding state of a new connection. The state is kept as long as the connection,
+ * the bytes allocated per operation reported by the gc profiler are its footprint.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+@State(Scope.Thread)
+public class ConnectionFootprintBenchmark {
+  @Setup
+  public void setup() {
+    LogManager.getLogManager().reset();
+    // the shared decoding tables are built before measuring
+    new FrameReader();
+  }
+
+  /**
+   * The decoding state a connection used to carry: one reflective reader per opcode
+   */
+  @Benchmark
+  public Object reflectiveReadersPerOpcode() {
+    var readers = new HashMap<Opcode, Reader<?>>();
+    for (var opcode : Opcode.values()) {
+      readers.put(opcode, new ReflectiveGlobalReader<>(opcode.getDecoder().recordClass()));
+    }
+    return new Object[]{new ByteReader(), readers};
+  }
+
+  @Benchmark
+  public Object sharedTablesAndCursor() {
+    return new FrameReader();
+  }
+}
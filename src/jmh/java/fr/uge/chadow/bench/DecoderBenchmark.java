@@ -0,0 +1,95 @@
+package fr.uge.chadow.bench;
+
+import fr.uge.chadow.core.protocol.Frame;
+import fr.uge.chadow.core.protocol.YellMessage;
+import fr.uge.chadow.core.protocol.client.HereChunk;
+import fr.uge.chadow.core.protocol.client.Propose;
+import fr.uge.chadow.core.protocol.field.Codex;
+import fr.uge.chadow.core.protocol.server.SearchResponse;
+import fr.uge.chadow.core.reader.GlobalReader;
+import fr.uge.chadow.core.reader.Reader;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.LogManager;
+import java.util.stream.IntStream;
+
+/**
+ * Compare the compiled record decoders of GlobalReader with the former reflective reader,
+ * on the payload of a frame without its opcode
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+@State(Scope.Thread)
+public class DecoderBenchmark {
+  public enum Sample {
+    YELL, PROPOSE, SEARCH_RESPONSE, HERE_CHUNK;
+
+    Frame frame() {
+      return switch (this) {
+        case YELL -> new YellMessage("login", "a short message to everyone", 42L);
+        case PROPOSE -> new Propose(new Codex("codex-id", "codex name", IntStream.range(0, 64)
+                .mapToObj(i -> new Codex.FileInfo(STR."file-id-\{i}", STR."file\{i}.txt", 1024L * i, "some/relative/path"))
+                .toArray(Codex.FileInfo[]::new)));
+        case SEARCH_RESPONSE -> new SearchResponse(IntStream.range(0, 50)
+                .mapToObj(i -> new SearchResponse.Result(STR."codex\{i}", STR."codex-id-\{i}", 42L * i, i))
+                .toArray(SearchResponse.Result[]::new));
+        case HERE_CHUNK -> new HereChunk(0L, new byte[4 * 1024]);
+      };
+    }
+  }
+
+  @Param
+  public Sample sample;
+
+  private byte[] payload;
+  private ByteBuffer input;
+  private Reader<?> compiled;
+  private Reader<?> reflective;
+
+  /**
+   * The encoded frame, without its opcode
+   */
+  static byte[] payload(Frame frame) {
+    var bb = frame.toByteBuffer().flip();
+    bb.get();
+    var bytes = new byte[bb.remaining()];
+    bb.get(bytes);
+    return bytes;
+  }
+
+  static Object decode(Reader<?> reader, ByteBuffer input, byte[] payload) {
+    input.clear().put(payload);
+    reader.reset();
+    if (reader.process(input) != Reader.ProcessStatus.DONE) {
+      throw new AssertionError();
+    }
+    return reader.get();
+  }
+
+  @Setup
+  @SuppressWarnings("unchecked")
+  public void setup() {
+    LogManager.getLogManager().reset();
+    var frame = sample.frame();
+    var recordClass = (Class<? extends Record>) frame.getClass();
+    payload = payload(frame);
+    input = ByteBuffer.allocate(payload.length);
+    compiled = new GlobalReader<>(recordClass);
+    reflective = new ReflectiveGlobalReader<>(recordClass);
+  }
+
+  @Benchmark
+  public Object compiled() {
+    return decode(compiled, input, payload);
+  }
+
+  @Benchmark
+  public Object reflective() {
+    return decode(reflective, input, payload);
+  }
+}
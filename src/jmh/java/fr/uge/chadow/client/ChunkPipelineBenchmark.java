@@ -0,0 +1,43 @@
+package fr.uge.chadow.client;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.LogManager;
+
+/**
+ * Transfer a codex through the chunk upload/download hot path, see ChunkPipeline.
+ * With the gc profiler, the bytes allocated per operation divided by the number of chunks
+ * is the allocation per chunk, bounded by ChunkPipeline.allocationBudget and checked by ChunkPipelineTest.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+@State(Scope.Thread)
+public class ChunkPipelineBenchmark {
+  private static final long CODEX_SIZE = 64L * 1024 * 1024;
+
+  @Param({"4096", "65536", "131072", "524288", "1048576"})
+  public int chunkSize;
+
+  private ChunkPipeline pipeline;
+
+  @Setup
+  public void setup() throws IOException {
+    LogManager.getLogManager().reset();
+    pipeline = new ChunkPipeline(CODEX_SIZE);
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    pipeline.close();
+  }
+
+  @Benchmark
+  public int transfer() throws IOException {
+    return pipeline.transfer(chunkSize);
+  }
+}
@@ -74,7 +74,31 @@ public class Main {
             
           --newSocketRequestTimeout:<int>
             Timeout in second after which new sockets a requested for current downloads.
+            Open downloads get their new sharers pushed by the server, only hidden downloads are concerned.
             Default is 1 minute.
+            
+          --peerExchange:<boolean>
+            Exchange the addresses of known sharers with the peers in open mode.
+            Default is true.
+            
+          --uploadSlots:<int>
+            Number of downloaders you are willing to share with at the same time, reported to the server
+            with your upload rate so that it sends the downloaders to the least loaded sharers.
+            Default is 8.
+            
+          --loadReportInterval:<int>
+            Time in second between two load reports to the server.
+            Default is 10 seconds.
+            
+          --decodingBudget:<int>
+            Memory in Kb a connection may use for the frames it receives and the state kept between them
+            (codexes received in segments, frames waiting for a proxy). A connection over its budget is closed.
+            Default is 65536 Kb.
+            
+          --opcodeBudgets:<OPCODE/int,OPCODE/int,...>
+            Memory in Kb a single frame of an opcode may use, bounded by the decodingBudget.
+            e.g. SEARCH_RESPONSE/1024,HIDDEN/512. By default the bulk frames may use the whole
+            decodingBudget and the other frames 64 Kb.
              
        [Server]
           In order to start the app as a Chadow server the first parameter must be --server
@@ -86,18 +110,105 @@ public class Main {
           --maxLoginLength:<int>
             Maximum length of a username.
             Default is 16.
+            
+          --internCache:<int>
+            Number of decoded logins and codex ids kept to be reused instead of allocated again.
+            0 disables the cache. Default is 4096.
+            
+          --searchCache:<int>
+            Number of recent searches whose first results are kept, to answer them again
+            without searching. 0 disables the cache. Default is 1024.
+            
+          --presenceInterval:<int>
+            Period, in milliseconds, of the digest of the users that joined and left
+            sent to every client. Default is 250.
+            
+          --directoryLog:<int>
+            Number of logins and logouts kept for the clients to fetch the changes of the
+            user directory since their last sync. A client further behind fetches the whole
+            directory again. Default is 65536.
+            
+          --cluster:<host/port,host/port,...>
+            Run the server as a node of a cluster, the addresses of every node (this one included)
+            in the same order on every node. The codexes are split between the nodes by their id,
+            the clients can connect to any node. Disabled by default.
+            
+          --node:<int>
+            Index of this server in the addresses of the cluster. Default is 0.
+            
+          --clusterTimeout:<int>
+            How long, in milliseconds, a node waits for the answer of another node. Default is 2000.
+            
+          --decodingBudget:<int>
+            Memory in Kb a connection may use for the frames it receives and the state kept between them
+            (codexes received in segments, frames waiting for a proxy). A connection over its budget is closed.
+            Default is 65536 Kb.
+            
+          --opcodeBudgets:<OPCODE/int,OPCODE/int,...>
+            Memory in Kb a single frame of an opcode may use, bounded by the decodingBudget.
+            e.g. SEARCH_RESPONSE/1024,HIDDEN/512. By default the bulk frames may use the whole
+            decodingBudget and the other frames 64 Kb.
+            
+          --capture:<path>
+            Record every frame received, with its time and connection, in a binary log
+            that can be replayed against a test server. Disabled by default.
           
         """;
     System.out.println(str);
   }
   
-  private static void server(String[] args) throws IOException {
-    // parse args
-    var sp = new SettingsParser()
+  /**
+   * The settings of a server, with their default values
+   */
+  public static SettingsParser serverSettings() {
+    return new SettingsParser()
         .addAsInt("port", 7777)
         .addAsInt("maxLoginLength", 16)
+        .addAsInt("internCache", 4096)
+        .addAsInt("searchCache", 1024)
+        .addAsInt("presenceInterval", 250) // milliseconds
+        .addAsInt("directoryLog", 65536)
+        .addAsString("cluster", "")
+        .addAsInt("node", 0)
+        .addAsInt("clusterTimeout", 2000) // milliseconds
+        .addAsInt("decodingBudget", 64 * 1024) // KiB
+        .addAsString("opcodeBudgets", "")
+        .addAsString("capture", "")
         .addAsString("downloadPath", Settings.defaultDownloadPath())
         .addAsBoolean("log", false);
+  }
+  
+  /**
+   * The settings of a client, with their default values
+   */
+  public static SettingsParser clientSettings() {
+    return new SettingsParser()
+        .addAsString("login", Settings.randomLogin())
+        .addAsString("hostname", "localhost")
+        .addAsInt("port", 7777)
+        .addAsInt("y", 30)
+        .addAsInt("x", 80)
+        .addAsInt("sharersRequired", 5)
+        .addAsInt("proxyChainSize", 1)
+        .addAsBoolean("debug", false)
+        .addAsInt("chunkSize", 128) // 128KB
+        .addAsInt("maxAcceptedChunkSize", 512) // 512KB
+        .addAsInt("requestCodexTimeout", 5)
+        .addAsInt("downloadRequestTimeout", 5)
+        .addAsInt("searchTimeout", 5)
+        .addAsInt("newSocketRequestTimeout", 60)
+        .addAsBoolean("peerExchange", true)
+        .addAsInt("uploadSlots", 8)
+        .addAsInt("loadReportInterval", 10)
+        .addAsInt("decodingBudget", 64 * 1024) // KiB
+        .addAsString("opcodeBudgets", "")
+        .addAsString("downloadPath", Settings.defaultDownloadPath())
+        .addAsBoolean("log", false);
+  }
+  
+  private static void server(String[] args) throws IOException {
+    // parse args
+    var sp = serverSettings();
     
     Settings settings = null;
     var settingString = String.join("", args);
@@ -117,23 +228,7 @@ public class Main {
   
   private static void client(String[] args) throws IOException {
     // parse args
-    var sp = new SettingsParser()
-        .addAsString("login", Settings.randomLogin())
-        .addAsString("hostname", "localhost")
-        .addAsInt("port", 7777)
-        .addAsInt("y", 30)
-        .addAsInt("x", 80)
-        .addAsInt("sharersRequired", 5)
-        .addAsInt("proxyChainSize", 1)
-        .addAsBoolean("debug", false)
-        .addAsInt("chunkSize", 128) // 128KB
-        .addAsInt("maxAcceptedChunkSize", 512) // 512KB
-        .addAsInt("requestCodexTimeout", 5)
-        .addAsInt("downloadRequestTimeout", 5)
-        .addAsInt("searchTimeout", 5)
-        .addAsInt("newSocketRequestTimeout", 60)
-        .addAsString("downloadPath", Settings.defaultDownloadPath())
-        .addAsBoolean("log", false);
+    var sp = clientSettings();
     
     Settings settings = null;
     var settingString = String.join("", args);
@@ -5,21 +5,31 @@ import fr.uge.chadow.core.Settings;
 import fr.uge.chadow.core.ProxyManager;
 import fr.uge.chadow.core.context.*;
 import fr.uge.chadow.core.TCPConnectionManager;
+import fr.uge.chadow.core.protocol.CodexSegment;
 import fr.uge.chadow.core.protocol.WhisperMessage;
 import fr.uge.chadow.core.protocol.YellMessage;
+import fr.uge.chadow.core.protocol.client.Announce;
+import fr.uge.chadow.core.protocol.client.DirectorySync;
+import fr.uge.chadow.core.protocol.client.LoadReport;
 import fr.uge.chadow.core.protocol.client.Propose;
 import fr.uge.chadow.core.protocol.client.Request;
 import fr.uge.chadow.core.protocol.client.RequestDownload;
 import fr.uge.chadow.core.protocol.client.Search;
+import fr.uge.chadow.core.protocol.client.Subscribe;
 import fr.uge.chadow.core.protocol.field.Codex;
 import fr.uge.chadow.core.protocol.field.ProxyNodeSocket;
 import fr.uge.chadow.core.protocol.field.SocketField;
+import fr.uge.chadow.core.protocol.server.CodexCandidates;
+import fr.uge.chadow.core.protocol.server.DirectoryDelta;
+import fr.uge.chadow.core.protocol.server.DirectoryPage;
 import fr.uge.chadow.core.protocol.server.SearchResponse;
+import fr.uge.chadow.core.reader.DecodingBudget;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
 import java.security.NoSuchAlgorithmException;
 import java.util.*;
 import java.util.concurrent.ArrayBlockingQueue;
@@ -43,19 +53,30 @@ public class ClientAPI {
   private final InetSocketAddress serverAddress;
   private final ArrayList<YellMessage> publicMessages = new ArrayList<>();
   private final HashMap<UUID, DirectMessages> directMessages = new HashMap<>();
-  private final SortedSet<String> users = new TreeSet<>();
+  private final KnownUsers users = new KnownUsers();
   private final Settings settings;
+  private final DecodingBudget decodingBudget; // of every connection
   private final ProxyManager proxyManager = new ProxyManager();
 
   // Blocking Queue that will contain the fetched codex
-  private final ArrayBlockingQueue<Optional<Codex>> requestCodexResponseQueue = new ArrayBlockingQueue<>(1);
+  private final ArrayBlockingQueue<Optional<CodexStatus>> requestCodexResponseQueue = new ArrayBlockingQueue<>(1);
+  // codexes being received in segments
+  private final HashMap<String, CodexStatus.Builder> fetchingCodexes = new HashMap<>();
 
   // Manage request and answer of open download -- Maybe change the way to handle this
   private final LinkedBlockingQueue<SocketResponse> sharersSocketQueue = new LinkedBlockingQueue<>();
   private final ArrayDeque<String> codexIdOfAskedDownload = new ArrayDeque<>();
   private final HashMap<String, Set<InetSocketAddress>> currentDownloads = new HashMap<>();
-  private final HashMap<String, Integer> currentSharing = new HashMap<>();
+  private final HashMap<String, Set<DownloaderContext>> downloaders = new HashMap<>();
+  private final HashMap<String, Set<ClientAsServerContext>> currentSharing = new HashMap<>();
+  // open downloads for which the server pushes the new sharers
+  private final HashSet<String> subscribedCodexes = new HashSet<>();
+  // sharers learned from the server and from peer exchange, oldest first
+  private static final int MAX_KNOWN_SHARERS = 256;
+  private final HashMap<String, LinkedHashSet<InetSocketAddress>> knownSharers = new HashMap<>();
   private int proxyiedConnection = 0;
+  // bytes of chunks queued to the downloaders since the last load report
+  private long uploadedBytes;
 
   // Manage request and response of search
   private final ArrayBlockingQueue<SearchResponse> searchResponseQueue = new ArrayBlockingQueue<>(1);
@@ -69,6 +90,14 @@ public class ClientAPI {
     this.serverAddress = serverAddress;
     this.codexController = codexController;
     this.settings = settings;
+    this.decodingBudget = DecodingBudget.of(settings);
+  }
+
+  /**
+   * @return the decoding budget of the connections of the client
+   */
+  public DecodingBudget decodingBudget() {
+    return decodingBudget;
   }
 
   public void startService() throws InterruptedException, IOException {
@@ -88,6 +117,7 @@ public class ClientAPI {
       }
     }
     Thread.ofPlatform().daemon().start(this::periodicSocketRequest);
+    Thread.ofPlatform().daemon().start(this::periodicLoadReport);
     startDownloaderRunner();
   }
 
@@ -148,6 +178,9 @@ public class ClientAPI {
             continue; // already downloading from this sharer
           }
           var chainId = socketResponse.chainId != null ? socketResponse.chainId[i] : null;
+          if (chainId == null) {
+            addKnownSharers(codexId, List.of(socketAddress));
+          }
           logger.info(STR."New downloader context for codex \{codexId} (sharer: \{socketField.ip()}:\{socketField.port()}) (hidden: \{chainId != null})");
           addDownloaderContext(codexId, socketField, chainId);
           sockets.add(socketAddress);
@@ -177,6 +210,10 @@ public class ClientAPI {
           toRemove.add(codexId);
           continue;
         }
+        if (isSubscribed(codexId)) {
+          // the server pushes the new sharers
+          continue;
+        }
         var downloadIsHidden = codexController.getCodexStatus(codexId).orElseThrow().isDownloadingHidden();
         requestSocketForDownload(codexId, downloadIsHidden, settings.getInt("proxyChainSize"));
       }
@@ -185,6 +222,66 @@ public class ClientAPI {
   }
 
 
+  /**
+   * Report the upload load to the server periodically,
+   * the server sends the downloaders to the sharers with spare capacity
+   */
+  private void periodicLoadReport() {
+    var interval = 1000L * settings.getInt("loadReportInterval");
+    var last = System.nanoTime();
+    while (!Thread.interrupted() && status.equals(STATUS.CONNECTED)) {
+      try {
+        Thread.sleep(interval);
+      } catch (InterruptedException e) {
+        return;
+      }
+      var now = System.nanoTime();
+      var elapsed = Math.max(1, now - last);
+      last = now;
+      LoadReport loadReport;
+      lock.lock();
+      try {
+        var uploads = activeUploads();
+        var uploadRate = (int) Math.min(Integer.MAX_VALUE, uploadedBytes / 1024 * 1_000_000_000L / elapsed);
+        uploadedBytes = 0;
+        loadReport = new LoadReport(uploads, uploadRate, Math.max(0, settings.getInt("uploadSlots") - uploads));
+        if (clientContext == null) {
+          continue;
+        }
+        clientContext.queueFrame(loadReport);
+      } finally {
+        lock.unlock();
+      }
+      logger.info(STR."Load reported: \{loadReport}");
+    }
+  }
+
+  /**
+   * Count the bytes of a chunk sent to a downloader, for the upload rate
+   *
+   * @param bytes the size of the chunk
+   */
+  public void addUploaded(int bytes) {
+    lock.lock();
+    try {
+      uploadedBytes += bytes;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @return the number of downloaders the client is sharing with, all codexes included
+   */
+  public int activeUploads() {
+    lock.lock();
+    try {
+      return currentSharing.values().stream().mapToInt(Set::size).sum();
+    } finally {
+      lock.unlock();
+    }
+  }
+
   public boolean saveProxyRoute(int chainId, SocketField socket) {
     return proxyManager.saveProxyRoute(chainId, socket);
   }
@@ -194,7 +291,7 @@ public class ClientAPI {
     if (socket.isEmpty()) {
       return false;
     }
-    connectionManager.addContext(socket.orElseThrow(), key -> new ProxyBridgeRightSideContext(key, clientAsServerContext));
+    connectionManager.addContext(socket.orElseThrow(), key -> new ProxyBridgeRightSideContext(key, clientAsServerContext, decodingBudget));
     return true;
   }
 
@@ -203,8 +300,10 @@ public class ClientAPI {
    * Update the list of sharers for the codex
    *
    * @param codexId the id of the codex
+   * @param sharerAddress the address of the sharer
+   * @param downloader the context downloading from the sharer
    */
-  public void registerDownloader(String codexId, InetSocketAddress sharerAddress) {
+  public void registerDownloader(String codexId, InetSocketAddress sharerAddress, DownloaderContext downloader) {
     lock.lock();
     try {
       if(sharerAddress == null) {
@@ -212,18 +311,24 @@ public class ClientAPI {
       }
       currentDownloads.computeIfAbsent(codexId, k -> new HashSet<>())
               .add(sharerAddress);
+      downloaders.computeIfAbsent(codexId, k -> new HashSet<>())
+              .add(downloader);
     } finally {
       lock.unlock();
     }
   }
 
-  public void unregisterDownloader(String codexId, InetSocketAddress sharerAddress) {
+  public void unregisterDownloader(String codexId, InetSocketAddress sharerAddress, DownloaderContext downloader) {
     lock.lock();
     try {
       currentDownloads.computeIfPresent(codexId, (k, v) -> {
         v.remove(sharerAddress);
         return v;
       });
+      downloaders.computeIfPresent(codexId, (k, v) -> {
+        v.remove(downloader);
+        return v.isEmpty() ? null : v;
+      });
     } finally {
       lock.unlock();
     }
@@ -246,21 +351,25 @@ public class ClientAPI {
    * Update the list of sharers for the codex
    *
    * @param codexId the id of the codex
+   * @param sharer the context sharing the codex
    */
-  public void registerSharer(String codexId) {
+  public void registerSharer(String codexId, ClientAsServerContext sharer) {
     lock.lock();
     try {
-      currentSharing.putIfAbsent(codexId, 0);
-      currentSharing.compute(codexId, (k, v) -> v + 1);
+      currentSharing.computeIfAbsent(codexId, k -> new HashSet<>())
+              .add(sharer);
     } finally {
       lock.unlock();
     }
   }
 
-  public void unregisterSharer(String codexId) {
+  public void unregisterSharer(String codexId, ClientAsServerContext sharer) {
     lock.lock();
     try {
-      currentSharing.computeIfPresent(codexId, (k, v) -> Math.max(0, v - 1));
+      currentSharing.computeIfPresent(codexId, (k, v) -> {
+        v.remove(sharer);
+        return v;
+      });
     } finally {
       lock.unlock();
     }
@@ -269,7 +378,7 @@ public class ClientAPI {
   public int howManySharers(String codexId) {
     lock.lock();
     try {
-      return currentSharing.getOrDefault(codexId, 0);
+      return currentSharing.getOrDefault(codexId, Set.of()).size();
     } finally {
       lock.unlock();
     }
@@ -381,6 +490,11 @@ public class ClientAPI {
       connectionCondition.signalAll();
       status = STATUS.CONNECTED;
       logger.info(STR."Connection established, authenticated on the server as \{settings.getStr("login")}");
+      // re-announce in batches everything already shared
+      propose(codexController.codexesStatus().stream()
+                             .filter(CodexStatus::isSharing)
+                             .map(codexStatus -> codexStatus.codex().id())
+                             .toList());
     } finally {
       lock.unlock();
     }
@@ -461,18 +575,54 @@ public class ClientAPI {
   
   
   public void propose(String id) {
-    codexController.getCodexStatus(id)
-                   .ifPresent(codexStatus -> {
-                     var codex = codexStatus.codex();
-                     logger.info(STR."(propose) codex \{codex.name()} (id: \{codex.id()}) queued");
-                     clientContext.queueFrame(new Propose(codex));
-                   });
+    propose(List.of(id));
+  }
+
+  /**
+   * Announce codexes to the server by their id only.
+   * The ids are batched, the metadata is sent only
+   * if the server asks for it with a MetadataRequest
+   *
+   * @param ids the ids of the codexes to announce
+   */
+  public void propose(List<String> ids) {
+    if (clientContext == null) {
+      return;
+    }
+    for (int i = 0; i < ids.size(); i += Announce.MAX_CODEXES) {
+      var batch = ids.subList(i, Math.min(ids.size(), i + Announce.MAX_CODEXES));
+      logger.info(STR."(propose) \{batch.size()} codexes announced");
+      clientContext.queueFrame(new Announce(batch.toArray(String[]::new)));
+    }
+  }
+
+  /**
+   * Send the full metadata of codexes unknown by the server
+   *
+   * @param ids the ids asked by the server
+   */
+  public void proposeMetadata(List<String> ids) {
+    ids.stream()
+       .filter(codexController::isSharing)
+       .map(codexController::getCodexStatus)
+       .flatMap(Optional::stream)
+       .forEach(codexStatus -> {
+         var codex = codexStatus.codex();
+         logger.info(STR."(propose) codex \{codex.name()} (id: \{codex.id()}) queued");
+         if (CodexSegment.isSegmented(codex)) {
+           for (var segment : CodexSegment.split(codex)) {
+             clientContext.queueFrame(segment);
+           }
+         } else {
+           clientContext.queueFrame(new Propose(codex));
+         }
+       });
   }
   
   public List<String> users() {
     lock.lock();
     try {
-      return List.copyOf(users);
+      return users.list();
     } finally {
       lock.unlock();
     }
@@ -497,9 +647,15 @@ public class ClientAPI {
     }
     // didn't find the codex, request it
     requestCodexResponseQueue.clear();
+    lock.lock();
+    try {
+      fetchingCodexes.clear();
+    } finally {
+      lock.unlock();
+    }
     clientContext.queueFrame(new Request(codexId));
     logger.info(STR."(getCodex) requesting codex (id: \{codexId})");
-    Optional<Codex> fetchedCodex = null;
+    Optional<CodexStatus> fetchedCodex = null;
     try {
       fetchedCodex = requestCodexResponseQueue.poll(settings.getInt("requestCodexTimeout"), java.util.concurrent.TimeUnit.SECONDS);
     } catch (InterruptedException e) {
@@ -513,20 +669,23 @@ public class ClientAPI {
   }
   
   /**
-   * Get the codex id or the first guess if the codex does not exist
+   * Resolve a possibly abbreviated codex id against the local codexes
    *
-   * @param codexId the id of the codex
-   * @return the given codex id or the first guess
+   * @param codexId the id of the codex, or a prefix of it
+   * @return the given id if it is known or matches no local codex,
+   * otherwise the ids of every local codex it is a prefix of
    */
-  public String codexIdOrFirstGuess(String codexId) {
+  public List<String> codexIdCandidates(String codexId) {
     lock.lock();
     try {
-      var codex = codexController.getCodexStatus(codexId);
-      if (codex.isPresent()) {
-        return codexId;
+      if (codexController.codexExists(codexId)) {
+        return List.of(codexId);
       }
-      var firstGuess = codexController.findFirstStartingWith(codexId);
-      return firstGuess.isPresent() ? firstGuess.orElseThrow().codex().id() : codexId;
+      var candidates = codexController.findStartingWith(codexId);
+      if (candidates.isEmpty()) {
+        return List.of(codexId);
+      }
+      return candidates.stream().map(CodexStatus::id).toList();
     } finally {
       lock.unlock();
     }
@@ -535,7 +694,7 @@ public class ClientAPI {
   public void saveFetchedCodex(Codex codex) {
     lock.lock();
     try {
-      requestCodexResponseQueue.put(Optional.of(codex));
+      requestCodexResponseQueue.put(Optional.of(codexController.fetchedCodexStatus(codex)));
     } catch (InterruptedException e) {
       close();
     } finally {
@@ -543,6 +702,63 @@ public class ClientAPI {
     }
   }
 
+  /**
+   * The requested id matches no codex of the server, or several of them:
+   * the request is answered without a codex
+   *
+   * @param candidates the ids of the codexes the requested id is a prefix of
+   */
+  public void saveCodexCandidates(CodexCandidates candidates) {
+    if (candidates.codexIds().length == 0) {
+      logger.warning(STR."Codex \{candidates.codexId()} not found on the server");
+    } else {
+      logger.warning(STR."Codex id \{candidates.codexId()} is ambiguous, candidates: \{List.of(candidates.codexIds())}");
+    }
+    lock.lock();
+    try {
+      requestCodexResponseQueue.put(Optional.empty());
+    } catch (InterruptedException e) {
+      close();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Decode a segment of a fetched codex.
+   * The codex is saved once its last segment is received.
+   * Used by the client context
+   *
+   * @param segment the segment
+   * @return true if more segments of the codex are expected
+   */
+  public boolean saveFetchedCodexSegment(CodexSegment segment) {
+    lock.lock();
+    try {
+      var builder = fetchingCodexes.get(segment.codexId());
+      if (builder == null) {
+        builder = codexController.fetchedCodexBuilder(segment);
+        fetchingCodexes.put(segment.codexId(), builder);
+      }
+      builder.add(segment);
+      if (builder.isComplete()) {
+        fetchingCodexes.remove(segment.codexId());
+        requestCodexResponseQueue.put(Optional.of(builder.build()));
+        return false;
+      }
+      return true;
+    } catch (IllegalArgumentException e) {
+      logger.warning(STR."Invalid segment for codex \{segment.codexId()}: \{e.getMessage()}");
+      fetchingCodexes.remove(segment.codexId());
+      return false;
+    } catch (InterruptedException e) {
+      close();
+      return false;
+    } finally {
+      lock.unlock();
+    }
+  }
+
   public void whisper(UUID recipientId, String message) {
     var dm = getPrivateDiscussionByRecipientId(recipientId);
     if (dm.isEmpty()) {
@@ -587,13 +803,10 @@ public class ClientAPI {
   }
 
   String getUserOrFirstGuess(String username) {
-    var usernameAsked = username;
-    if (!users.contains(username)) {
-      usernameAsked = users.stream()
-              .filter(u -> u.startsWith(username))
-              .findFirst().orElse(username);
+    if (users.contains(username)) {
+      return username;
     }
-    return usernameAsked;
+    return users.firstStartingWith(username).orElse(username);
   }
 
   public Optional<DirectMessages> getDirectMessagesOf(String username) {
@@ -634,7 +847,9 @@ public class ClientAPI {
     lock.lock();
     try {
       codexController.stopDownloading(id);
-      // clientContext.queueFrame(new Cancel(id));
+      unsubscribe(id);
+      // revoke the chunks asked to the sharers
+      List.copyOf(downloaders.getOrDefault(id, Set.of())).forEach(DownloaderContext::stopDownloading);
     } finally {
       lock.unlock();
     }
@@ -651,6 +866,167 @@ public class ClientAPI {
     try {
       codexController.download(id, hidden);
       requestSocketForDownload(id, hidden, chainSize);
+      if (!hidden && subscribedCodexes.add(id)) {
+        clientContext.queueFrame(new Subscribe((byte) 1, id));
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private boolean isSubscribed(String codexId) {
+    lock.lock();
+    try {
+      return subscribedCodexes.contains(codexId);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Stop receiving the new sharers of a codex from the server
+   *
+   * @param codexId the id of the codex
+   */
+  private void unsubscribe(String codexId) {
+    lock.lock();
+    try {
+      if (subscribedCodexes.remove(codexId) && clientContext != null) {
+        clientContext.queueFrame(new Subscribe((byte) 0, codexId));
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Connect to a sharer pushed by the server for an open download,
+   * if the download still needs sharers.
+   * Used by the client context
+   *
+   * @param codexId the id of the codex
+   * @param socket  the socket of the new sharer
+   */
+  public void addSharerOpenDownload(String codexId, SocketField socket) {
+    try {
+      connectToSharer(codexId, new InetSocketAddress(InetAddress.getByAddress(socket.ip()), socket.port()));
+    } catch (UnknownHostException e) {
+      logger.warning(STR."Invalid address for a pushed sharer of codex \{codexId}");
+    }
+  }
+
+  /**
+   * Open a downloader context with a sharer of a codex downloaded in open mode,
+   * if the download still needs sharers.
+   *
+   * @param codexId       the id of the codex
+   * @param socketAddress the listening address of the sharer
+   */
+  private void connectToSharer(String codexId, InetSocketAddress socketAddress) {
+    lock.lock();
+    try {
+      var codexStatus = codexController.getCodexStatus(codexId);
+      if (codexStatus.isEmpty() || !codexStatus.orElseThrow().isDownloading()
+              || codexStatus.orElseThrow().isDownloadingHidden()) {
+        return;
+      }
+      addKnownSharers(codexId, List.of(socketAddress));
+      var sockets = currentDownloads.get(codexId);
+      if (sockets == null) {
+        // the download has not started yet, the sharer will come with the download response
+        return;
+      }
+      if (sockets.contains(socketAddress) || sockets.size() >= settings.getInt("sharersRequired")) {
+        return;
+      }
+      logger.info(STR."New downloader context for codex \{codexId} (sharer: \{socketAddress})");
+      var socket = new SocketField(socketAddress.getAddress().getAddress(), socketAddress.getPort());
+      addDownloaderContext(codexId, socket, null);
+      sockets.add(socketAddress);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public boolean peerExchangeEnabled() {
+    return settings.getBool("peerExchange");
+  }
+
+  /**
+   * Get the sharers known for a codex, to be given to peers
+   *
+   * @param codexId the id of the codex
+   * @return the known sharers, newest first
+   */
+  public List<InetSocketAddress> knownSharers(String codexId) {
+    lock.lock();
+    try {
+      var sharers = new ArrayList<>(knownSharers.getOrDefault(codexId, new LinkedHashSet<>()));
+      Collections.reverse(sharers);
+      return sharers;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Remember sharers of a codex. Only the most recent ones are kept.
+   *
+   * @param codexId the id of the codex
+   * @param sharers the listening addresses of the sharers
+   */
+  public void addKnownSharers(String codexId, List<InetSocketAddress> sharers) {
+    lock.lock();
+    try {
+      var known = knownSharers.computeIfAbsent(codexId, k -> new LinkedHashSet<>());
+      for (var sharer : sharers) {
+        known.remove(sharer);
+        known.add(sharer);
+      }
+      var it = known.iterator();
+      while (known.size() > MAX_KNOWN_SHARERS) {
+        it.next();
+        it.remove();
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Save the sharers received by peer exchange
+   * and connect to them if the codex is being downloaded in open mode.
+   * Used by the peer contexts
+   *
+   * @param codexId the id of the codex
+   * @param sharers the listening addresses of the sharers
+   */
+  public void addExchangedSharers(String codexId, List<InetSocketAddress> sharers) {
+    addKnownSharers(codexId, sharers);
+    sharers.forEach(sharer -> connectToSharer(codexId, sharer));
+  }
+
+  /**
+   * Forget a sharer that left the server, so it can be used again if it comes back.
+   * Used by the client context
+   *
+   * @param codexId the id of the codex
+   * @param socket  the socket of the sharer
+   */
+  public void removeSharerOpenDownload(String codexId, SocketField socket) {
+    lock.lock();
+    try {
+      var socketAddress = new InetSocketAddress(InetAddress.getByAddress(socket.ip()), socket.port());
+      var sockets = currentDownloads.get(codexId);
+      if (sockets != null) {
+        sockets.remove(socketAddress);
+      }
+      var known = knownSharers.get(codexId);
+      if (known != null) {
+        known.remove(socketAddress);
+      }
+    } catch (UnknownHostException e) {
+      logger.warning(STR."Invalid address for a departed sharer of codex \{codexId}");
     } finally {
       lock.unlock();
     }
@@ -706,7 +1082,8 @@ public class ClientAPI {
     try {
       codexController.stopSharing(codexId);
       currentDownloads.remove(codexId);
-      // clientContext.queueFrame(new Cancel(codexId)); @Todo
+      // drop the chunks not sent yet to the downloaders
+      List.copyOf(currentSharing.getOrDefault(codexId, Set.of())).forEach(ClientAsServerContext::stopSharing);
     } finally {
       lock.unlock();
     }
@@ -779,6 +1156,26 @@ public class ClientAPI {
     }
   }
   
+  /**
+   * Apply a presence digest: the users that left are removed before the users that joined are added
+   *
+   * @param joined the users that joined
+   * @param left   the users that left
+   */
+  public void applyPresence(String[] joined, String[] left) {
+    lock.lock();
+    try {
+      for (var username : left) {
+        removeUser(username);
+      }
+      for (var username : joined) {
+        addUser(username);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
   /**
    * Update the presence of users
    * @param usernames the list of users
@@ -791,6 +1188,50 @@ public class ClientAPI {
       lock.unlock();
     }
   }
+
+  /**
+   * @return the request of the changes of the user directory since the last sync,
+   * or of the whole directory the first time
+   */
+  public DirectorySync directorySync() {
+    lock.lock();
+    try {
+      return users.sync();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Add a page of the user directory
+   *
+   * @param page the page
+   * @return the request of the next page, or of the changes made while the pages were fetched
+   */
+  public DirectorySync applyDirectoryPage(DirectoryPage page) {
+    lock.lock();
+    try {
+      return users.apply(page);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Apply the changes of the user directory since the last sync
+   *
+   * @param delta the changes
+   * @return the request of the next changes if there are more
+   */
+  public Optional<DirectorySync> applyDirectoryDelta(DirectoryDelta delta) {
+    lock.lock();
+    try {
+      logger.info(STR."User directory at version \{delta.version()} (\{users.size()} users)");
+      return users.apply(delta);
+    } finally {
+      lock.unlock();
+    }
+  }
   
   /**
    * Get the listening port of the client
@@ -823,17 +1264,28 @@ public class ClientAPI {
   }
 
   /**
-   * Write a chunk of data in a codex
+   * Write a chunk of data in a codex.
+   * The other downloaders waiting for the same chunk cancel their request.
    *
    * @param id      the id of the codex
    * @param offset  the offset of the chunk
    * @param payload the data to write
+   * @param from    the downloader that received the chunk
    * @throws IOException if the codex does not exist
    */
-  public void writeChunk(String id, long offset, byte[] payload) throws IOException {
+  public void writeChunk(String id, long offset, byte[] payload, DownloaderContext from) throws IOException {
     lock.lock();
     try {
       codexController.writeChunk(id, offset, payload);
+      if (!codexController.isDownloading(id)) {
+        // complete
+        unsubscribe(id);
+      }
+      for (var downloader : List.copyOf(downloaders.getOrDefault(id, Set.of()))) {
+        if (downloader != from) {
+          downloader.cancelChunk(offset);
+        }
+      }
     } finally {
       lock.unlock();
     }
@@ -624,7 +624,12 @@ public class ClientConsoleController {
     if (matcherRetrieve.find()) {
       var fingerprint = matcherRetrieve.group(1);
       logger.info(STR.":cdx: \{fingerprint}\n");
-      Optional<CodexStatus> codex = api.getCodex(api.codexIdOrFirstGuess(fingerprint));
+      var candidates = api.codexIdCandidates(fingerprint);
+      if (candidates.size() > 1) {
+        logger.warning(STR."Codex id \{fingerprint} is ambiguous, candidates: \{candidates}");
+        return Optional.of(true);
+      }
+      Optional<CodexStatus> codex = api.getCodex(candidates.getFirst());
       if(codex.isEmpty()){
         return Optional.of(true);
       }
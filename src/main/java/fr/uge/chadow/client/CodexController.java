@@ -1,6 +1,7 @@
 package fr.uge.chadow.client;
 
 import fr.uge.chadow.client.cli.display.View;
+import fr.uge.chadow.core.protocol.CodexSegment;
 import fr.uge.chadow.core.protocol.field.Codex;
 
 import java.io.*;
@@ -16,7 +17,7 @@ public class CodexController {
   
   private static final String ALGORITHM = "SHA-1";
   private static final Logger logger = Logger.getLogger(Codex.class.getName());
-  private static final HashMap<String, CodexStatus> codexes = new HashMap<>();
+  private final TreeMap<String, CodexStatus> codexes = new TreeMap<>(); // sorted by id, to resolve abbreviated ids
   private Path defaultDownloadPath;
   private final int chunkSize;
   
@@ -128,12 +129,32 @@ public class CodexController {
   }
   
   /**
-   * Add a codex fetched from the Server
-   * @param codex the codex to add
+   * Create the status of a codex fetched from the Server, without adding it
+   * @param codex the fetched codex
    * @return the status of the codex
    */
-  CodexStatus addFromFetchedCodex(Codex codex) {
-    return addCodex(codex, defaultDownloadPath, true);
+  CodexStatus fetchedCodexStatus(Codex codex) {
+    return new CodexStatus(codex, defaultDownloadPath.toString(), chunkSize, true);
+  }
+  
+  /**
+   * Start building the status of a codex fetched from the Server in segments
+   * @param firstSegment the first segment received
+   * @return the builder, to be given the next segments
+   * @throws IllegalArgumentException if the segment is invalid
+   */
+  CodexStatus.Builder fetchedCodexBuilder(CodexSegment firstSegment) {
+    return new CodexStatus.Builder(firstSegment, defaultDownloadPath.toString(), chunkSize);
+  }
+  
+  /**
+   * Add the status of a codex fetched from the Server
+   * @param codexStatus the status of the codex
+   * @return the status of the codex, the existing one if the codex was already known
+   */
+  CodexStatus addFromFetchedCodex(CodexStatus codexStatus) {
+    var existing = codexes.putIfAbsent(codexStatus.id(), codexStatus);
+    return existing == null ? codexStatus : existing;
   }
   
   /**
@@ -144,10 +165,15 @@ public class CodexController {
     return codexes.values().stream().toList();
   }
   
-  public Optional<CodexStatus> findFirstStartingWith(String idPrefix) {
-    return codexes.values().stream()
-                   .filter(codex -> codex.codex().id().startsWith(idPrefix))
-                   .findFirst();
+  /**
+   * Find the codexes whose id starts with a prefix, in O(log n + candidates)
+   * @param idPrefix the prefix of the id
+   * @return the matching codexes, sorted by id
+   */
+  public List<CodexStatus> findStartingWith(String idPrefix) {
+    return codexes.tailMap(idPrefix).values().stream()
+                   .takeWhile(codex -> codex.id().startsWith(idPrefix))
+                   .toList();
   }
   
   /**
@@ -1,5 +1,7 @@
 package fr.uge.chadow.client;
 
+import fr.uge.chadow.core.protocol.CodexAssembler;
+import fr.uge.chadow.core.protocol.CodexSegment;
 import fr.uge.chadow.core.protocol.field.Codex;
 
 import java.io.IOException;
@@ -16,10 +18,47 @@ public class CodexStatus {
  
   public record Chunk(long offset, int length) {
   }
+  
+  /**
+   * Builds the status of a codex received in segments.
+   * The chunks tracking of the files is prepared as each segment arrives.
+   */
+  static final class Builder {
+    private final CodexAssembler assembler;
+    private final HashMap<Codex.FileInfo, BitSet> chunks = new HashMap<>();
+    private final String root;
+    private final int chunkSize;
+    
+    Builder(CodexSegment firstSegment, String root, int chunkSize) {
+      this.assembler = new CodexAssembler(firstSegment);
+      this.root = root;
+      this.chunkSize = chunkSize;
+    }
+    
+    /**
+     * Decode a segment
+     * @param segment the segment
+     * @throws IllegalArgumentException if the segment is malformed or of another codex
+     */
+    void add(CodexSegment segment) {
+      for (var file : assembler.add(segment)) {
+        chunks.put(file, new BitSet(numberOfChunks(file, chunkSize)));
+      }
+    }
+    
+    boolean isComplete() {
+      return assembler.isComplete();
+    }
+    
+    CodexStatus build() {
+      return new CodexStatus(assembler.codex(), root, chunkSize, true, chunks);
+    }
+  }
+  
   private static final Logger logger = Logger.getLogger(CodexStatus.class.getName());
   private final int chunkSize;
   private final Codex codex;
-  private final HashMap<Codex.FileInfo, BitSet> chunks = new HashMap<>();
+  private final HashMap<Codex.FileInfo, BitSet> chunks;
   private final String root;
   private final ReentrantLock lock = new ReentrantLock();
   private final RandomAccessFile[] sharedFiles; // caching files readers (for sharing)
@@ -35,19 +74,27 @@ public class CodexStatus {
   private long downloadStartTime;
   
   CodexStatus(Codex codex, String root, int chunkSize, boolean isDir) {
-    this.codex = codex;
-    this.root = root;
-    this.chunkSize = chunkSize;
+    this(codex, root, chunkSize, isDir, new HashMap<>());
     // initialize chunks bitset
-    var files = codex.files();
-    for (Codex.FileInfo file : files) {
+    for (Codex.FileInfo file : codex.files()) {
       chunks.put(file, new BitSet(numberOfChunks(file)));
     }
-    sharedFiles = new RandomAccessFile[files.length];
+  }
+  
+  private CodexStatus(Codex codex, String root, int chunkSize, boolean isDir, HashMap<Codex.FileInfo, BitSet> chunks) {
+    this.codex = codex;
+    this.root = root;
+    this.chunkSize = chunkSize;
+    this.chunks = chunks;
+    sharedFiles = new RandomAccessFile[codex.files().length];
     this.isDir = isDir;
   }
   
   public int numberOfChunks(Codex.FileInfo file) {
+    return numberOfChunks(file, chunkSize);
+  }
+  
+  private static int numberOfChunks(Codex.FileInfo file, int chunkSize) {
     return (int) Math.ceil((double) file.length() / chunkSize);
   }
   
@@ -0,0 +1,132 @@
+package fr.uge.chadow.client;
+
+import fr.uge.chadow.core.protocol.client.DirectorySync;
+import fr.uge.chadow.core.protocol.server.DirectoryDelta;
+import fr.uge.chadow.core.protocol.server.DirectoryPage;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.TreeSet;
+
+/**
+ * The users connected to the server, as known by the client, with the version of the
+ * user directory of the server they were synchronized with.
+ * <p>
+ * The first sync fetches the directory by pages into a new set, which replaces the users
+ * when the last page is received, then the changes made while the pages were fetched are asked.
+ * The next syncs only ask the changes since the known version. The changes in between
+ * come with the presence digests and are applied as they arrive.
+ * The sorted list of the users is copied only after a change.
+ * Not thread-safe, guarded by the lock of the ClientAPI.
+ */
+final class KnownUsers {
+  private TreeSet<String> users = new TreeSet<>();
+  private List<String> view = List.of(); // copy of the users, null after a change
+  private long epoch;
+  private long version = -1; // no directory known
+  private TreeSet<String> snapshot; // the pages being fetched, null otherwise
+  private long snapshotEpoch;
+  private long snapshotVersion;
+
+  boolean add(String username) {
+    return changed(users.add(username));
+  }
+
+  boolean remove(String username) {
+    return changed(users.remove(username));
+  }
+
+  void addAll(Collection<String> usernames) {
+    changed(users.addAll(usernames));
+  }
+
+  private boolean changed(boolean changed) {
+    if (changed) {
+      view = null;
+    }
+    return changed;
+  }
+
+  boolean contains(String username) {
+    return users.contains(username);
+  }
+
+  int size() {
+    return users.size();
+  }
+
+  /**
+   * @param prefix the beginning of a username
+   * @return the first username starting with the prefix
+   */
+  Optional<String> firstStartingWith(String prefix) {
+    return Optional.ofNullable(users.ceiling(prefix)).filter(username -> username.startsWith(prefix));
+  }
+
+  /**
+   * @return the sorted users, the list is shared until the next change
+   */
+  List<String> list() {
+    if (view == null) {
+      view = List.copyOf(users);
+    }
+    return view;
+  }
+
+  long version() {
+    return version;
+  }
+
+  /**
+   * @return the request of the changes since the known version, or of the first page
+   */
+  DirectorySync sync() {
+    snapshot = null;
+    return new DirectorySync(epoch, version, "");
+  }
+
+  /**
+   * Add a page to the directory being fetched
+   *
+   * @param page the page
+   * @return the request of the next page, or of the changes made while the pages were fetched
+   */
+  DirectorySync apply(DirectoryPage page) {
+    if (snapshot == null || page.epoch() != snapshotEpoch) {
+      snapshot = new TreeSet<>();
+      snapshotEpoch = page.epoch();
+      snapshotVersion = page.version();
+    }
+    snapshot.addAll(List.of(page.usernames()));
+    if (!page.next().isEmpty()) {
+      return new DirectorySync(snapshotEpoch, snapshotVersion, page.next());
+    }
+    users = snapshot;
+    view = null;
+    epoch = snapshotEpoch;
+    version = snapshotVersion;
+    return sync();
+  }
+
+  /**
+   * Apply the changes since the known version
+   *
+   * @param delta the changes
+   * @return the request of the next changes if the delta is incomplete
+   */
+  Optional<DirectorySync> apply(DirectoryDelta delta) {
+    for (var username : delta.left()) {
+      remove(username);
+    }
+    for (var username : delta.joined()) {
+      add(username);
+    }
+    epoch = delta.epoch();
+    version = delta.version();
+    if (delta.complete() == 0) {
+      return Optional.of(sync());
+    }
+    return Optional.empty();
+  }
+}
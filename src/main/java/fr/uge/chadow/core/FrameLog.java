@@ -0,0 +1,244 @@
+package fr.uge.chadow.core;
+
+import fr.uge.chadow.core.protocol.Frame;
+import fr.uge.chadow.core.reader.FrameReader;
+import fr.uge.chadow.core.reader.Reader.ProcessStatus;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.logging.Logger;
+
+/**
+ * Binary log of the frames received by the connections, to replay a load.
+ * <p>
+ * The log starts with a magic and a version, followed by the entries:
+ * <pre>
+ * kind (byte, 0 received, 1 closed) | session (varint) | microseconds since the previous entry (varint)
+ *   [ length (varint) | frame, as encoded on the wire ]    (received only)
+ * </pre>
+ * The frames are encoded with {@link Frame#toByteBuffer()} and decoded with a {@link FrameReader}.
+ */
+public final class FrameLog {
+  private static final byte[] MAGIC = {'C', 'H', 'A', 'D', 'O', 'W', 'F', 'L'};
+  private static final byte VERSION = 1;
+  private static final byte RECEIVED = 0;
+  private static final byte CLOSED = 1;
+
+  private FrameLog() {
+  }
+
+  /**
+   * An entry of the log
+   */
+  public sealed interface Entry {
+    int session();
+
+    /**
+     * @return microseconds since the start of the capture
+     */
+    long micros();
+  }
+
+  public record Received(int session, long micros, Frame frame) implements Entry {
+  }
+
+  public record Closed(int session, long micros) implements Entry {
+  }
+
+  /**
+   * Records the frames received by the connections.
+   * Thread-safe. An I/O error stops the capture, it never fails the connections.
+   */
+  public static final class Writer implements AutoCloseable {
+    private static final Logger logger = Logger.getLogger(Writer.class.getName());
+    private final DataOutputStream output;
+    private final long start = System.nanoTime();
+    private long lastMicros;
+    private int sessions;
+    private boolean failed;
+
+    private Writer(DataOutputStream output) {
+      this.output = output;
+    }
+
+    /**
+     * Create a log, replacing the existing file
+     *
+     * @param path the file of the log
+     * @return the writer
+     * @throws IOException if the file can't be created
+     */
+    public static Writer open(Path path) throws IOException {
+      var output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)));
+      output.write(MAGIC);
+      output.writeByte(VERSION);
+      return new Writer(output);
+    }
+
+    /**
+     * @return the id of a new session, for a new connection
+     */
+    public synchronized int newSession() {
+      return sessions++;
+    }
+
+    /**
+     * Record a frame received on a connection
+     *
+     * @param session the session of the connection
+     * @param frame   the frame
+     */
+    public synchronized void received(int session, Frame frame) {
+      if (failed) {
+        return;
+      }
+      var bb = frame.toByteBuffer().flip();
+      try {
+        writeHeader(RECEIVED, session);
+        writeVarint(bb.remaining());
+        output.write(bb.array(), bb.arrayOffset() + bb.position(), bb.remaining());
+      } catch (IOException e) {
+        fail(e);
+      }
+    }
+
+    /**
+     * Record the end of a connection
+     *
+     * @param session the session of the connection
+     */
+    public synchronized void closed(int session) {
+      if (failed) {
+        return;
+      }
+      try {
+        writeHeader(CLOSED, session);
+        output.flush();
+      } catch (IOException e) {
+        fail(e);
+      }
+    }
+
+    private void writeHeader(byte kind, int session) throws IOException {
+      var micros = (System.nanoTime() - start) / 1_000;
+      output.writeByte(kind);
+      writeVarint(session);
+      writeVarint(micros - lastMicros);
+      lastMicros = micros;
+    }
+
+    private void writeVarint(long value) throws IOException {
+      while ((value & ~0x7FL) != 0) {
+        output.writeByte((int) (value & 0x7F) | 0x80);
+        value >>>= 7;
+      }
+      output.writeByte((int) value);
+    }
+
+    private void fail(IOException e) {
+      failed = true;
+      logger.warning(STR."Frame capture stopped: \{e.getMessage()}");
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+      output.close();
+    }
+  }
+
+  /**
+   * Reads a log, entry by entry
+   */
+  public static final class Reader implements AutoCloseable {
+    private final DataInputStream input;
+    private final FrameReader frameReader = new FrameReader();
+    private long micros;
+
+    private Reader(DataInputStream input) {
+      this.input = input;
+    }
+
+    /**
+     * Open a log
+     *
+     * @param path the file of the log
+     * @return the reader
+     * @throws IOException if the file can't be read or is not a frame log
+     */
+    public static Reader open(Path path) throws IOException {
+      var input = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)));
+      var magic = new byte[MAGIC.length];
+      try {
+        input.readFully(magic);
+        if (!Arrays.equals(magic, MAGIC) || input.readByte() != VERSION) {
+          throw new IOException(STR."\{path} is not a frame log");
+        }
+      } catch (IOException e) {
+        input.close();
+        throw e;
+      }
+      return new Reader(input);
+    }
+
+    /**
+     * Read the next entry
+     *
+     * @return the entry, or empty at the end of the log
+     * @throws IOException if the log is truncated or contains an invalid frame
+     */
+    public Optional<Entry> next() throws IOException {
+      var kind = input.read();
+      if (kind == -1) {
+        return Optional.empty();
+      }
+      var session = (int) readVarint();
+      micros += readVarint();
+      return switch (kind) {
+        case RECEIVED -> {
+          var bytes = new byte[(int) readVarint()];
+          input.readFully(bytes);
+          yield Optional.of(new Received(session, micros, decode(bytes)));
+        }
+        case CLOSED -> Optional.of(new Closed(session, micros));
+        default -> throw new IOException(STR."Invalid entry kind \{kind}");
+      };
+    }
+
+    private Frame decode(byte[] bytes) throws IOException {
+      frameReader.reset();
+      if (frameReader.read(ByteBuffer.wrap(bytes)) != ProcessStatus.DONE) {
+        throw new IOException("Invalid frame in the log");
+      }
+      return frameReader.get();
+    }
+
+    private long readVarint() throws IOException {
+      long value = 0;
+      for (int shift = 0; shift < Long.SIZE; shift += 7) {
+        var b = input.read();
+        if (b == -1) {
+          throw new EOFException("Truncated entry");
+        }
+        value |= (long) (b & 0x7F) << shift;
+        if ((b & 0x80) == 0) {
+          return value;
+        }
+      }
+      throw new IOException("Invalid varint");
+    }
+
+    @Override
+    public void close() throws IOException {
+      input.close();
+    }
+  }
+}
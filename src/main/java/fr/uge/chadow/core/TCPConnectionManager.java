@@ -34,6 +34,9 @@ public class TCPConnectionManager {
   private final LinkedBlockingQueue<Function<SelectionKey, ConnectionData>> contextQueue = new LinkedBlockingQueue<>();
   private final ServerSocketChannel serverSocketChannel;
   private final Function<SelectionKey, Context> sharerContextFactory;
+  private Runnable tick;
+  private long tickPeriod; // nanoseconds
+  private long nextTick;
   
   /**
    * Create a new ContextHandler
@@ -75,19 +78,52 @@ public class TCPConnectionManager {
     });
   }
   
+  /**
+   * Run a task periodically on the selector thread, between two selections.
+   * Must be called before launch.
+   * @param periodMillis the period in milliseconds
+   * @param task the task, it can queue frames to the contexts
+   */
+  public void onTick(long periodMillis, Runnable task) {
+    if (periodMillis <= 0) {
+      throw new IllegalArgumentException("The period must be positive");
+    }
+    this.tick = task;
+    this.tickPeriod = periodMillis * 1_000_000;
+  }
+  
   public void launch() throws IOException {
     serverSocketChannel.configureBlocking(false);
     serverSocketChannel.register(selector, SelectionKey.OP_ACCEPT);
+    nextTick = System.nanoTime() + tickPeriod;
     while (!Thread.interrupted()) {
       try {
         processContexts();
-        selector.select(this::treatKey);
+        if (tick == null) {
+          selector.select(this::treatKey);
+        } else {
+          selectUntilTick();
+        }
       } catch (UncheckedIOException tunneled) {
         throw tunneled.getCause();
       }
     }
   }
   
+  private void selectUntilTick() throws IOException {
+    var wait = nextTick - System.nanoTime();
+    if (wait > 0) {
+      // a timeout of 0 would block until a key is selected
+      selector.select(this::treatKey, Math.max(1, wait / 1_000_000));
+    }
+    var now = System.nanoTime();
+    if (now - nextTick >= 0) {
+      tick.run();
+      // a late tick is not caught up, two ticks are never closer than the period
+      nextTick = now + tickPeriod;
+    }
+  }
+  
   private void processContexts() throws IOException {
     while (!contextQueue.isEmpty()) {
       var connectionDataSupplier = contextQueue.poll();
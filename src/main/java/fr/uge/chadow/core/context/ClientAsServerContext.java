@@ -10,6 +10,8 @@ import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
 import java.nio.channels.SelectionKey;
 import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.logging.Logger;
 
 /**
@@ -22,16 +24,21 @@ public final class ClientAsServerContext extends Context implements ProxyBridgeL
   private String wantedCodexId;
   private final int maxAcceptedChunkSize;
   private InetSocketAddress clientAddress;
-  private final FrameReader frameReader = new FrameReader();
+  private final FrameReader frameReader; // decodes the payloads of the Hidden frames
   // proxy
   private Integer chainId;
   private Context bridgeRightSide;
   private boolean isClosed;
-  private final ArrayDeque<Frame> framesForTheNextHop = new ArrayDeque<>();
+  private final ArrayDeque<Hidden> framesForTheNextHop = new ArrayDeque<>();
   private boolean isProxy = false;
+  // chunks still in the queue, by offset, so they can be revoked by a Cancel
+  private final HashMap<Long, Frame> pendingChunks = new HashMap<>();
+  private final IdentityHashMap<Frame, Long> pendingOffsets = new IdentityHashMap<>(); // queued chunk -> offset
+  private final PeerExchangeState peerExchange = new PeerExchangeState();
 
   public ClientAsServerContext(SelectionKey key, ClientAPI api, int maxAcceptedChunkSize) {
-    super(key, BUFFER_SIZE);
+    super(key, BUFFER_SIZE, api.decodingBudget());
+    this.frameReader = new FrameReader(api.decodingBudget());
     this.api = api;
     this.maxAcceptedChunkSize = maxAcceptedChunkSize;
   }
@@ -44,7 +51,8 @@ public final class ClientAsServerContext extends Context implements ProxyBridgeL
         if (allowedToShare()) {
           logger.info(STR."Ready to share codex \{wantedCodexId}");
           clientAddress = (InetSocketAddress) getSocket().getRemoteAddress();
-          api.registerSharer(wantedCodexId);
+          api.registerSharer(wantedCodexId, this);
+          sendPeerExchange();
         } else {
           logger.info("Client wants to download a codex that is not shared");
           clearFrameQueue();
@@ -63,7 +71,10 @@ public final class ClientAsServerContext extends Context implements ProxyBridgeL
         }
         try {
           var chunkPayload = api.getChunk(wantedCodexId, needChunk.offset(), needChunk.length());
-          send(new HereChunk(needChunk.offset(), chunkPayload));
+          var queued = send(new HereChunk(needChunk.offset(), chunkPayload));
+          pendingChunks.put(needChunk.offset(), queued);
+          pendingOffsets.put(queued, needChunk.offset());
+          api.addUploaded(chunkPayload.length);
         } catch (IOException e) {
           logger.warning(e.getMessage());
           silentlyClose();
@@ -71,6 +82,24 @@ public final class ClientAsServerContext extends Context implements ProxyBridgeL
           throw new RuntimeException(e);
         }
       }
+      case PeerExchange exchange -> {
+        if (chainId != null || wantedCodexId == null || !api.peerExchangeEnabled()) {
+          return;
+        }
+        var sharers = peerExchange.accept(exchange);
+        logger.info(STR."Received \{sharers.size()} new sharers from \{clientAddress}");
+        api.addKnownSharers(wantedCodexId, sharers);
+        sendPeerExchange();
+      }
+      case Cancel cancel -> {
+        var queued = pendingChunks.remove(cancel.offset());
+        if (queued != null) {
+          pendingOffsets.remove(queued);
+          if (dequeueFrame(queued)) {
+            logger.info(STR."\{clientAddress} canceled chunk (\{cancel.offset()},\{cancel.length()}), dropped before sending");
+          }
+        }
+      }
       case ProxyOpen proxyOpen -> {
         logger.info("Received proxy open request");
         chainId = proxyOpen.chainId();
@@ -90,6 +119,11 @@ public final class ClientAsServerContext extends Context implements ProxyBridgeL
         if (isProxy && bridgeRightSide == null) {
           // we are a proxy, but the bridge is not set yet
           // queue the frame
+          if (!retain(hidden.payload().length)) {
+            logger.warning(STR."Too many frames queued for the next proxy of chain \{chainId}");
+            silentlyClose();
+            return;
+          }
           framesForTheNextHop.addLast(hidden);
         } else if (isProxy) {
           // we are a proxy and the bridge is set
@@ -98,11 +132,11 @@ public final class ClientAsServerContext extends Context implements ProxyBridgeL
         } else {
           // we are a sharer
           // extract payload and processIt
-          var payload = ByteBuffer.allocate(hidden.payload().length)
-                  .put(hidden.payload());
-          if (frameReader.process(payload) != FrameReader.ProcessStatus.DONE) {
+          if (frameReader.read(ByteBuffer.wrap(hidden.payload())) != FrameReader.ProcessStatus.DONE) {
             logger.warning("Error while processing hidden frame");
             silentlyClose();
+            frameReader.reset();
+            return;
           }
           processCurrentOpcodeAction(frameReader.get());
           frameReader.reset();
@@ -115,12 +149,50 @@ public final class ClientAsServerContext extends Context implements ProxyBridgeL
     }
   }
 
-  private void send(Frame frame) {
+  /**
+   * Queue a frame, wrapped in a Hidden frame if the connection is part of a chain
+   *
+   * @param frame the frame to send
+   * @return the frame actually queued
+   */
+  @Override
+  void frameDequeued(Frame frame) {
+    // the chunk is being written, it can't be revoked by a Cancel anymore
+    var offset = pendingOffsets.remove(frame);
+    if (offset != null) {
+      pendingChunks.remove(offset, frame);
+    }
+  }
+
+  private Frame send(Frame frame) {
     if (chainId != null) {
       var buffer = frame.toByteBuffer();
       frame = new Hidden(chainId, buffer.array());
     }
     queueFrame(frame);
+    return frame;
+  }
+
+  /**
+   * Give the downloader the other sharers we know for the codex.
+   * Only in open mode, the addresses of the sharers must stay hidden otherwise.
+   */
+  private void sendPeerExchange() {
+    if (chainId != null || !api.peerExchangeEnabled()) {
+      return;
+    }
+    peerExchange.nextFrame(api.knownSharers(wantedCodexId), clientAddress)
+                .ifPresent(this::queueFrame);
+  }
+
+  /**
+   * Stop sharing on this connection.
+   * The chunks not sent yet are dropped with the connection.
+   */
+  public void stopSharing() {
+    pendingChunks.clear();
+    pendingOffsets.clear();
+    silentlyClose();
   }
 
   private boolean allowedToShare() {
@@ -141,7 +213,9 @@ public final class ClientAsServerContext extends Context implements ProxyBridgeL
     api.registerProxy();
     // send queued frames
     while (!framesForTheNextHop.isEmpty()) {
-      this.bridgeRightSide.queueFrame(framesForTheNextHop.pollFirst());
+      var hidden = framesForTheNextHop.pollFirst();
+      release(hidden.payload().length);
+      this.bridgeRightSide.queueFrame(hidden);
     }
   }
 
@@ -156,7 +230,7 @@ public final class ClientAsServerContext extends Context implements ProxyBridgeL
       api.unregisterProxy();
     }
     if (!isProxy) {
-      api.unregisterSharer(wantedCodexId);
+      api.unregisterSharer(wantedCodexId, this);
     }
   }
 }
\ No newline at end of file
@@ -3,7 +3,6 @@ package fr.uge.chadow.core.context;
 import fr.uge.chadow.client.ClientAPI;
 import fr.uge.chadow.core.TCPConnectionManager;
 import fr.uge.chadow.core.protocol.*;
-import fr.uge.chadow.core.protocol.client.Discovery;
 import fr.uge.chadow.core.protocol.client.ProxyOk;
 import fr.uge.chadow.core.protocol.client.Register;
 import fr.uge.chadow.core.protocol.field.SocketField;
@@ -12,6 +11,7 @@ import fr.uge.chadow.core.protocol.server.*;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.nio.channels.SelectionKey;
+import java.util.HashMap;
 import java.util.List;
 import java.util.logging.Logger;
 
@@ -19,9 +19,10 @@ public final class ClientContext extends Context {
   private static final Logger logger = Logger.getLogger(TCPConnectionManager.class.getName());
   private static final int BUFFER_SIZE = 1024;
   private final ClientAPI api;
+  private final HashMap<String, Long> fetchingBytes = new HashMap<>(); // codex id -> segments charged to the budget
 
   public ClientContext(SelectionKey key, ClientAPI api) {
-    super(key, BUFFER_SIZE);
+    super(key, BUFFER_SIZE, api.decodingBudget());
     this.api = api;
   }
 
@@ -32,7 +33,7 @@ public final class ClientContext extends Context {
       case OK _ -> {
         logger.info("Connected to the server");
         api.bindContext(this);
-        super.addFrame(new Discovery()); // fetch all users
+        super.addFrame(api.directorySync()); // fetch the users, or their changes since the last connection
         super.processOut();
       }
       case YellMessage yellMessage -> api.addMessage(yellMessage);
@@ -41,10 +42,36 @@ public final class ClientContext extends Context {
         logger.info(STR."Received RequestResponse cdx: \{requestResponse.codex().id()}");
         api.saveFetchedCodex(requestResponse.codex());
       }
+      case CodexCandidates codexCandidates -> api.saveCodexCandidates(codexCandidates);
+      case MetadataRequest metadataRequest -> {
+        logger.info(STR."Server asks the metadata of \{metadataRequest.codexIds().length} codexes");
+        api.proposeMetadata(List.of(metadataRequest.codexIds()));
+      }
+      case CodexSegment codexSegment -> {
+        logger.info(STR."Received segment of cdx: \{codexSegment.codexId()} (from file \{codexSegment.firstFile()})");
+        if (!retain(codexSegment.rawLength())) {
+          logger.warning(STR."Codex \{codexSegment.codexId()} is over the decoding budget");
+          silentlyClose();
+          return;
+        }
+        var charged = fetchingBytes.merge(codexSegment.codexId(), (long) codexSegment.rawLength(), Long::sum);
+        if (!api.saveFetchedCodexSegment(codexSegment)) {
+          fetchingBytes.remove(codexSegment.codexId());
+          release(charged);
+        }
+      }
       case DiscoveryResponse discoveryResponse -> {
         logger.info(STR."Received discovery response (\{discoveryResponse.usernames().length} users)");
         api.addUsersFromDiscovery(List.of(discoveryResponse.usernames()));
       }
+      case DirectoryPage directoryPage -> {
+        logger.info(STR."Received directory page (\{directoryPage.usernames().length} users)");
+        queueFrame(api.applyDirectoryPage(directoryPage));
+      }
+      case DirectoryDelta directoryDelta -> {
+        logger.info(STR."Received directory delta (\{directoryDelta.joined().length} joined, \{directoryDelta.left().length} left)");
+        api.applyDirectoryDelta(directoryDelta).ifPresent(this::queueFrame);
+      }
       case RequestOpenDownload requestOpenDownload -> {
         logger.info(STR."Received request open download  \{requestOpenDownload.sockets().length} sockets");
         api.addSocketsOpenDownload(requestOpenDownload.sockets());
@@ -66,6 +93,19 @@ public final class ClientContext extends Context {
           api.addUser(event.username());
         }
       }
+      case PresenceDigest presenceDigest -> {
+        logger.info(STR."Received presence digest (\{presenceDigest.joined().length} joined, \{presenceDigest.left().length} left)");
+        api.applyPresence(presenceDigest.joined(), presenceDigest.left());
+      }
+      case SharerEvent sharerEvent -> {
+        if (sharerEvent.code() == (byte) 1) {
+          logger.info(STR."New sharer for codex \{sharerEvent.codexId()}");
+          api.addSharerOpenDownload(sharerEvent.codexId(), sharerEvent.socket());
+        } else {
+          logger.info(STR."A sharer left codex \{sharerEvent.codexId()}");
+          api.removeSharerOpenDownload(sharerEvent.codexId(), sharerEvent.socket());
+        }
+      }
       case Proxy proxy -> {
         logger.info(STR."Received proxy request chainId: \{proxy.chainId()}");
         var response = api.saveProxyRoute(proxy.chainId(), proxy.socket());
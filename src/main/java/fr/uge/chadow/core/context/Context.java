@@ -1,7 +1,9 @@
 package fr.uge.chadow.core.context;
 
+import fr.uge.chadow.core.FrameLog;
 import fr.uge.chadow.core.protocol.Frame;
 import fr.uge.chadow.core.protocol.Opcode;
+import fr.uge.chadow.core.reader.DecodingBudget;
 import fr.uge.chadow.core.reader.FrameReader;
 import fr.uge.chadow.core.reader.Reader;
 
@@ -13,7 +15,7 @@ import java.nio.channels.SocketChannel;
 import java.util.ArrayDeque;
 import java.util.logging.Logger;
 
-public sealed abstract class Context permits ClientAsServerContext, ClientContext, DownloaderContext, ProxyBridgeRightSideContext, ServerContext {
+public sealed abstract class Context permits ClientAsServerContext, ClientContext, DownloaderContext, NodeContext, ProxyBridgeRightSideContext, ServerContext {
 
   private static final Logger logger = Logger.getLogger(Context.class.getName());
   private final ArrayDeque<Frame> queue = new ArrayDeque<>();
@@ -21,46 +23,76 @@ public sealed abstract class Context permits ClientAsServerContext, ClientContex
   private final SocketChannel sc;
   private final ByteBuffer bufferIn;
   private final ByteBuffer bufferOut;
-  private final FrameReader frameReader = new FrameReader();
+  private final FrameReader frameReader;
   private ByteBuffer processingFrame;
   private final Opcode currentOpcode = null;
   private boolean closed = false;
+  private FrameLog.Writer capture;
+  private int captureSession;
 
-  public Context(SelectionKey key, int BUFFER_SIZE) {
+  /**
+   * @param budget the maximum memory allocated to decode the frames received on this connection,
+   *               and to keep their state
+   */
+  public Context(SelectionKey key, int BUFFER_SIZE, DecodingBudget budget) {
+    this.frameReader = new FrameReader(budget);
     this.key = key;
     this.sc = (SocketChannel) key.channel();
     bufferIn = ByteBuffer.allocate(BUFFER_SIZE);
     bufferOut = ByteBuffer.allocate(BUFFER_SIZE);
   }
 
+  /**
+   * Charge state kept across frames to the decoding budget of the connection
+   *
+   * @param bytes the size of the state
+   * @return false if the budget of the connection is exceeded
+   */
+  boolean retain(long bytes) {
+    return frameReader.retain(bytes);
+  }
+
+  void release(long bytes) {
+    frameReader.release(bytes);
+  }
+
   /**
    * Process the content of bufferIn
    * <p>
    * The convention is that bufferIn is in write-mode before the call to process
-   * and after the call
+   * and after the call. All the frames available are decoded in read-mode
+   * and the buffer is compacted once at the end.
    */
   private void processIn() {
-    for (; ; ) {
-      Reader.ProcessStatus status = frameReader.process(bufferIn);
-
-      switch (status) {
-        case DONE -> {
-          try {
-            processCurrentOpcodeActionImpl();
-          } catch (IOException e) {
-            logger.severe(STR."Error while processing opcode \{currentOpcode}");
+    bufferIn.flip();
+    try {
+      for (; ; ) {
+        Reader.ProcessStatus status = frameReader.read(bufferIn);
+
+        switch (status) {
+          case DONE -> {
+            if (capture != null) {
+              capture.received(captureSession, frameReader.get());
+            }
+            try {
+              processCurrentOpcodeActionImpl();
+            } catch (IOException e) {
+              logger.severe(STR."Error while processing opcode \{currentOpcode}");
+              return;
+            }
+            frameReader.reset();
+          }
+          case REFILL -> {
+            return;
+          }
+          case ERROR -> {
+            silentlyClose();
             return;
           }
-          frameReader.reset();
-        }
-        case REFILL -> {
-          return;
-        }
-        case ERROR -> {
-          silentlyClose();
-          return;
         }
       }
+    } finally {
+      bufferIn.compact();
     }
   }
 
@@ -76,6 +108,16 @@ public sealed abstract class Context permits ClientAsServerContext, ClientContex
     processCurrentOpcodeAction(frameReader.get());
   }
 
+  /**
+   * Record the frames received on this connection
+   *
+   * @param capture the log of the frames
+   */
+  public void captureTo(FrameLog.Writer capture) {
+    this.capture = capture;
+    this.captureSession = capture.newSession();
+  }
+
   public void queueFrame(Frame frame) {
     if(!closed){
       queue.addFirst(frame);
@@ -95,14 +137,46 @@ public sealed abstract class Context permits ClientAsServerContext, ClientContex
     queue.addFirst(frame);
   }
 
+  /**
+   * Remove a frame from the queue if it has not been sent yet.
+   * A frame already (even partially) moved to the output buffer can't be revoked.
+   *
+   * @param frame the frame to remove
+   * @return true if the frame was still queued and has been removed
+   */
+  boolean dequeueFrame(Frame frame) {
+    return queue.removeFirstOccurrence(frame);
+  }
+
+  /**
+   * Called when a frame leaves the queue to be moved to the output buffer,
+   * it can't be revoked anymore
+   *
+   * @param frame the frame
+   */
+  void frameDequeued(Frame frame) {
+  }
+
+  /**
+   * Stop reading and close the connection
+   * as soon as the queued frames have been written
+   */
+  void closeAfterFlush() {
+    closed = true;
+    processOut();
+    updateInterestOps();
+    key.selector().wakeup();
+  }
+
   /**
    * Try to fill bufferOut from the message queue
    */
   void processOut() {
     if (processingFrame == null && !queue.isEmpty()) {
       while (!queue.isEmpty()) {
-        processingFrame = queue.pollLast()
-                .toByteBuffer();
+        var frame = queue.pollLast();
+        frameDequeued(frame);
+        processingFrame = frame.toByteBuffer();
         processingFrame.flip();
         if (processingFrame.remaining() <= bufferOut.remaining()) {
           // If enough space in bufferOut, add the frame
@@ -162,6 +236,10 @@ public sealed abstract class Context permits ClientAsServerContext, ClientContex
   }
 
   public void silentlyClose() {
+    if (capture != null) {
+      capture.closed(captureSession);
+      capture = null;
+    }
     try {
       closed = true;
       sc.close();
@@ -24,10 +24,14 @@ public final class DownloaderContext extends Context {
   private final CodexStatus codexStatus;
   private final SelectionKey key;
   private final Integer chainId;
-  private final FrameReader frameReader = new FrameReader();
+  private final FrameReader frameReader; // decodes the payloads of the Hidden frames
+  // last chunk asked to the sharer and not received yet
+  private CodexStatus.Chunk pendingChunk;
+  private final PeerExchangeState peerExchange = new PeerExchangeState();
 
   public DownloaderContext(SelectionKey key, ClientAPI api, CodexStatus codexStatus, Integer chainId) {
-    super(key, BUFFER_SIZE);
+    super(key, BUFFER_SIZE, api.decodingBudget());
+    this.frameReader = new FrameReader(api.decodingBudget());
     this.api = api;
     this.codexStatus = codexStatus;
     this.key = key;
@@ -55,8 +59,12 @@ public final class DownloaderContext extends Context {
           silentlyClose();
           return;
         }
+        var wasCanceled = pendingChunk == null || pendingChunk.offset() != hereChunk.offset();
+        if (!wasCanceled) {
+          pendingChunk = null;
+        }
         try {
-          api.writeChunk(codexStatus.id(), hereChunk.offset(), hereChunk.payload());
+          api.writeChunk(codexStatus.id(), hereChunk.offset(), hereChunk.payload(), this);
         } catch (IOException e) {
           logger.severe(STR."Error while writing chunk \{hereChunk.offset()} for codex \{codexStatus.codex().id()} : \{e.getCause()}");
           silentlyClose();
@@ -66,20 +74,29 @@ public final class DownloaderContext extends Context {
           silentlyClose();
           return;
         }
-        // request next chunk
-        var chunk = codexStatus.nextRandomChunk();
-        if (chunk != null) {
-          send(new NeedChunk(chunk.offset(), chunk.length()));
+        if (wasCanceled) {
+          // the sharer sent it before receiving our Cancel, a new chunk is already asked
+          return;
+        }
+        requestNextChunk();
+        sendPeerExchange();
+      }
+      case PeerExchange exchange -> {
+        if (chainId != null || !api.peerExchangeEnabled()) {
+          return;
         }
+        var sharers = peerExchange.accept(exchange);
+        logger.info(STR."Received \{sharers.size()} new sharers from \{sharerAddress}");
+        api.addExchangedSharers(codexStatus.id(), sharers);
       }
       case Hidden hidden -> {
         logger.info("Received hidden frame");
         // we received a response from our hidden download request
-        var payload = ByteBuffer.allocate(hidden.payload().length)
-                .put(hidden.payload());
-        if (frameReader.process(payload) != FrameReader.ProcessStatus.DONE) {
+        if (frameReader.read(ByteBuffer.wrap(hidden.payload())) != FrameReader.ProcessStatus.DONE) {
           logger.warning("Error while processing hidden frame");
           silentlyClose();
+          frameReader.reset();
+          return;
         }
         processCurrentOpcodeAction(frameReader.get());
         frameReader.reset();
@@ -121,6 +138,56 @@ public final class DownloaderContext extends Context {
     initDownload();
   }
 
+  /**
+   * Give the sharer the other sharers we know for the codex.
+   * Only in open mode, the addresses of the sharers must stay hidden otherwise.
+   */
+  private void sendPeerExchange() {
+    if (chainId != null || !api.peerExchangeEnabled()) {
+      return;
+    }
+    peerExchange.nextFrame(api.knownSharers(codexStatus.id()), sharerAddress)
+                .ifPresent(this::queueFrame);
+  }
+
+  private void requestNextChunk() {
+    var chunk = codexStatus.nextRandomChunk();
+    if (chunk != null) {
+      pendingChunk = chunk;
+      send(new NeedChunk(chunk.offset(), chunk.length()));
+    }
+  }
+
+  /**
+   * Revoke the pending request of a chunk, if it is the given one,
+   * because another sharer already sent it. A new chunk is requested instead.
+   *
+   * @param offset the offset of the chunk received from another sharer
+   */
+  public void cancelChunk(long offset) {
+    if (pendingChunk == null || pendingChunk.offset() != offset) {
+      return;
+    }
+    logger.info(STR."Chunk \{offset} received from another sharer, canceling it");
+    send(new Cancel(pendingChunk.offset(), pendingChunk.length()));
+    pendingChunk = null;
+    if (!downloadForbidden()) {
+      requestNextChunk();
+    }
+  }
+
+  /**
+   * Stop downloading from this sharer.
+   * Revoke the pending chunk request and close the connection once it is sent.
+   */
+  public void stopDownloading() {
+    if (pendingChunk != null) {
+      send(new Cancel(pendingChunk.offset(), pendingChunk.length()));
+      pendingChunk = null;
+    }
+    closeAfterFlush();
+  }
+
   private void send(Frame frame) {
     if (chainId != null) {
       var buffer = frame.toByteBuffer();
@@ -136,6 +203,7 @@ public final class DownloaderContext extends Context {
     }
     var handshake = new Handshake(codexStatus.codex().id());
     var chunk = codexStatus.nextRandomChunk();
+    pendingChunk = chunk;
     var needChunk = new NeedChunk(chunk.offset(), chunk.length());
     if (chainId != null) {
       addFrame(new Hidden(chainId, handshake.toByteBuffer().array()));
@@ -144,7 +212,8 @@ public final class DownloaderContext extends Context {
       addFrame(handshake);
       addFrame(needChunk);
     }
-    api.registerDownloader(codexStatus.codex().id(), sharerAddress);
+    api.registerDownloader(codexStatus.codex().id(), sharerAddress, this);
+    sendPeerExchange();
     processOut();
     getKey().interestOps(SelectionKey.OP_WRITE);
   }
@@ -152,6 +221,6 @@ public final class DownloaderContext extends Context {
   @Override
   public void silentlyClose() {
     super.silentlyClose();
-    api.unregisterDownloader(codexStatus.codex().id(), sharerAddress);
+    api.unregisterDownloader(codexStatus.codex().id(), sharerAddress, this);
   }
 }
\ No newline at end of file
@@ -0,0 +1,75 @@
+package fr.uge.chadow.core.context;
+
+import fr.uge.chadow.core.protocol.Frame;
+import fr.uge.chadow.core.protocol.node.Forwarded;
+import fr.uge.chadow.core.protocol.node.NodeHello;
+import fr.uge.chadow.server.Server;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.util.logging.Logger;
+
+/**
+ * Context of the link a node of a cluster opens to another node.
+ * The node forwards the frames of its clients on this link, and receives the answers of the other node.
+ * The other node sees the link as a ServerContext introduced by a NodeHello.
+ */
+public final class NodeContext extends Context {
+  private static final Logger logger = Logger.getLogger(NodeContext.class.getName());
+  private static final int BUFFER_SIZE = 8_192;
+  private final Server server;
+  private final int self;
+  private final int node;
+  private boolean connected;
+  private boolean closed;
+
+  /**
+   * @param key    the key of the link
+   * @param server the server of this node
+   * @param self   the index of this node in the cluster
+   * @param node   the index of the node at the other end of the link
+   */
+  public NodeContext(SelectionKey key, Server server, int self, int node) {
+    super(key, BUFFER_SIZE, server.decodingBudget());
+    this.server = server;
+    this.self = self;
+    this.node = node;
+  }
+
+  @Override
+  void processCurrentOpcodeAction(Frame frame) {
+    if (frame instanceof Forwarded forwarded) {
+      server.answered(forwarded);
+    } else {
+      logger.warning(STR."Node \{node} sent an unexpected frame \{frame}");
+      silentlyClose();
+    }
+  }
+
+  /**
+   * @return true once the link is established, the frames can be queued
+   */
+  public boolean isConnected() {
+    return connected;
+  }
+
+  @Override
+  public void doConnect() throws IOException {
+    super.doConnect();
+    logger.info(STR."Connected to node \{node}");
+    super.addFrame(new NodeHello(self));
+    getKey().interestOps(SelectionKey.OP_WRITE);
+    super.processOut();
+    connected = true;
+  }
+
+  @Override
+  public void silentlyClose() {
+    super.silentlyClose();
+    if (!closed) {
+      closed = true;
+      connected = false;
+      server.nodeLinkClosed(node, this);
+    }
+  }
+}
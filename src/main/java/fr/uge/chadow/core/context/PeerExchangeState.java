@@ -0,0 +1,90 @@
+package fr.uge.chadow.core.context;
+
+import fr.uge.chadow.core.protocol.client.PeerExchange;
+import fr.uge.chadow.core.protocol.field.SocketField;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Peer exchange bookkeeping of a single connection between a downloader and a sharer.
+ * Never sends the same address twice on the connection,
+ * and limits the frames sent and accepted to one per interval.
+ */
+final class PeerExchangeState {
+  static final long INTERVAL_MILLIS = 30_000;
+  static final int MAX_SHARERS = 32;
+  private final HashSet<InetSocketAddress> exchanged = new HashSet<>(); // sent to or received from the peer
+  private long lastSent;
+  private long lastReceived;
+
+  /**
+   * Build the next frame to send to the peer
+   *
+   * @param knownSharers the sharers known for the codex
+   * @param excluded     the address of the peer itself
+   * @return the frame, or empty if it's too early or if there is nothing new to send
+   */
+  Optional<PeerExchange> nextFrame(List<InetSocketAddress> knownSharers, InetSocketAddress excluded) {
+    return nextFrame(knownSharers, excluded, System.currentTimeMillis());
+  }
+
+  Optional<PeerExchange> nextFrame(List<InetSocketAddress> knownSharers, InetSocketAddress excluded, long now) {
+    if (now - lastSent < INTERVAL_MILLIS) {
+      return Optional.empty();
+    }
+    var sharers = new ArrayList<SocketField>();
+    for (var address : knownSharers) {
+      if (sharers.size() == MAX_SHARERS) {
+        break;
+      }
+      if (address.equals(excluded) || !exchanged.add(address)) {
+        continue;
+      }
+      sharers.add(new SocketField(address.getAddress().getAddress(), address.getPort()));
+    }
+    if (sharers.isEmpty()) {
+      return Optional.empty();
+    }
+    lastSent = now;
+    return Optional.of(new PeerExchange(sharers.toArray(SocketField[]::new)));
+  }
+
+  /**
+   * Extract the addresses not exchanged yet from a frame received from the peer.
+   * Frames received before the end of the interval are ignored.
+   *
+   * @param peerExchange the received frame
+   * @return the new addresses, at most MAX_SHARERS
+   */
+  List<InetSocketAddress> accept(PeerExchange peerExchange) {
+    return accept(peerExchange, System.currentTimeMillis());
+  }
+
+  List<InetSocketAddress> accept(PeerExchange peerExchange, long now) {
+    if (now - lastReceived < INTERVAL_MILLIS) {
+      return List.of();
+    }
+    lastReceived = now;
+    var sharers = new ArrayList<InetSocketAddress>();
+    for (var socket : peerExchange.sharers()) {
+      if (sharers.size() == MAX_SHARERS) {
+        break;
+      }
+      try {
+        var address = new InetSocketAddress(InetAddress.getByAddress(socket.ip()), socket.port());
+        if (exchanged.add(address)) {
+          sharers.add(address);
+        }
+      } catch (UnknownHostException e) {
+        // invalid ip length, skip it
+      }
+    }
+    return sharers;
+  }
+}
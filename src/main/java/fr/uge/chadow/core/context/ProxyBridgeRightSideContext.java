@@ -2,6 +2,7 @@ package fr.uge.chadow.core.context;
 
 import fr.uge.chadow.core.protocol.Frame;
 import fr.uge.chadow.core.protocol.client.Hidden;
+import fr.uge.chadow.core.reader.DecodingBudget;
 
 import java.io.IOException;
 import java.nio.channels.SelectionKey;
@@ -26,8 +27,8 @@ public final class ProxyBridgeRightSideContext extends Context {
   private final ProxyBridgeLeftSideContext leftSide;
   private boolean isClosed;
 
-  public ProxyBridgeRightSideContext(SelectionKey key, ProxyBridgeLeftSideContext leftSide) {
-    super(key, BUFFER_SIZE);
+  public ProxyBridgeRightSideContext(SelectionKey key, ProxyBridgeLeftSideContext leftSide, DecodingBudget budget) {
+    super(key, BUFFER_SIZE, budget);
     this.leftSide = leftSide;
   }
 
@@ -4,14 +4,17 @@ import fr.uge.chadow.core.Settings;
 import fr.uge.chadow.core.protocol.*;
 import fr.uge.chadow.core.protocol.client.*;
 import fr.uge.chadow.core.protocol.field.SocketField;
-import fr.uge.chadow.core.protocol.server.Event;
+import fr.uge.chadow.core.protocol.node.Forward;
+import fr.uge.chadow.core.protocol.node.NodeHello;
 import fr.uge.chadow.core.protocol.server.OK;
+import fr.uge.chadow.server.CodexSearchIndex;
 import fr.uge.chadow.server.Server;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.nio.channels.SelectionKey;
 import java.util.ArrayDeque;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.logging.Logger;
 
@@ -24,15 +27,23 @@ public final class ServerContext extends Context implements ProxyBridgeLeftSideC
   private String login;
   private SocketField serverPublicAddress;
   private final HashSet<String> sharedCodex = new HashSet<>();
+  private final HashSet<String> subscribedCodex = new HashSet<>();
+  // codexes proposed in segments, not fully received yet
+  private static final int MAX_PARTIAL_CODEXES = 16;
+  private final HashMap<String, CodexAssembler> partialCodexes = new HashMap<>();
+  // where the last search stopped, to resume it on the next page
+  private CodexSearchIndex.Cursor searchCursor;
   // proxy
   private Integer chainId;
   private Context bridgeRightSide;
   private boolean isClosed;
-  private final ArrayDeque<Frame> framesForTheNextHop = new ArrayDeque<>();
+  private final ArrayDeque<Hidden> framesForTheNextHop = new ArrayDeque<>();
   private boolean isProxy = false;
+  // cluster
+  private int node = -1; // the node of the cluster that opened this link, -1 for a client
 
   public ServerContext(Server server, SelectionKey key, Settings settings) {
-    super(key, BUFFER_SIZE);
+    super(key, BUFFER_SIZE, server.decodingBudget());
     this.server = server;
     this.settings = settings;
   }
@@ -67,7 +78,27 @@ public final class ServerContext extends Context implements ProxyBridgeLeftSideC
 
         // Send an OK message to the client
         queueFrame(new OK());
-        server.broadcast(new Event((byte) 1, login));
+        server.userJoined(login);
+      }
+
+      case NodeHello nodeHello -> {
+        var remoteAddress = (InetSocketAddress) super.getSocket().getRemoteAddress();
+        if (isAuthenticated() || node != -1 || !server.acceptNode(nodeHello.node(), remoteAddress)) {
+          logger.warning(STR."Client \{remoteAddress} introduced itself as node \{nodeHello.node()}");
+          silentlyClose();
+          return;
+        }
+        node = nodeHello.node();
+        logger.info(STR."Node \{node} linked from \{super.getSocket().getRemoteAddress()}");
+      }
+
+      case Forward forward -> {
+        if (node == -1) {
+          logger.warning(STR."Client \{super.getSocket().getRemoteAddress()} is not a node");
+          silentlyClose();
+          return;
+        }
+        server.forwarded(node, forward, this);
       }
 
       case Discovery _ -> {
@@ -79,6 +110,15 @@ public final class ServerContext extends Context implements ProxyBridgeLeftSideC
         server.discovery(this);
       }
 
+      case DirectorySync directorySync -> {
+        if (!isAuthenticated()) {
+          logger.warning(STR."Client \{super.getSocket().getRemoteAddress()} is not authenticated");
+          silentlyClose();
+          return;
+        }
+        server.syncDirectory(this, directorySync);
+      }
+
       case YellMessage yellMessage -> {
         if (!isAuthenticated()) {
           logger.warning(STR."Client \{super.getSocket().getRemoteAddress()} is not authenticated");
@@ -109,6 +149,55 @@ public final class ServerContext extends Context implements ProxyBridgeLeftSideC
         sharedCodex.add(propose.codex().id());
       }
 
+      case Announce announce -> {
+        if (!isAuthenticated()) {
+          logger.warning(STR."Client \{super.getSocket().getRemoteAddress()} is not authenticated");
+          silentlyClose();
+          return;
+        }
+        if (announce.codexIds().length > Announce.MAX_CODEXES) {
+          logger.warning(STR."Client \{login} announces too many codexes at once");
+          silentlyClose();
+          return;
+        }
+        sharedCodex.addAll(server.announce(announce.codexIds(), this));
+      }
+
+      case CodexSegment segment -> {
+        if (!isAuthenticated()) {
+          logger.warning(STR."Client \{super.getSocket().getRemoteAddress()} is not authenticated");
+          silentlyClose();
+          return;
+        }
+        try {
+          var assembler = partialCodexes.get(segment.codexId());
+          if (assembler == null) {
+            if (partialCodexes.size() == MAX_PARTIAL_CODEXES) {
+              logger.warning(STR."Client \{login} proposes too many codexes at once");
+              silentlyClose();
+              return;
+            }
+            assembler = new CodexAssembler(segment);
+            partialCodexes.put(segment.codexId(), assembler);
+          }
+          if (!retain(segment.rawLength())) {
+            logger.warning(STR."Client \{login} proposes codexes over its decoding budget");
+            silentlyClose();
+            return;
+          }
+          assembler.add(segment);
+          if (assembler.isComplete()) {
+            partialCodexes.remove(segment.codexId());
+            release(assembler.receivedBytes());
+            server.propose(assembler.codex(), login);
+            sharedCodex.add(segment.codexId());
+          }
+        } catch (IllegalArgumentException e) {
+          logger.warning(STR."Invalid codex segment from \{login}: \{e.getMessage()}");
+          silentlyClose();
+        }
+      }
+
       case Request request -> {
         if (!isAuthenticated()) {
           logger.warning(STR."Client \{super.getSocket().getRemoteAddress()} is not authenticated");
@@ -138,9 +227,18 @@ public final class ServerContext extends Context implements ProxyBridgeLeftSideC
           return;
         }
         logger.info(STR."Searching for \{search.codexName()}");
-        var result = server.search(search);
-        queueFrame(result);
-        logger.info(STR."Get \{result.results().length} results");
+        if (server.isClustered()) {
+          // answered when every node has searched the codexes it owns
+          server.searchCluster(search, searchCursor, this, page -> {
+            searchCursor = page.next();
+            queueFrame(page.response());
+          });
+          return;
+        }
+        var page = server.search(search, searchCursor);
+        searchCursor = page.next();
+        queueFrame(page.response());
+        logger.info(STR."Get \{page.response().results().length} results");
       }
 
       case ProxyOk proxyOk -> {
@@ -167,6 +265,11 @@ public final class ServerContext extends Context implements ProxyBridgeLeftSideC
         if (isProxy && bridgeRightSide == null) {
           // we are a proxy, but the bridge is not set yet
           // queue the frame
+          if (!retain(hidden.payload().length)) {
+            logger.warning(STR."Too many frames queued for the next proxy of chain \{chainId}");
+            silentlyClose();
+            return;
+          }
           framesForTheNextHop.addLast(hidden);
         } else if (isProxy) {
           // we are a proxy and the bridge is set
@@ -175,6 +278,30 @@ public final class ServerContext extends Context implements ProxyBridgeLeftSideC
         }
       }
 
+      case Subscribe subscribe -> {
+        if (!isAuthenticated()) {
+          logger.warning(STR."Client \{super.getSocket().getRemoteAddress()} is not authenticated");
+          silentlyClose();
+          return;
+        }
+        if (subscribe.code() == (byte) 1) {
+          server.subscribe(subscribe.codexId(), this);
+          subscribedCodex.add(subscribe.codexId());
+        } else {
+          server.unsubscribe(subscribe.codexId(), this);
+          subscribedCodex.remove(subscribe.codexId());
+        }
+      }
+
+      case LoadReport loadReport -> {
+        if (!isAuthenticated()) {
+          logger.warning(STR."Client \{super.getSocket().getRemoteAddress()} is not authenticated");
+          silentlyClose();
+          return;
+        }
+        server.reportLoad(login, loadReport);
+      }
+
       case Update update -> {
         if (!isAuthenticated()) {
           logger.warning(STR."Client \{super.getSocket().getRemoteAddress()} is not authenticated");
@@ -214,14 +341,20 @@ public final class ServerContext extends Context implements ProxyBridgeLeftSideC
     this.bridgeRightSide = bridgeRightSide;
     // send queued frames
     while (!framesForTheNextHop.isEmpty()) {
-      this.bridgeRightSide.queueFrame(framesForTheNextHop.pollFirst());
+      var hidden = framesForTheNextHop.pollFirst();
+      release(hidden.payload().length);
+      this.bridgeRightSide.queueFrame(hidden);
     }
   }
 
   @Override
   public void silentlyClose() {
     if (login != null) { // when the client is a downloader
-      server.removeClient(login, sharedCodex);
+      server.removeClient(login, sharedCodex, subscribedCodex);
+    }
+    if (node != -1) {
+      server.nodeDisconnected(node);
+      node = -1;
     }
     if (!isClosed && chainId != null && bridgeRightSide != null) {
       // close the bridge
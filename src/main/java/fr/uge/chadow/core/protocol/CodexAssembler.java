@@ -0,0 +1,97 @@
+package fr.uge.chadow.core.protocol;
+
+import fr.uge.chadow.core.protocol.field.Codex;
+
+import java.util.HashMap;
+import java.util.Objects;
+
+/**
+ * Rebuilds a codex from its segments, decoding each segment as soon as it arrives.
+ * Segments may arrive in any order, a segment received twice overwrites the same files.
+ * <p>
+ * The number of files comes from the peer and is not trusted: the files are kept by segment as they arrive,
+ * and the codex is only allocated once every segment is received. The memory kept is bounded by the caller,
+ * see receivedBytes.
+ */
+public class CodexAssembler {
+  private final String codexId;
+  private final String name;
+  private final int numberOfFiles;
+  private final HashMap<Integer, Codex.FileInfo[]> segments = new HashMap<>(); // first file -> files
+  private int receivedFiles;
+  private long receivedBytes;
+
+  /**
+   * Create an assembler from the first segment received
+   *
+   * @param segment any segment of the codex
+   * @throws IllegalArgumentException if the announced number of files is invalid
+   */
+  public CodexAssembler(CodexSegment segment) {
+    Objects.requireNonNull(segment);
+    if (segment.numberOfFiles() < 0) {
+      throw new IllegalArgumentException(STR."Invalid number of files \{segment.numberOfFiles()}");
+    }
+    this.codexId = segment.codexId();
+    this.name = segment.name();
+    this.numberOfFiles = segment.numberOfFiles();
+  }
+
+  /**
+   * Decode a segment and add its files
+   *
+   * @param segment the segment
+   * @return the new files, the first one being at index segment.firstFile()
+   * @throws IllegalArgumentException if the segment doesn't belong to the codex or is malformed
+   */
+  public Codex.FileInfo[] add(CodexSegment segment) {
+    if (!segment.codexId().equals(codexId) || !segment.name().equals(name)
+            || segment.numberOfFiles() != numberOfFiles) {
+      throw new IllegalArgumentException("Segment of another codex");
+    }
+    // the segments are cut every FILES_PER_SEGMENT files, see CodexSegment.split
+    var first = segment.firstFile();
+    if (first < 0 || first % CodexSegment.FILES_PER_SEGMENT != 0 || (first >= numberOfFiles && first != 0)) {
+      throw new IllegalArgumentException("Segment out of the codex");
+    }
+    var newFiles = segment.files();
+    receivedBytes += segment.rawLength();
+    if (newFiles.length != Math.min(CodexSegment.FILES_PER_SEGMENT, numberOfFiles - first)) {
+      throw new IllegalArgumentException("Segment out of the codex");
+    }
+    if (segments.put(first, newFiles) == null) {
+      receivedFiles += newFiles.length;
+    }
+    return newFiles;
+  }
+
+  public String codexId() {
+    return codexId;
+  }
+
+  /**
+   * @return the decoded length of the segments added, the memory kept by the assembler is in proportion
+   */
+  public long receivedBytes() {
+    return receivedBytes;
+  }
+
+  public boolean isComplete() {
+    return receivedFiles == numberOfFiles && !segments.isEmpty();
+  }
+
+  /**
+   * Get the assembled codex
+   *
+   * @return the codex
+   * @throws IllegalStateException if segments are missing
+   */
+  public Codex codex() {
+    if (!isComplete()) {
+      throw new IllegalStateException("Codex is not complete");
+    }
+    var files = new Codex.FileInfo[numberOfFiles];
+    segments.forEach((first, segmentFiles) -> System.arraycopy(segmentFiles, 0, files, first, segmentFiles.length));
+    return new Codex(codexId, name, files);
+  }
+}
@@ -0,0 +1,137 @@
+package fr.uge.chadow.core.protocol;
+
+import fr.uge.chadow.core.protocol.field.Codex;
+import fr.uge.chadow.core.reader.GlobalReader;
+import fr.uge.chadow.core.reader.Reader;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A slice of the files of a codex, deflated.
+ * Used instead of Propose and RequestResponse for codexes with many files,
+ * so the metadata is sent as several small frames decoded one at a time.
+ *
+ * @param codexId       the id of the codex
+ * @param name          the name of the codex
+ * @param numberOfFiles the total number of files in the codex
+ * @param firstFile     the index in the codex of the first file of this segment
+ * @param rawLength     the length of the files encoding before compression
+ * @param payload       the deflated encoding of the files of the segment
+ */
+public record CodexSegment(String codexId, String name, int numberOfFiles, int firstFile, int rawLength,
+                           byte[] payload) implements Frame {
+  public static final int FILES_PER_SEGMENT = 512;
+  public static final int MAX_RAW_LENGTH = 4 * 1024 * 1024;
+
+  /**
+   * Check if a codex is big enough to be sent in segments
+   *
+   * @param codex the codex
+   * @return true if the codex has more files than a single segment
+   */
+  public static boolean isSegmented(Codex codex) {
+    return codex.files().length > FILES_PER_SEGMENT;
+  }
+
+  /**
+   * Split a codex in segments of FILES_PER_SEGMENT files
+   *
+   * @param codex the codex
+   * @return the segments in order
+   */
+  public static CodexSegment[] split(Codex codex) {
+    var files = codex.files();
+    var segments = new ArrayList<CodexSegment>();
+    var deflater = new Deflater();
+    try {
+      for (var first = 0; first < files.length || first == 0; first += FILES_PER_SEGMENT) {
+        var last = Math.min(files.length, first + FILES_PER_SEGMENT);
+        var raw = new ByteArrayOutputStream();
+        for (var i = first; i < last; i++) {
+          var fileBuffer = files[i].toByteBuffer().flip();
+          raw.write(fileBuffer.array(), 0, fileBuffer.remaining());
+        }
+        var rawBytes = raw.toByteArray();
+        segments.add(new CodexSegment(codex.id(), codex.name(), files.length, first, rawBytes.length,
+                deflate(deflater, rawBytes)));
+      }
+    } finally {
+      deflater.end();
+    }
+    return segments.toArray(CodexSegment[]::new);
+  }
+
+  private static byte[] deflate(Deflater deflater, byte[] raw) {
+    deflater.reset();
+    deflater.setInput(raw);
+    deflater.finish();
+    var out = new ByteArrayOutputStream(raw.length / 2 + 16);
+    var buffer = new byte[8192];
+    while (!deflater.finished()) {
+      var written = deflater.deflate(buffer);
+      out.write(buffer, 0, written);
+    }
+    return out.toByteArray();
+  }
+
+  /**
+   * Inflate and decode the files of the segment
+   *
+   * @return the files, the first one being at index firstFile in the codex
+   * @throws IllegalArgumentException if the segment is malformed
+   */
+  public Codex.FileInfo[] files() {
+    if (rawLength < 0 || rawLength > MAX_RAW_LENGTH) {
+      throw new IllegalArgumentException(STR."Invalid segment length \{rawLength}");
+    }
+    var raw = new byte[rawLength];
+    var inflater = new Inflater();
+    try {
+      inflater.setInput(payload);
+      var inflated = inflater.inflate(raw);
+      if (inflated != rawLength || !inflater.finished()) {
+        throw new IllegalArgumentException("Segment length does not match its content");
+      }
+    } catch (DataFormatException e) {
+      throw new IllegalArgumentException("Malformed segment", e);
+    } finally {
+      inflater.end();
+    }
+    var bb = ByteBuffer.wrap(raw);
+    var reader = new GlobalReader<>(Codex.FileInfo.class);
+    var files = new ArrayList<Codex.FileInfo>();
+    while (bb.hasRemaining()) {
+      if (reader.read(bb) != Reader.ProcessStatus.DONE) {
+        throw new IllegalArgumentException("Malformed file in segment");
+      }
+      files.add(reader.get());
+      reader.reset();
+    }
+    return files.toArray(Codex.FileInfo[]::new);
+  }
+
+  @Override
+  public ByteBuffer toByteBuffer() {
+    var bbCodexId = UTF_8.encode(codexId);
+    var bbName = UTF_8.encode(name);
+    var buffer = ByteBuffer.allocate(Byte.BYTES + Integer.BYTES + bbCodexId.remaining() + Integer.BYTES
+            + bbName.remaining() + Integer.BYTES * 3 + Integer.BYTES + payload.length);
+    return buffer.put(Opcode.toByte(this.getClass()))
+                 .putInt(bbCodexId.remaining())
+                 .put(bbCodexId)
+                 .putInt(bbName.remaining())
+                 .put(bbName)
+                 .putInt(numberOfFiles)
+                 .putInt(firstFile)
+                 .putInt(rawLength)
+                 .putInt(payload.length)
+                 .put(payload);
+  }
+}
@@ -5,8 +5,9 @@ import fr.uge.chadow.core.protocol.client.Propose;
 import fr.uge.chadow.core.protocol.client.Request;
 import fr.uge.chadow.core.protocol.server.*;
 import fr.uge.chadow.core.protocol.client.Register;
+import fr.uge.chadow.core.protocol.node.*;
 import fr.uge.chadow.core.protocol.server.Error;
-import fr.uge.chadow.core.reader.GlobalReader;
+import fr.uge.chadow.core.reader.RecordDecoder;
 
 import java.util.HashMap;
 import java.util.Optional;
@@ -30,7 +31,7 @@ public enum Opcode {
   HANDSHAKE(Handshake.class),
   DENIED(Denied.class),
   NEEDCHUNK(NeedChunk.class),
-  //CANCEL (Cancel.class),
+  CANCEL(Cancel.class),
   HERECHUNK(HereChunk.class),
   PROXY(Proxy.class),
   PROXYOPEN(ProxyOpen.class),
@@ -38,6 +39,23 @@ public enum Opcode {
   HIDDEN(Hidden.class),
   UPDATE(Update.class),
   ERROR(Error.class),
+  SUBSCRIBE(Subscribe.class),
+  SHARER_EVENT(SharerEvent.class),
+  PEER_EXCHANGE(PeerExchange.class),
+  CODEX_SEGMENT(CodexSegment.class),
+  ANNOUNCE(Announce.class),
+  METADATA_REQUEST(MetadataRequest.class),
+  LOAD_REPORT(LoadReport.class),
+  PRESENCE_DIGEST(PresenceDigest.class),
+  DIRECTORY_SYNC(DirectorySync.class),
+  DIRECTORY_PAGE(DirectoryPage.class),
+  DIRECTORY_DELTA(DirectoryDelta.class),
+  NODE_HELLO(NodeHello.class),
+  FORWARD(Forward.class),
+  FORWARDED(Forwarded.class),
+  WITHDRAW(Withdraw.class),
+  CODEX_CANDIDATES(CodexCandidates.class),
+  RESUME_SEARCH(ResumeSearch.class),
   ;
 
   private static final HashMap<Class<? extends Record>, Opcode> classMap = new HashMap<>();
@@ -55,14 +73,12 @@ public enum Opcode {
   }
 
   /**
-   * Method that get the GlobalReader
+   * Method that get the decoding plan, shared by all the readers
    *
-   * @return the GlobalReader of the associated Frame
+   * @return the RecordDecoder of the associated Frame
    */
-  public GlobalReader<? extends Frame> getReader() {
-    @SuppressWarnings("unchecked")
-    var reader = (GlobalReader<? extends Frame>) new GlobalReader<>(recordClass);
-    return reader;
+  public RecordDecoder<? extends Record> getDecoder() {
+    return RecordDecoder.of(recordClass);
   }
 
   /**
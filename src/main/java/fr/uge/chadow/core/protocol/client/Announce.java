@@ -0,0 +1,31 @@
+package fr.uge.chadow.core.protocol.client;
+
+import fr.uge.chadow.core.protocol.Frame;
+import fr.uge.chadow.core.protocol.Opcode;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Announce the sharing of codexes by their id only.
+ * The server asks the metadata of the codexes it doesn't know with a MetadataRequest.
+ */
+public record Announce(String[] codexIds) implements Frame {
+  public static final int MAX_CODEXES = 1024;
+
+  @Override
+  public ByteBuffer toByteBuffer() {
+    var codexIdsByteBuffersArray = new ByteBuffer[codexIds.length];
+    int bufferCapacity = 0;
+    for (int i = 0; i < codexIds.length; i++) {
+      codexIdsByteBuffersArray[i] = UTF_8.encode(codexIds[i]);
+      bufferCapacity += Integer.BYTES + codexIdsByteBuffersArray[i].remaining();
+    }
+    var bb = ByteBuffer.allocate(Byte.BYTES + Integer.BYTES + bufferCapacity);
+    bb.put(Opcode.toByte(this.getClass())).putInt(codexIds.length);
+    Arrays.stream(codexIdsByteBuffersArray).forEach(bbCodexId -> bb.putInt(bbCodexId.remaining()).put(bbCodexId));
+    return bb;
+  }
+}
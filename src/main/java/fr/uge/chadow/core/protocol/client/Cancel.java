@@ -0,0 +1,21 @@
+package fr.uge.chadow.core.protocol.client;
+
+import fr.uge.chadow.core.protocol.Frame;
+import fr.uge.chadow.core.protocol.Opcode;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Revokes a chunk previously asked with a {@link NeedChunk}.
+ * Same layout as the request, only the opcode differs.
+ */
+public record Cancel(long offset, int length) implements Frame {
+
+  @Override
+  public ByteBuffer toByteBuffer() {
+    var buffer = ByteBuffer.allocate(Byte.BYTES + Long.BYTES + Integer.BYTES);
+    return buffer.put(Opcode.toByte(this.getClass()))
+                 .putLong(offset)
+                 .putInt(length);
+  }
+}
@@ -0,0 +1,28 @@
+package fr.uge.chadow.core.protocol.client;
+
+import fr.uge.chadow.core.protocol.Frame;
+import fr.uge.chadow.core.protocol.Opcode;
+
+import java.nio.ByteBuffer;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Ask the user directory of the server.
+ * <p>
+ * When the server still knows the changes since the epoch and the version, and after is empty,
+ * it answers them with a DirectoryDelta. Otherwise it answers the usernames following after,
+ * in a DirectoryPage. A client that knows no directory sends a negative version.
+ */
+public record DirectorySync(long epoch, long version, String after) implements Frame {
+  @Override
+  public ByteBuffer toByteBuffer() {
+    var bbAfter = UTF_8.encode(after);
+    var bb = ByteBuffer.allocate(Byte.BYTES + Long.BYTES + Long.BYTES + Integer.BYTES + bbAfter.remaining());
+    return bb.put(Opcode.toByte(this.getClass()))
+            .putLong(epoch)
+            .putLong(version)
+            .putInt(bbAfter.remaining())
+            .put(bbAfter);
+  }
+}
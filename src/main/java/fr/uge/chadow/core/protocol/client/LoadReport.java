@@ -0,0 +1,22 @@
+package fr.uge.chadow.core.protocol.client;
+
+import fr.uge.chadow.core.protocol.Frame;
+import fr.uge.chadow.core.protocol.Opcode;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Periodic report of the upload load of a client, sent to the server.
+ * The server prefers the sharers with spare capacity when it hands out sharers.
+ *
+ * @param uploads    the number of downloaders the client is currently sharing with
+ * @param uploadRate the upload rate since the previous report, in KiB/s
+ * @param freeSlots  the number of downloaders the client can still take
+ */
+public record LoadReport(int uploads, int uploadRate, int freeSlots) implements Frame {
+  @Override
+  public ByteBuffer toByteBuffer() {
+    var bb = ByteBuffer.allocate(Byte.BYTES + 3 * Integer.BYTES);
+    return bb.put(Opcode.toByte(this.getClass())).putInt(uploads).putInt(uploadRate).putInt(freeSlots);
+  }
+}
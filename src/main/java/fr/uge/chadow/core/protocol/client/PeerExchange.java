@@ -0,0 +1,31 @@
+package fr.uge.chadow.core.protocol.client;
+
+import fr.uge.chadow.core.protocol.Frame;
+import fr.uge.chadow.core.protocol.Opcode;
+import fr.uge.chadow.core.protocol.field.SocketField;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Exchanged between a downloader and a sharer in open mode,
+ * gives the sharers known for the codex of the connection.
+ */
+public record PeerExchange(SocketField[] sharers) implements Frame {
+  @Override
+  public ByteBuffer toByteBuffer() {
+    var sharersByteBuffersArray = new ByteBuffer[sharers.length];
+    var bufferCapacity = 0;
+    for (int i = 0; i < sharers.length; i++) {
+      sharersByteBuffersArray[i] = sharers[i].toByteBuffer()
+                                             .flip();
+      bufferCapacity += sharersByteBuffersArray[i].remaining();
+    }
+    var bb = ByteBuffer.allocate(Byte.BYTES + Integer.BYTES + bufferCapacity);
+    bb.put(Opcode.toByte(this.getClass()))
+      .putInt(sharers.length);
+    Arrays.stream(sharersByteBuffersArray)
+          .forEach(bb::put);
+    return bb;
+  }
+}
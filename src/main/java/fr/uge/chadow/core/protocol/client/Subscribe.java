@@ -0,0 +1,22 @@
+package fr.uge.chadow.core.protocol.client;
+
+import fr.uge.chadow.core.protocol.Frame;
+import fr.uge.chadow.core.protocol.Opcode;
+
+import java.nio.ByteBuffer;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Ask the server to be notified (code 1) or to stop being notified (code 0)
+ * of the sharers joining or leaving a codex being downloaded in open mode.
+ */
+public record Subscribe(byte code, String codexId) implements Frame {
+  @Override
+  public ByteBuffer toByteBuffer() {
+    var opcode = Opcode.toByte(this.getClass());
+    var bbCodexId = UTF_8.encode(codexId);
+    var bb = ByteBuffer.allocate(Byte.BYTES + Byte.BYTES + Integer.BYTES + bbCodexId.remaining());
+    return bb.put(opcode).put(code).putInt(bbCodexId.remaining()).put(bbCodexId);
+  }
+}
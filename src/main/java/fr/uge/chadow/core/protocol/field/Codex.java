@@ -11,6 +11,10 @@ import java.util.*;
  * on the client machine
  */
 public record Codex(String id, String name, Codex.FileInfo[] files) {
+  /**
+   * The length of a full codex id, a SHA-1 in hexadecimal. A shorter id is abbreviated
+   */
+  public static final int ID_LENGTH = 40;
   private static final Charset UTF8 = StandardCharsets.UTF_8;
 
   public long totalSize() {
@@ -27,7 +31,7 @@ public record Codex(String id, String name, Codex.FileInfo[] files) {
       Objects.requireNonNull(relativePath);
     }
     
-    private ByteBuffer toByteBuffer() {
+    public ByteBuffer toByteBuffer() {
       var bbId = UTF8.encode(id);
       var bbFilename = UTF8.encode(filename);
       var bbAbsolutePath = UTF8.encode(relativePath);
@@ -0,0 +1,33 @@
+package fr.uge.chadow.core.protocol.node;
+
+import fr.uge.chadow.core.protocol.Frame;
+import fr.uge.chadow.core.protocol.Opcode;
+import fr.uge.chadow.core.protocol.field.SocketField;
+
+import java.nio.ByteBuffer;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A frame of a client forwarded to the node owning the codex it is about.
+ * The login and the listening socket identify the client as a sharer on the owner.
+ * The owner answers the frames whose request id is not 0 with a Forwarded frame, even when it has nothing to say.
+ *
+ * @param frame the encoded frame of the client
+ */
+public record Forward(long requestId, String login, SocketField sharer, byte[] frame) implements Frame {
+  @Override
+  public ByteBuffer toByteBuffer() {
+    var bbLogin = UTF_8.encode(login);
+    var bbSharer = sharer.toByteBuffer().flip();
+    var bb = ByteBuffer.allocate(Byte.BYTES + Long.BYTES + Integer.BYTES + bbLogin.remaining() + bbSharer.remaining()
+            + Integer.BYTES + frame.length);
+    return bb.put(Opcode.toByte(this.getClass()))
+            .putLong(requestId)
+            .putInt(bbLogin.remaining())
+            .put(bbLogin)
+            .put(bbSharer)
+            .putInt(frame.length)
+            .put(frame);
+  }
+}
@@ -0,0 +1,22 @@
+package fr.uge.chadow.core.protocol.node;
+
+import fr.uge.chadow.core.protocol.Frame;
+import fr.uge.chadow.core.protocol.Opcode;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The answer of the owner to a forwarded frame
+ *
+ * @param frames the encoded frames to relay to the client, one after the other, possibly none
+ */
+public record Forwarded(long requestId, byte[] frames) implements Frame {
+  @Override
+  public ByteBuffer toByteBuffer() {
+    var bb = ByteBuffer.allocate(Byte.BYTES + Long.BYTES + Integer.BYTES + frames.length);
+    return bb.put(Opcode.toByte(this.getClass()))
+            .putLong(requestId)
+            .putInt(frames.length)
+            .put(frames);
+  }
+}
@@ -0,0 +1,51 @@
+package fr.uge.chadow.core.protocol.node;
+
+import fr.uge.chadow.core.protocol.Frame;
+import fr.uge.chadow.core.reader.FrameReader;
+import fr.uge.chadow.core.reader.Reader;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Frames carried as bytes between the nodes of a cluster
+ */
+public final class FrameBytes {
+  private FrameBytes() {
+  }
+
+  /**
+   * @param frames the frames
+   * @return the frames encoded one after the other
+   */
+  public static byte[] encode(List<? extends Frame> frames) {
+    var buffers = frames.stream().map(frame -> frame.toByteBuffer().flip()).toList();
+    var bb = ByteBuffer.allocate(buffers.stream().mapToInt(ByteBuffer::remaining).sum());
+    buffers.forEach(bb::put);
+    return bb.array();
+  }
+
+  public static byte[] encode(Frame frame) {
+    return encode(List.of(frame));
+  }
+
+  /**
+   * @param bytes frames encoded one after the other
+   * @return the frames
+   * @throws IllegalArgumentException if the bytes are not a sequence of complete frames
+   */
+  public static List<Frame> decode(byte[] bytes) {
+    var bb = ByteBuffer.wrap(bytes);
+    var frames = new ArrayList<Frame>();
+    var frameReader = new FrameReader();
+    while (bb.hasRemaining()) {
+      if (frameReader.read(bb) != Reader.ProcessStatus.DONE) {
+        throw new IllegalArgumentException("Invalid forwarded frames");
+      }
+      frames.add(frameReader.get());
+      frameReader.reset();
+    }
+    return frames;
+  }
+}
@@ -0,0 +1,17 @@
+package fr.uge.chadow.core.protocol.node;
+
+import fr.uge.chadow.core.protocol.Frame;
+import fr.uge.chadow.core.protocol.Opcode;
+
+import java.nio.ByteBuffer;
+
+/**
+ * First frame sent by a node of the cluster on the link it opens to another node, instead of a Register
+ */
+public record NodeHello(int node) implements Frame {
+  @Override
+  public ByteBuffer toByteBuffer() {
+    var bb = ByteBuffer.allocate(Byte.BYTES + Integer.BYTES);
+    return bb.put(Opcode.toByte(this.getClass())).putInt(node);
+  }
+}
@@ -0,0 +1,40 @@
+package fr.uge.chadow.core.protocol.node;
+
+import fr.uge.chadow.core.protocol.Frame;
+import fr.uge.chadow.core.protocol.Opcode;
+import fr.uge.chadow.core.protocol.client.Search;
+
+import java.nio.ByteBuffer;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * The next page of a search sent to every node: each node returns its results after the last result
+ * of the page merged from every node, given by its registration date and codex id.
+ */
+public record ResumeSearch(String codexName, int options, long date, int results, long lastDate,
+                           String lastCodexId) implements Frame {
+  /**
+   * @return the search of the page, without offset
+   */
+  public Search search() {
+    return new Search(codexName, options, date, results, 0);
+  }
+
+  @Override
+  public ByteBuffer toByteBuffer() {
+    var bbCodexName = UTF_8.encode(codexName);
+    var bbLastCodexId = UTF_8.encode(lastCodexId);
+    var bb = ByteBuffer.allocate(Byte.BYTES + Integer.BYTES + bbCodexName.remaining() + Integer.BYTES + Long.BYTES
+            + Integer.BYTES + Long.BYTES + Integer.BYTES + bbLastCodexId.remaining());
+    return bb.put(Opcode.toByte(this.getClass()))
+            .putInt(bbCodexName.remaining())
+            .put(bbCodexName)
+            .putInt(options)
+            .putLong(date)
+            .putInt(results)
+            .putLong(lastDate)
+            .putInt(bbLastCodexId.remaining())
+            .put(bbLastCodexId);
+  }
+}
@@ -0,0 +1,24 @@
+package fr.uge.chadow.core.protocol.node;
+
+import fr.uge.chadow.core.protocol.Frame;
+import fr.uge.chadow.core.protocol.Opcode;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A client stopped sharing codexes owned by another node, it is forwarded to the owner when the client disconnects
+ */
+public record Withdraw(String[] codexIds) implements Frame {
+  @Override
+  public ByteBuffer toByteBuffer() {
+    var codexIdsByteBuffers = Arrays.stream(codexIds).map(UTF_8::encode).toArray(ByteBuffer[]::new);
+    var bufferCapacity = Arrays.stream(codexIdsByteBuffers).mapToInt(bbCodexId -> Integer.BYTES + bbCodexId.remaining()).sum();
+    var bb = ByteBuffer.allocate(Byte.BYTES + Integer.BYTES + bufferCapacity);
+    bb.put(Opcode.toByte(this.getClass())).putInt(codexIds.length);
+    Arrays.stream(codexIdsByteBuffers).forEach(bbCodexId -> bb.putInt(bbCodexId.remaining()).put(bbCodexId));
+    return bb;
+  }
+}
@@ -0,0 +1,26 @@
+package fr.uge.chadow.core.protocol.server;
+
+import fr.uge.chadow.core.protocol.Frame;
+import fr.uge.chadow.core.protocol.Opcode;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * The answer to a request of an abbreviated codex id that doesn't match a single codex:
+ * the ids of the codexes it is a prefix of, none if it matches no codex.
+ */
+public record CodexCandidates(String codexId, String[] codexIds) implements Frame {
+  @Override
+  public ByteBuffer toByteBuffer() {
+    var bbCodexId = UTF_8.encode(codexId);
+    var codexIdsByteBuffers = Arrays.stream(codexIds).map(UTF_8::encode).toArray(ByteBuffer[]::new);
+    var bufferCapacity = Arrays.stream(codexIdsByteBuffers).mapToInt(bbCandidate -> Integer.BYTES + bbCandidate.remaining()).sum();
+    var bb = ByteBuffer.allocate(Byte.BYTES + 2 * Integer.BYTES + bbCodexId.remaining() + bufferCapacity);
+    bb.put(Opcode.toByte(this.getClass())).putInt(bbCodexId.remaining()).put(bbCodexId).putInt(codexIds.length);
+    Arrays.stream(codexIdsByteBuffers).forEach(bbCandidate -> bb.putInt(bbCandidate.remaining()).put(bbCandidate));
+    return bb;
+  }
+}
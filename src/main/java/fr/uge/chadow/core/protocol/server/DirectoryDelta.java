@@ -0,0 +1,34 @@
+package fr.uge.chadow.core.protocol.server;
+
+import fr.uge.chadow.core.protocol.Frame;
+import fr.uge.chadow.core.protocol.Opcode;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * The users whose presence changed since the version asked, with their presence at the given version.
+ * A user is in one list only. When complete is 0, other changes follow the version
+ * and the client asks them again from this version.
+ */
+public record DirectoryDelta(long epoch, long version, String[] joined, String[] left, byte complete) implements Frame {
+  public static final int MAX_USERS = 1024;
+
+  @Override
+  public ByteBuffer toByteBuffer() {
+    var joinedByteBuffers = Arrays.stream(joined).map(UTF_8::encode).toArray(ByteBuffer[]::new);
+    var leftByteBuffers = Arrays.stream(left).map(UTF_8::encode).toArray(ByteBuffer[]::new);
+    var bufferCapacity = Stream.concat(Arrays.stream(joinedByteBuffers), Arrays.stream(leftByteBuffers))
+            .mapToInt(bbUsername -> Integer.BYTES + bbUsername.remaining())
+            .sum();
+    var bb = ByteBuffer.allocate(Byte.BYTES + Long.BYTES + Long.BYTES + 2 * Integer.BYTES + bufferCapacity + Byte.BYTES);
+    bb.put(Opcode.toByte(this.getClass())).putLong(epoch).putLong(version).putInt(joined.length);
+    Arrays.stream(joinedByteBuffers).forEach(bbUsername -> bb.putInt(bbUsername.remaining()).put(bbUsername));
+    bb.putInt(left.length);
+    Arrays.stream(leftByteBuffers).forEach(bbUsername -> bb.putInt(bbUsername.remaining()).put(bbUsername));
+    return bb.put(complete);
+  }
+}
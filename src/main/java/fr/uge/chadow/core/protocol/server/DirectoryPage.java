@@ -0,0 +1,30 @@
+package fr.uge.chadow.core.protocol.server;
+
+import fr.uge.chadow.core.protocol.Frame;
+import fr.uge.chadow.core.protocol.Opcode;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A page of the user directory, in username order.
+ * The version is the version of the directory when the page was read,
+ * next is the username to ask the following page after, empty on the last page.
+ */
+public record DirectoryPage(long epoch, long version, String[] usernames, String next) implements Frame {
+  public static final int MAX_USERS = 1024;
+
+  @Override
+  public ByteBuffer toByteBuffer() {
+    var usernamesByteBuffers = Arrays.stream(usernames).map(UTF_8::encode).toArray(ByteBuffer[]::new);
+    var bbNext = UTF_8.encode(next);
+    var bufferCapacity = Arrays.stream(usernamesByteBuffers).mapToInt(bbUsername -> Integer.BYTES + bbUsername.remaining()).sum();
+    var bb = ByteBuffer.allocate(Byte.BYTES + Long.BYTES + Long.BYTES + Integer.BYTES + bufferCapacity
+            + Integer.BYTES + bbNext.remaining());
+    bb.put(Opcode.toByte(this.getClass())).putLong(epoch).putLong(version).putInt(usernames.length);
+    Arrays.stream(usernamesByteBuffers).forEach(bbUsername -> bb.putInt(bbUsername.remaining()).put(bbUsername));
+    return bb.putInt(bbNext.remaining()).put(bbNext);
+  }
+}
@@ -0,0 +1,29 @@
+package fr.uge.chadow.core.protocol.server;
+
+import fr.uge.chadow.core.protocol.Frame;
+import fr.uge.chadow.core.protocol.Opcode;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Sent in response to an Announce, with the ids of the codexes the server doesn't know.
+ * The client answers with a Propose (or segments) for each of them.
+ */
+public record MetadataRequest(String[] codexIds) implements Frame {
+  @Override
+  public ByteBuffer toByteBuffer() {
+    var codexIdsByteBuffersArray = new ByteBuffer[codexIds.length];
+    int bufferCapacity = 0;
+    for (int i = 0; i < codexIds.length; i++) {
+      codexIdsByteBuffersArray[i] = UTF_8.encode(codexIds[i]);
+      bufferCapacity += Integer.BYTES + codexIdsByteBuffersArray[i].remaining();
+    }
+    var bb = ByteBuffer.allocate(Byte.BYTES + Integer.BYTES + bufferCapacity);
+    bb.put(Opcode.toByte(this.getClass())).putInt(codexIds.length);
+    Arrays.stream(codexIdsByteBuffersArray).forEach(bbCodexId -> bb.putInt(bbCodexId.remaining()).put(bbCodexId));
+    return bb;
+  }
+}
@@ -0,0 +1,34 @@
+package fr.uge.chadow.core.protocol.server;
+
+import fr.uge.chadow.core.protocol.Frame;
+import fr.uge.chadow.core.protocol.Opcode;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * The users that joined and left the server since the previous digest.
+ * The users that left are applied before the users that joined: a user may be in both lists
+ * when it left and a new user logged in with the same login.
+ */
+public record PresenceDigest(String[] joined, String[] left) implements Frame {
+  public static final int MAX_USERS = 1024;
+
+  @Override
+  public ByteBuffer toByteBuffer() {
+    var joinedByteBuffers = Arrays.stream(joined).map(UTF_8::encode).toArray(ByteBuffer[]::new);
+    var leftByteBuffers = Arrays.stream(left).map(UTF_8::encode).toArray(ByteBuffer[]::new);
+    var bufferCapacity = Stream.concat(Arrays.stream(joinedByteBuffers), Arrays.stream(leftByteBuffers))
+            .mapToInt(bbUsername -> Integer.BYTES + bbUsername.remaining())
+            .sum();
+    var bb = ByteBuffer.allocate(Byte.BYTES + 2 * Integer.BYTES + bufferCapacity);
+    bb.put(Opcode.toByte(this.getClass())).putInt(joined.length);
+    Arrays.stream(joinedByteBuffers).forEach(bbUsername -> bb.putInt(bbUsername.remaining()).put(bbUsername));
+    bb.putInt(left.length);
+    Arrays.stream(leftByteBuffers).forEach(bbUsername -> bb.putInt(bbUsername.remaining()).put(bbUsername));
+    return bb;
+  }
+}
@@ -0,0 +1,27 @@
+package fr.uge.chadow.core.protocol.server;
+
+import fr.uge.chadow.core.protocol.Frame;
+import fr.uge.chadow.core.protocol.Opcode;
+import fr.uge.chadow.core.protocol.field.SocketField;
+
+import java.nio.ByteBuffer;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Pushed to the subscribers of a codex when a sharer joins (code 1) or leaves (code 0)
+ */
+public record SharerEvent(byte code, String codexId, SocketField socket) implements Frame {
+  @Override
+  public ByteBuffer toByteBuffer() {
+    var opcode = Opcode.toByte(this.getClass());
+    var bbCodexId = UTF_8.encode(codexId);
+    var socketBuffer = socket.toByteBuffer().flip();
+    var bb = ByteBuffer.allocate(Byte.BYTES + Byte.BYTES + Integer.BYTES + bbCodexId.remaining() + socketBuffer.remaining());
+    return bb.put(opcode)
+             .put(code)
+             .putInt(bbCodexId.remaining())
+             .put(bbCodexId)
+             .put(socketBuffer);
+  }
+}
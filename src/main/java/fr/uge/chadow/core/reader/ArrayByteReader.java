@@ -1,14 +1,16 @@
 package fr.uge.chadow.core.reader;
 
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 public class ArrayByteReader implements Reader<byte[]> {
   private enum State {
     DONE, WAITING, ERROR
   }
 
+  private static final int INITIAL_SIZE = 8 * 1024;
+
   private final IntReader intReader = new IntReader();
-  private final ByteReader byteReader = new ByteReader();
 
   private State state = State.WAITING;
   private int size = -1;
@@ -16,13 +18,13 @@ public class ArrayByteReader implements Reader<byte[]> {
   private byte[] value;
 
   @Override
-  public ProcessStatus process(ByteBuffer bb) {
+  public ProcessStatus read(ByteBuffer bb) {
     if (state == State.DONE || state == State.ERROR) {
       throw new IllegalStateException();
     }
 
     if (size == -1) {
-      var result = intReader.process(bb);
+      var result = intReader.read(bb);
       if (result != ProcessStatus.DONE) {
         return result;
       }
@@ -30,17 +32,20 @@ public class ArrayByteReader implements Reader<byte[]> {
       if (size < 0) {
         return ProcessStatus.ERROR;
       }
-      value = new byte[size];
+      // the size comes from the peer, allocate as the content arrives
+      value = new byte[Math.min(size, INITIAL_SIZE)];
     }
 
     while (currentIndex != size) {
-      var result = byteReader.process(bb);
-      if (result != ProcessStatus.DONE) {
-        return result;
+      if (!bb.hasRemaining()) {
+        return ProcessStatus.REFILL;
+      }
+      if (currentIndex == value.length) {
+        value = Arrays.copyOf(value, (int) Math.min(size, 2L * value.length));
       }
-      value[currentIndex] = byteReader.get();
-      byteReader.reset();
-      currentIndex++;
+      var canRead = Math.min(bb.remaining(), value.length - currentIndex);
+      bb.get(value, currentIndex, canRead);
+      currentIndex += canRead;
     }
     state = State.DONE;
     return ProcessStatus.DONE;
@@ -60,6 +65,5 @@ public class ArrayByteReader implements Reader<byte[]> {
     currentIndex = 0;
     size = -1;
     intReader.reset();
-    byteReader.reset();
   }
 }
@@ -2,12 +2,15 @@ package fr.uge.chadow.core.reader;
 
 import java.lang.reflect.Array;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 public class ArrayReader<T> implements Reader<T[]> {
   private enum State {
     DONE, WAITING, ERROR
   }
 
+  private static final int INITIAL_SIZE = 256;
+
   private final IntReader intReader = new IntReader();
   private final Reader<T> elementReader;
   private final Class<T> elementClass;
@@ -23,13 +26,13 @@ public class ArrayReader<T> implements Reader<T[]> {
   }
 
   @Override
-  public ProcessStatus process(ByteBuffer bb) {
+  public ProcessStatus read(ByteBuffer bb) {
     if (state == State.DONE || state == State.ERROR) {
       throw new IllegalStateException();
     }
 
     if (size == -1) {
-      var result = intReader.process(bb);
+      var result = intReader.read(bb);
       if (result != ProcessStatus.DONE) {
         return result;
       }
@@ -37,16 +40,20 @@ public class ArrayReader<T> implements Reader<T[]> {
       if (size < 0) {
         return ProcessStatus.ERROR;
       }
+      // the size comes from the peer, allocate as the elements arrive
       @SuppressWarnings("unchecked")
-      T[] array = (T[]) Array.newInstance(elementClass, size);
+      T[] array = (T[]) Array.newInstance(elementClass, Math.min(size, INITIAL_SIZE));
       value = array;
     }
 
     while (currentIndex != size) {
-      var result = elementReader.process(bb);
+      var result = elementReader.read(bb);
       if (result != ProcessStatus.DONE) {
         return result;
       }
+      if (currentIndex == value.length) {
+        value = Arrays.copyOf(value, (int) Math.min(size, 2L * value.length));
+      }
       value[currentIndex] = elementReader.get();
       elementReader.reset();
       currentIndex++;
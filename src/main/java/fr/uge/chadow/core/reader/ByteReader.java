@@ -3,6 +3,7 @@ package fr.uge.chadow.core.reader;
 import java.nio.ByteBuffer;
 
 public class ByteReader implements Reader<Byte> {
+
   private enum State {
     DONE, WAITING, ERROR
   }
@@ -12,23 +13,20 @@ public class ByteReader implements Reader<Byte> {
   private byte value;
 
   @Override
-  public ProcessStatus process(ByteBuffer bb) {
+  public ProcessStatus read(ByteBuffer buffer) {
     if (state == State.DONE || state == State.ERROR) {
       throw new IllegalStateException();
     }
-    bb.flip();
-    try {
-      if (bb.remaining() <= internalBuffer.remaining()) {
-        internalBuffer.put(bb);
-      } else {
-        var oldLimit = bb.limit();
-        bb.limit(internalBuffer.remaining());
-        internalBuffer.put(bb);
-        bb.limit(oldLimit);
-      }
-    } finally {
-      bb.compact();
+    if (internalBuffer.position() == 0 && buffer.remaining() >= Byte.BYTES) {
+      // the whole value is available, no copy
+      value = buffer.get();
+      state = State.DONE;
+      return ProcessStatus.DONE;
     }
+    var canRead = Math.min(buffer.remaining(), internalBuffer.remaining());
+    internalBuffer.put(internalBuffer.position(), buffer, buffer.position(), canRead);
+    internalBuffer.position(internalBuffer.position() + canRead);
+    buffer.position(buffer.position() + canRead);
     if (internalBuffer.hasRemaining()) {
       return ProcessStatus.REFILL;
     }
@@ -0,0 +1,263 @@
+package fr.uge.chadow.core.reader;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Decoding state of a record, driven by its compiled plan.
+ * <p>
+ * The plans are shared, a cursor only keeps the position in the record being read:
+ * the nested records and arrays are decoded with an explicit stack, allocated on first use,
+ * and the content of the component being read. A cursor can be reused for records of any class.
+ * <p>
+ * The memory allocated for a record is charged to a budget as soon as the lengths are known,
+ * and the arrays are allocated incrementally as their content arrives, so a peer announcing
+ * a huge array without sending it doesn't make us allocate it.
+ */
+final class DecoderCursor {
+
+  private static final int MAX_STRING_SIZE = 1024;
+  private static final int REFERENCE_BYTES = 8;
+  private static final int RECORD_BYTES = 16;
+  private static final int INITIAL_BYTES = 8 * 1024;
+  private static final int INITIAL_ELEMENTS = 256;
+
+  /**
+   * A record, or an array of elements, being decoded
+   */
+  private static final class Level {
+    private RecordDecoder<?> decoder; // the record, or the elements if it is an array of records
+    private RecordDecoder.Field array; // null if the level is a record
+    private Object[] values;
+    private int size;
+    private int index;
+  }
+
+  private Level[] stack;
+  private int depth = -1;
+  private long primitive;
+  private int primitiveBytes;
+  private int length = -1;
+  private byte[] bytes;
+  private int bytesPosition;
+  private Object value;
+  private long budget;
+  private long allocated;
+
+  /**
+   * Start decoding a record without limit of memory
+   *
+   * @param decoder the plan of the record
+   */
+  void start(RecordDecoder<?> decoder) {
+    start(decoder, Long.MAX_VALUE);
+  }
+
+  /**
+   * Start decoding a record
+   *
+   * @param decoder the plan of the record
+   * @param budget  the maximum number of bytes allocated for the record
+   */
+  void start(RecordDecoder<?> decoder, long budget) {
+    reset();
+    this.budget = budget;
+    push(decoder, null, new Object[decoder.size()], decoder.size());
+  }
+
+  /**
+   * @return true if the last record was rejected because it exceeds its budget
+   */
+  boolean isOverBudget() {
+    return allocated > budget;
+  }
+
+  /**
+   * @return true if a record is being decoded
+   */
+  boolean isStarted() {
+    return depth != -1;
+  }
+
+  /**
+   * Decode as much as possible of the record
+   *
+   * @param bb the buffer in read-mode
+   * @return DONE when the record is decoded, REFILL if more bytes are needed, ERROR if the content is invalid
+   */
+  Reader.ProcessStatus decode(ByteBuffer bb) {
+    for (; ; ) {
+      var level = stack[depth];
+      if (level.index == level.size) {
+        Object done = level.array == null ? level.decoder.construct(level.values) : level.values;
+        level.values = null;
+        if (depth == 0) {
+          value = done;
+          depth = -1;
+          return Reader.ProcessStatus.DONE;
+        }
+        depth--;
+        store(stack[depth], done);
+        continue;
+      }
+      var field = level.array == null ? level.decoder.field(level.index) : null;
+      var kind = field == null ? level.array.element() : field.kind();
+      switch (kind) {
+        case BYTE -> {
+          if (!bb.hasRemaining()) {
+            return Reader.ProcessStatus.REFILL;
+          }
+          store(level, bb.get());
+        }
+        case INT -> {
+          if (!readPrimitive(bb, Integer.BYTES)) {
+            return Reader.ProcessStatus.REFILL;
+          }
+          store(level, (int) primitive);
+        }
+        case LONG -> {
+          if (!readPrimitive(bb, Long.BYTES)) {
+            return Reader.ProcessStatus.REFILL;
+          }
+          store(level, primitive);
+        }
+        case STRING, BYTES -> {
+          if (length == -1) {
+            if (!readPrimitive(bb, Integer.BYTES)) {
+              return Reader.ProcessStatus.REFILL;
+            }
+            length = (int) primitive;
+            if (length < 0 || (kind == RecordDecoder.Kind.STRING && length > MAX_STRING_SIZE) || !charge(length)) {
+              return Reader.ProcessStatus.ERROR;
+            }
+            if (kind == RecordDecoder.Kind.STRING && bb.remaining() >= length) {
+              // the whole string is available, no intermediate copy
+              store(level, StringInterner.decode(bb, length));
+              length = -1;
+              continue;
+            }
+            bytes = new byte[Math.min(length, INITIAL_BYTES)];
+            bytesPosition = 0;
+          }
+          while (bytesPosition < length) {
+            if (!bb.hasRemaining()) {
+              return Reader.ProcessStatus.REFILL;
+            }
+            if (bytesPosition == bytes.length) {
+              bytes = Arrays.copyOf(bytes, (int) Math.min(length, 2L * bytes.length));
+            }
+            var canRead = Math.min(bb.remaining(), bytes.length - bytesPosition);
+            bb.get(bytes, bytesPosition, canRead);
+            bytesPosition += canRead;
+          }
+          store(level, kind == RecordDecoder.Kind.STRING ? StringInterner.decode(bytes, 0, length) : bytes);
+          length = -1;
+          bytes = null;
+        }
+        case RECORD -> {
+          if (!pushRecord(field == null ? level.decoder : field.record())) {
+            return Reader.ProcessStatus.ERROR;
+          }
+        }
+        case ARRAY -> {
+          if (!readPrimitive(bb, Integer.BYTES)) {
+            return Reader.ProcessStatus.REFILL;
+          }
+          var size = (int) primitive;
+          if (size < 0 || !charge((long) REFERENCE_BYTES * size)) {
+            return Reader.ProcessStatus.ERROR;
+          }
+          push(field.record(), field, RecordDecoder.newArray(field, Math.min(size, INITIAL_ELEMENTS)), size);
+        }
+      }
+    }
+  }
+
+  /**
+   * Read an int or a long, possibly split across several calls
+   *
+   * @param bb   the buffer in read-mode
+   * @param size the number of bytes of the primitive
+   * @return true if the primitive is available in the field primitive
+   */
+  private boolean readPrimitive(ByteBuffer bb, int size) {
+    if (primitiveBytes == 0 && bb.remaining() >= size) {
+      primitive = size == Integer.BYTES ? bb.getInt() : bb.getLong();
+      return true;
+    }
+    if (primitiveBytes == 0) {
+      primitive = 0;
+    }
+    while (primitiveBytes < size && bb.hasRemaining()) {
+      primitive = (primitive << 8) | (bb.get() & 0xFF);
+      primitiveBytes++;
+    }
+    if (primitiveBytes < size) {
+      return false;
+    }
+    primitiveBytes = 0;
+    return true;
+  }
+
+  private boolean charge(long bytes) {
+    allocated += bytes;
+    return allocated <= budget;
+  }
+
+  /**
+   * Add a decoded value to a record or an array, growing the array if needed
+   */
+  private static void store(Level level, Object value) {
+    if (level.index == level.values.length) {
+      level.values = Arrays.copyOf(level.values, (int) Math.min(level.size, 2L * level.values.length));
+    }
+    level.values[level.index++] = value;
+  }
+
+  private boolean pushRecord(RecordDecoder<?> decoder) {
+    if (!charge(RECORD_BYTES + (long) REFERENCE_BYTES * decoder.size())) {
+      return false;
+    }
+    push(decoder, null, new Object[decoder.size()], decoder.size());
+    return true;
+  }
+
+  private void push(RecordDecoder<?> decoder, RecordDecoder.Field array, Object[] values, int size) {
+    depth++;
+    if (stack == null) {
+      stack = new Level[4];
+    } else if (depth == stack.length) {
+      stack = Arrays.copyOf(stack, stack.length * 2);
+    }
+    var level = stack[depth];
+    if (level == null) {
+      level = new Level();
+      stack[depth] = level;
+    }
+    level.decoder = decoder;
+    level.array = array;
+    level.values = values;
+    level.size = size;
+    level.index = 0;
+  }
+
+  /**
+   * @return the last decoded record
+   */
+  Object value() {
+    return value;
+  }
+
+  void reset() {
+    for (int i = 0; i <= depth; i++) {
+      stack[i].values = null;
+    }
+    depth = -1;
+    primitiveBytes = 0;
+    length = -1;
+    bytes = null;
+    value = null;
+    budget = Long.MAX_VALUE;
+    allocated = 0;
+  }
+}
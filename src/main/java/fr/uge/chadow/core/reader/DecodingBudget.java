@@ -0,0 +1,104 @@
+package fr.uge.chadow.core.reader;
+
+import fr.uge.chadow.core.Settings;
+import fr.uge.chadow.core.protocol.Opcode;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+
+/**
+ * Maximum memory a connection may allocate to decode a frame, per opcode.
+ * <p>
+ * The lengths of the arrays and strings come from the peer, the decoder charges
+ * them to the budget when they are read and rejects the frame as soon as the budget is exceeded,
+ * before the memory is allocated. The budget is immutable and can be shared by several connections.
+ */
+public final class DecodingBudget {
+  public static final long DEFAULT_CONNECTION_BYTES = 64L * 1024 * 1024;
+  public static final long DEFAULT_FRAME_BYTES = 64L * 1024;
+
+  /**
+   * The frames carrying bulk data, the others are small control frames
+   */
+  private static final EnumSet<Opcode> BULK = EnumSet.of(
+          Opcode.DISCOVERY_RESPONSE, Opcode.PROPOSE, Opcode.REQUEST_RESPONSE, Opcode.SEARCH_RESPONSE,
+          Opcode.HERECHUNK, Opcode.HIDDEN, Opcode.CODEX_SEGMENT, Opcode.ANNOUNCE, Opcode.METADATA_REQUEST,
+          Opcode.FORWARD, Opcode.FORWARDED, Opcode.WITHDRAW);
+
+  public static final DecodingBudget DEFAULT = of(DEFAULT_CONNECTION_BYTES);
+
+  private final long connectionBytes;
+  private final long[] opcodeBytes;
+
+  private DecodingBudget(long connectionBytes, long[] opcodeBytes) {
+    this.connectionBytes = connectionBytes;
+    this.opcodeBytes = opcodeBytes;
+  }
+
+  /**
+   * A budget where the bulk frames may use the whole connection budget
+   * and the control frames at most DEFAULT_FRAME_BYTES
+   *
+   * @param connectionBytes the maximum memory allocated for a frame on the connection
+   * @return the budget
+   */
+  public static DecodingBudget of(long connectionBytes) {
+    if (connectionBytes < 0) {
+      throw new IllegalArgumentException("budget must be positive");
+    }
+    var opcodeBytes = new long[Opcode.values().length];
+    Arrays.fill(opcodeBytes, Math.min(DEFAULT_FRAME_BYTES, connectionBytes));
+    for (var opcode : BULK) {
+      opcodeBytes[opcode.ordinal()] = connectionBytes;
+    }
+    return new DecodingBudget(connectionBytes, opcodeBytes);
+  }
+
+  /**
+   * A budget read from the settings: decodingBudget, the budget of the connection in KiB,
+   * and opcodeBudgets, the budgets of some opcodes as OPCODE/KiB separated by commas, empty for none
+   *
+   * @param settings the settings of the server or of the client
+   * @return the budget
+   * @throws IllegalArgumentException if an opcode budget is invalid
+   */
+  public static DecodingBudget of(Settings settings) {
+    var budget = of(settings.getInt("decodingBudget") * 1024L);
+    var opcodeBudgets = settings.getStr("opcodeBudgets");
+    if (opcodeBudgets.isBlank()) {
+      return budget;
+    }
+    for (var opcodeBudget : opcodeBudgets.split(",")) {
+      var parts = opcodeBudget.trim().split("/");
+      if (parts.length != 2) {
+        throw new IllegalArgumentException(STR."Invalid opcode budget \"\{opcodeBudget}\", expected OPCODE/KiB");
+      }
+      budget = budget.with(Opcode.valueOf(parts[0].toUpperCase()), Long.parseLong(parts[1]) * 1024);
+    }
+    return budget;
+  }
+
+  /**
+   * Change the budget of an opcode, bounded by the budget of the connection
+   *
+   * @param opcode the opcode
+   * @param bytes  the maximum memory allocated to decode a frame of this opcode
+   * @return a new budget
+   */
+  public DecodingBudget with(Opcode opcode, long bytes) {
+    if (bytes < 0) {
+      throw new IllegalArgumentException("budget must be positive");
+    }
+    var copy = opcodeBytes.clone();
+    copy[opcode.ordinal()] = Math.min(bytes, connectionBytes);
+    return new DecodingBudget(connectionBytes, copy);
+  }
+
+  public long connectionBytes() {
+    return connectionBytes;
+  }
+
+  public long limit(Opcode opcode) {
+    return opcodeBytes[opcode.ordinal()];
+  }
+}
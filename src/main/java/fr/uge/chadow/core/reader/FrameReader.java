@@ -4,58 +4,124 @@ package fr.uge.chadow.core.reader;
 import fr.uge.chadow.core.protocol.*;
 
 import java.nio.ByteBuffer;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Logger;
 
+/**
+ * Reader of any frame.
+ * <p>
+ * The decoding plans of the frames are shared by all the connections, a FrameReader
+ * only keeps the opcode and the cursor of the frame being read.
+ * A frame exceeding the decoding budget of its opcode is rejected with ERROR.
+ * <p>
+ * The state a connection keeps across frames (partial codexes, queued frames) is retained
+ * on the reader: the next frames may only use what is left of the budget of the connection.
+ */
 public class FrameReader implements Reader<Frame> {
   private static final Logger logger = Logger.getLogger(FrameReader.class.getName());
+  private static final Opcode[] OPCODES = Opcode.values();
+  private static final RecordDecoder<?>[] DECODERS = Arrays.stream(OPCODES)
+          .map(Opcode::getDecoder)
+          .toArray(RecordDecoder<?>[]::new);
 
   private enum State {
     DONE, WAITING, ERROR
   }
 
-  private final ByteReader byteReader = new ByteReader();
-  private final Map<Opcode, GlobalReader<? extends Frame>> readers = new HashMap<>();
+  private final DecoderCursor cursor = new DecoderCursor();
+  private final DecodingBudget budget;
+  private final AtomicLong retained = new AtomicLong(); // may be released by another thread
 
   private State state = State.WAITING;
   private Opcode opcode;
   private Frame frame;
 
   public FrameReader() {
-    for(var opcode : Opcode.values()) {
-      readers.put(opcode, opcode.getReader());
-    }
+    this(DecodingBudget.DEFAULT);
+  }
+
+  public FrameReader(DecodingBudget budget) {
+    this.budget = Objects.requireNonNull(budget);
   }
 
   @Override
-  public ProcessStatus process(ByteBuffer bb) {
+  public ProcessStatus read(ByteBuffer bb) {
     if (state == State.DONE || state == State.ERROR) {
       throw new IllegalStateException();
     }
-
     if (opcode == null) {
-      ProcessStatus opcodeStatus = byteReader.process(bb);
-      if (opcodeStatus != ProcessStatus.DONE) {
-        return opcodeStatus;
+      if (!bb.hasRemaining()) {
+        return ProcessStatus.REFILL;
       }
-      opcode = Opcode.values()[byteReader.get()];
-      logger.info(STR."Received opcode: \{opcode}");
-      if (!readers.containsKey(opcode)) {
+      var code = Byte.toUnsignedInt(bb.get());
+      if (code >= OPCODES.length) {
+        logger.warning(STR."Received unknown opcode: \{code}");
+        state = State.ERROR;
         return ProcessStatus.ERROR;
       }
+      opcode = OPCODES[code];
+      logger.info(STR."Received opcode: \{opcode}");
+      cursor.start(DECODERS[code], limit());
     }
-    
-    ProcessStatus frameStatus = readers.get(opcode).process(bb);
+
+    var frameStatus = cursor.decode(bb);
     if (frameStatus != ProcessStatus.DONE) {
+      if (frameStatus == ProcessStatus.ERROR) {
+        if (cursor.isOverBudget()) {
+          logger.warning(STR."\{opcode} frame rejected, over its decoding budget of \{limit()} bytes");
+        }
+        state = State.ERROR;
+      }
       return frameStatus;
     }
-
-    frame = readers.get(opcode).get();
+    frame = (Frame) cursor.value();
     state = State.DONE;
     return ProcessStatus.DONE;
   }
 
+  private long limit() {
+    return Math.max(0, Math.min(budget.limit(opcode), budget.connectionBytes() - retained.get()));
+  }
+
+  /**
+   * Charge state kept across frames to the budget of the connection
+   *
+   * @param bytes the size of the state
+   * @return false if the budget of the connection is exceeded, nothing is charged then
+   */
+  public boolean retain(long bytes) {
+    if (bytes < 0) {
+      return false;
+    }
+    for (; ; ) {
+      var current = retained.get();
+      if (bytes > budget.connectionBytes() - current) {
+        return false;
+      }
+      if (retained.compareAndSet(current, current + bytes)) {
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Give back state charged with retain
+   *
+   * @param bytes the size of the state
+   */
+  public void release(long bytes) {
+    retained.accumulateAndGet(bytes, (current, released) -> Math.max(0, current - released));
+  }
+
+  /**
+   * @return the size of the state kept across frames
+   */
+  public long retained() {
+    return retained.get();
+  }
+
   @Override
   public Frame get() {
     if (state != State.DONE) {
@@ -69,9 +135,6 @@ public class FrameReader implements Reader<Frame> {
     state = State.WAITING;
     opcode = null;
     frame = null;
-    byteReader.reset();
-    for (var reader : readers.values()) {
-      reader.reset();
-    }
+    cursor.reset();
   }
-}
\ No newline at end of file
+}
@@ -13,23 +13,20 @@ public class LongReader implements Reader<Long> {
   private long value;
 
   @Override
-  public ProcessStatus process(ByteBuffer buffer) {
+  public ProcessStatus read(ByteBuffer buffer) {
     if (state == State.DONE || state == State.ERROR) {
       throw new IllegalStateException();
     }
-    buffer.flip();
-    try {
-      if (buffer.remaining() <= internalBuffer.remaining()) {
-        internalBuffer.put(buffer);
-      } else {
-        var oldLimit = buffer.limit();
-        buffer.limit(internalBuffer.remaining());
-        internalBuffer.put(buffer);
-        buffer.limit(oldLimit);
-      }
-    } finally {
-      buffer.compact();
+    if (internalBuffer.position() == 0 && buffer.remaining() >= Long.BYTES) {
+      // the whole value is available, no copy
+      value = buffer.getLong();
+      state = State.DONE;
+      return ProcessStatus.DONE;
     }
+    var canRead = Math.min(buffer.remaining(), internalBuffer.remaining());
+    internalBuffer.put(internalBuffer.position(), buffer, buffer.position(), canRead);
+    internalBuffer.position(internalBuffer.position() + canRead);
+    buffer.position(buffer.position() + canRead);
     if (internalBuffer.hasRemaining()) {
       return ProcessStatus.REFILL;
     }
@@ -52,4 +49,4 @@ public class LongReader implements Reader<Long> {
     state = State.WAITING;
     internalBuffer.clear();
   }
-}
\ No newline at end of file
+}
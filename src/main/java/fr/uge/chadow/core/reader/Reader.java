@@ -4,7 +4,28 @@ import java.nio.ByteBuffer;
 
 public interface Reader<T> {
     enum ProcessStatus { DONE, REFILL, ERROR }
-    ProcessStatus process(ByteBuffer bb);
+
+    /**
+     * Read from a buffer in write-mode, before and after the call.
+     * The bytes consumed are removed from the buffer.
+     */
+    default ProcessStatus process(ByteBuffer bb) {
+        bb.flip();
+        try {
+            return read(bb);
+        } finally {
+            bb.compact();
+        }
+    }
+
+    /**
+     * Read from a buffer in read-mode, before and after the call.
+     * The position of the buffer is moved after the bytes consumed, so several
+     * values can be read in a row and the buffer compacted once at the end.
+     */
+    ProcessStatus read(ByteBuffer bb);
+
     T get();
+
     void reset();
-}
\ No newline at end of file
+}
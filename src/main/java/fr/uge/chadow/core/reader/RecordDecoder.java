@@ -0,0 +1,163 @@
+package fr.uge.chadow.core.reader;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.RecordComponent;
+import java.util.Arrays;
+
+/**
+ * Decoding plan of a record, compiled once per record class.
+ * <p>
+ * The components are resolved to a fixed list of field kinds and the canonical
+ * constructor is bound to a MethodHandle, so decoding a frame doesn't go through
+ * the reflection API anymore. A plan is immutable and shared by all the readers.
+ *
+ * @param <T> the record type
+ */
+public final class RecordDecoder<T extends Record> {
+
+  enum Kind {
+    BYTE, INT, LONG, STRING, BYTES, RECORD, ARRAY
+  }
+
+  /**
+   * A component of the record
+   *
+   * @param kind    how the component is encoded
+   * @param record  the plan of the component if it is a record, or of the elements of an array of records
+   * @param element the kind of the elements if the component is an array
+   * @param factory creates the array of elements, (int)Object[]
+   */
+  record Field(Kind kind, RecordDecoder<?> record, Kind element, MethodHandle factory) {
+  }
+
+  private static final ClassValue<RecordDecoder<?>> DECODERS = new ClassValue<>() {
+    @Override
+    protected RecordDecoder<?> computeValue(Class<?> type) {
+      return compile(type.asSubclass(Record.class));
+    }
+  };
+
+  private final Class<T> recordClass;
+  private final Field[] fields;
+  private final MethodHandle constructor; // (Object[])Object
+
+  private RecordDecoder(Class<T> recordClass, Field[] fields, MethodHandle constructor) {
+    this.recordClass = recordClass;
+    this.fields = fields;
+    this.constructor = constructor;
+  }
+
+  /**
+   * Get the plan of a record class, compiling it the first time
+   *
+   * @param recordClass the record class
+   * @param <T>         the record type
+   * @return the shared plan
+   */
+  @SuppressWarnings("unchecked")
+  public static <T extends Record> RecordDecoder<T> of(Class<T> recordClass) {
+    return (RecordDecoder<T>) DECODERS.get(recordClass);
+  }
+
+  private static <T extends Record> RecordDecoder<T> compile(Class<T> recordClass) {
+    if (!recordClass.isRecord()) {
+      throw new IllegalArgumentException(STR."Not a record: \{recordClass}");
+    }
+    var components = recordClass.getRecordComponents();
+    var fields = new Field[components.length];
+    for (int i = 0; i < components.length; i++) {
+      fields[i] = field(components[i].getType());
+    }
+    var types = Arrays.stream(components).map(RecordComponent::getType).toArray(Class<?>[]::new);
+    try {
+      var constructor = MethodHandles.publicLookup()
+              .findConstructor(recordClass, MethodType.methodType(void.class, types))
+              .asSpreader(Object[].class, types.length)
+              .asType(MethodType.methodType(Object.class, Object[].class));
+      return new RecordDecoder<>(recordClass, fields, constructor);
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      throw new IllegalArgumentException(STR."No public canonical constructor for \{recordClass}", e);
+    }
+  }
+
+  private static Field field(Class<?> type) {
+    if (type.equals(byte.class)) {
+      return new Field(Kind.BYTE, null, null, null);
+    }
+    if (type.equals(int.class)) {
+      return new Field(Kind.INT, null, null, null);
+    }
+    if (type.equals(long.class)) {
+      return new Field(Kind.LONG, null, null, null);
+    }
+    if (type.equals(String.class)) {
+      return new Field(Kind.STRING, null, null, null);
+    }
+    if (type.equals(byte[].class)) {
+      return new Field(Kind.BYTES, null, null, null);
+    }
+    if (type.isRecord()) {
+      return new Field(Kind.RECORD, of(type.asSubclass(Record.class)), null, null);
+    }
+    if (type.isArray()) {
+      var componentType = type.getComponentType();
+      var factory = MethodHandles.arrayConstructor(type)
+              .asType(MethodType.methodType(Object[].class, int.class));
+      if (componentType.equals(String.class)) {
+        return new Field(Kind.ARRAY, null, Kind.STRING, factory);
+      }
+      if (componentType.isRecord()) {
+        return new Field(Kind.ARRAY, of(componentType.asSubclass(Record.class)), Kind.RECORD, factory);
+      }
+      throw new IllegalArgumentException(STR."Unsupported array type: \{type}");
+    }
+    throw new IllegalArgumentException(STR."Unsupported type: \{type}");
+  }
+
+  public Class<T> recordClass() {
+    return recordClass;
+  }
+
+  int size() {
+    return fields.length;
+  }
+
+  Field field(int index) {
+    return fields[index];
+  }
+
+  /**
+   * Build the record from the decoded values of its components
+   *
+   * @param values the values, primitives are boxed
+   * @return the record
+   */
+  T construct(Object[] values) {
+    try {
+      return recordClass.cast((Object) constructor.invokeExact(values));
+    } catch (Error e) {
+      throw e;
+    } catch (Throwable e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Create the array of elements of an array component
+   *
+   * @param field  the array component
+   * @param length the number of elements
+   * @return the array
+   */
+  static Object[] newArray(Field field, int length) {
+    try {
+      return (Object[]) field.factory().invokeExact(length);
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
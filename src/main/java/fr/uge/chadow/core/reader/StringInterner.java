@@ -0,0 +1,123 @@
+package fr.uge.chadow.core.reader;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Optional bounded cache of the strings decoded by the readers, keyed on their raw UTF-8 bytes.
+ * <p>
+ * Logins and codex ids come back again and again in the frames, when the cache is enabled
+ * a string already seen is returned as the same instance, without allocating.
+ * The cache is direct-mapped: a new string replaces the one in its slot, so its size is fixed.
+ * It is disabled by default.
+ */
+public final class StringInterner {
+  /**
+   * Longer strings (messages, file names...) are not worth caching
+   */
+  public static final int MAX_LENGTH = 128;
+  private static final int MAX_CAPACITY = 1 << 20;
+
+  /**
+   * The metrics of the cache
+   *
+   * @param capacity the number of slots, 0 if disabled
+   * @param hits     number of strings found in the cache
+   * @param misses   number of strings decoded and added to the cache
+   */
+  public record Stats(int capacity, long hits, long misses) {
+    public double hitRatio() {
+      var lookups = hits + misses;
+      return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    @Override
+    public String toString() {
+      return STR."capacity \{capacity}, \{hits} hits, \{misses} misses, hit ratio \{Math.round(hitRatio() * 100)}%";
+    }
+  }
+
+  private record Entry(int hash, byte[] raw, String value) {
+  }
+
+  // entries are immutable, a slot can be replaced by another thread at any time
+  private static volatile Entry[] table;
+  private static final LongAdder hits = new LongAdder();
+  private static final LongAdder misses = new LongAdder();
+
+  private StringInterner() {
+  }
+
+  /**
+   * Enable, resize or disable the cache. The metrics are reset.
+   *
+   * @param capacity the number of strings kept, rounded up to a power of 2, 0 to disable
+   */
+  public static void configure(int capacity) {
+    if (capacity < 0 || capacity > MAX_CAPACITY) {
+      throw new IllegalArgumentException(STR."capacity must be between 0 and \{MAX_CAPACITY}");
+    }
+    table = capacity == 0 ? null : new Entry[capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1];
+    hits.reset();
+    misses.reset();
+  }
+
+  public static Stats stats() {
+    var current = table;
+    return new Stats(current == null ? 0 : current.length, hits.sum(), misses.sum());
+  }
+
+  /**
+   * Decode a string from a buffer in read-mode, the bytes are consumed
+   *
+   * @param bb     the buffer
+   * @param length the number of bytes of the string, available in the buffer
+   * @return the string
+   */
+  static String decode(ByteBuffer bb, int length) {
+    String value;
+    if (bb.hasArray()) {
+      value = decode(bb.array(), bb.arrayOffset() + bb.position(), length);
+    } else {
+      var bytes = new byte[length];
+      bb.get(bb.position(), bytes);
+      value = decode(bytes, 0, length);
+    }
+    bb.position(bb.position() + length);
+    return value;
+  }
+
+  /**
+   * Decode a string from an array of bytes
+   *
+   * @param bytes  the array
+   * @param offset the index of the first byte of the string
+   * @param length the number of bytes of the string
+   * @return the string
+   */
+  static String decode(byte[] bytes, int offset, int length) {
+    var current = table;
+    if (current == null || length > MAX_LENGTH) {
+      return new String(bytes, offset, length, UTF_8);
+    }
+    var hash = 1;
+    for (int i = offset; i < offset + length; i++) {
+      hash = 31 * hash + bytes[i];
+    }
+    var slot = (hash ^ (hash >>> 16)) & (current.length - 1);
+    var entry = current[slot];
+    if (entry != null && entry.hash == hash
+            && Arrays.equals(entry.raw, 0, entry.raw.length, bytes, offset, offset + length)) {
+      hits.increment();
+      return entry.value;
+    }
+    misses.increment();
+    var raw = Arrays.copyOfRange(bytes, offset, offset + length);
+    var value = new String(raw, UTF_8);
+    current[slot] = new Entry(hash, raw, value);
+    return value;
+  }
+}
@@ -1,7 +1,6 @@
 package fr.uge.chadow.core.reader;
 
 import java.nio.ByteBuffer;
-import java.nio.charset.StandardCharsets;
 
 
 public class StringReader implements Reader<String> {
@@ -18,34 +17,36 @@ public class StringReader implements Reader<String> {
 	private String value;	
 	
 	@Override
-	public ProcessStatus process(ByteBuffer buffer) {
+	public ProcessStatus read(ByteBuffer buffer) {
 		if(state == State.DONE || state == State.ERROR) {
 			throw new IllegalStateException();
 		}
 		if(expectedSize == -1) {
-			var result = intReader.process(buffer);
+			var result = intReader.read(buffer);
 			if(result != ProcessStatus.DONE) {
 				return result;
 			}
 			expectedSize = intReader.get();
-			if(expectedSize > 1024 || expectedSize < 0) {
+			if(expectedSize > maxStringSize || expectedSize < 0) {
 				return ProcessStatus.ERROR;
 			}
+			if(buffer.remaining() >= expectedSize) {
+				// the whole string is available, decode it in place
+				value = StringInterner.decode(buffer, expectedSize);
+				state = State.DONE;
+				return ProcessStatus.DONE;
+			}
 			internalBuffer.limit(expectedSize);
 		}
-		buffer.flip();
 		var canRead = Math.min(buffer.remaining(), internalBuffer.remaining());
-		var oldlimit = buffer.limit();
-		buffer.limit(buffer.position() + canRead);
-		internalBuffer.put(buffer);
-		buffer.limit(oldlimit);
-		buffer.compact();
+		internalBuffer.put(internalBuffer.position(), buffer, buffer.position(), canRead);
+		internalBuffer.position(internalBuffer.position() + canRead);
+		buffer.position(buffer.position() + canRead);
 		if(internalBuffer.hasRemaining()) {
 			return ProcessStatus.REFILL;
 		}
 		state = State.DONE;
-		internalBuffer.flip();
-		value = StandardCharsets.UTF_8.decode(internalBuffer).toString();
+		value = StringInterner.decode(internalBuffer.array(), 0, expectedSize);
 		return ProcessStatus.DONE;
 	}
 
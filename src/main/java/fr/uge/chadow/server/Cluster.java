@@ -0,0 +1,485 @@
+package fr.uge.chadow.server;
+
+import fr.uge.chadow.core.TCPConnectionManager;
+import fr.uge.chadow.core.context.NodeContext;
+import fr.uge.chadow.core.protocol.CodexSegment;
+import fr.uge.chadow.core.protocol.Frame;
+import fr.uge.chadow.core.protocol.client.Request;
+import fr.uge.chadow.core.protocol.client.Search;
+import fr.uge.chadow.core.protocol.field.SocketField;
+import fr.uge.chadow.core.protocol.node.FrameBytes;
+import fr.uge.chadow.core.protocol.node.Forward;
+import fr.uge.chadow.core.protocol.node.Forwarded;
+import fr.uge.chadow.core.protocol.server.CodexCandidates;
+import fr.uge.chadow.core.protocol.server.RequestResponse;
+import fr.uge.chadow.core.protocol.server.SearchResponse;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * The node of a cluster of servers sharing the codex registry.
+ * <p>
+ * The codexes are partitioned over the nodes by consistent hashing of their id. A node opens a link
+ * to every other node, and forwards on it the frames of its clients about a codex owned by the other node,
+ * with a request id when an answer is expected. The answers are relayed to the clients that sent the frames.
+ * A search, or a request of an abbreviated codex id, is sent to every node, each one answers
+ * with the codexes it owns and the answers are merged.
+ * The links are opened again on every tick while they are down, and the frames for a node without a link
+ * are handled by this node, with the codexes it knows.
+ * <p>
+ * On the owner, the sharers connected to other nodes are named login@node, with their listening address.
+ * They are removed when they withdraw their codexes, or when the link of their node closes.
+ */
+final class Cluster {
+  private static final Logger logger = Logger.getLogger(Cluster.class.getName());
+  /**
+   * Maximum number of results asked to each node for a page that doesn't follow the previous one,
+   * the results after it are reached page after page
+   */
+  static final int MAX_SEARCH_DEPTH = 1024;
+
+  /**
+   * A frame forwarded to another node, waiting for its answer
+   *
+   * @param node     the node the frame was forwarded to
+   * @param deadline the time after which the answer is not waited for anymore, in nanoseconds
+   * @param onAnswer called with the answered frames, or with no frame if the node doesn't answer
+   */
+  private record Pending(int node, long deadline, Consumer<List<Frame>> onAnswer) {
+  }
+
+  /**
+   * A sharer connected to another node
+   *
+   * @param node     the node of the sharer
+   * @param address  the listening address of the sharer
+   * @param codexIds the codexes of this node shared by the sharer
+   */
+  private record RemoteSharer(int node, InetSocketAddress address, Set<String> codexIds) {
+  }
+
+  /**
+   * The results of a search, merged as the nodes answer
+   */
+  private static final class SearchMerge {
+    private final Search search;
+    private final int skip;
+    private final CodexSearchIndex.Cursor resumed; // the cursor of the previous page, null if not resumed
+    private final Consumer<CodexSearchIndex.Page> reply;
+    private final ArrayList<SearchResponse.Result> results = new ArrayList<>();
+    private int remaining;
+
+    private SearchMerge(Search search, int skip, CodexSearchIndex.Cursor resumed,
+                        Consumer<CodexSearchIndex.Page> reply, int remaining) {
+      this.search = search;
+      this.skip = skip;
+      this.resumed = resumed;
+      this.reply = reply;
+      this.remaining = remaining;
+    }
+
+    private void answered(List<Frame> frames) {
+      for (var frame : frames) {
+        if (frame instanceof SearchResponse searchResponse) {
+          results.addAll(Arrays.asList(searchResponse.results()));
+        }
+      }
+      if (--remaining > 0) {
+        return;
+      }
+      // the order of the search index of each node
+      var page = results.stream()
+              .sorted(Comparator.comparingLong(SearchResponse.Result::creationDate)
+                      .thenComparing(SearchResponse.Result::codexId))
+              .skip(skip)
+              .limit(search.results())
+              .toArray(SearchResponse.Result[]::new);
+      var next = page.length == 0 && resumed != null ? resumed
+              : CodexSearchIndex.Cursor.of(search, search.offset() + page.length,
+              page.length == 0 ? null : page[page.length - 1]);
+      reply.accept(new CodexSearchIndex.Page(new SearchResponse(page), next));
+    }
+  }
+
+  /**
+   * The answers to an abbreviated codex id, merged as the nodes answer
+   */
+  private static final class RequestMerge {
+    private final String codexId;
+    private final Consumer<Frame> reply;
+    private final TreeSet<String> candidates = new TreeSet<>();
+    private List<Frame> found = List.of(); // the frames of a codex found by a node
+    private int remaining;
+
+    private RequestMerge(String codexId, Consumer<Frame> reply, int remaining) {
+      this.codexId = codexId;
+      this.reply = reply;
+      this.remaining = remaining;
+    }
+
+    private void answered(List<Frame> frames) {
+      for (var frame : frames) {
+        switch (frame) {
+          case RequestResponse requestResponse -> {
+            candidates.add(requestResponse.codex().id());
+            found = frames;
+          }
+          case CodexSegment codexSegment -> {
+            candidates.add(codexSegment.codexId());
+            found = frames;
+          }
+          case CodexCandidates codexCandidates -> candidates.addAll(Arrays.asList(codexCandidates.codexIds()));
+          default -> logger.warning(STR."Unexpected answer \{frame.getClass().getSimpleName()} to a request");
+        }
+      }
+      if (--remaining > 0) {
+        return;
+      }
+      // a single codex over the whole cluster, it was found by one node at least
+      if (candidates.size() == 1 && !found.isEmpty()) {
+        found.forEach(reply);
+        return;
+      }
+      reply.accept(new CodexCandidates(codexId,
+              candidates.stream().limit(Server.MAX_ID_CANDIDATES).toArray(String[]::new)));
+    }
+  }
+
+  private final Server server;
+  private final int self;
+  private final List<InetSocketAddress> nodes;
+  private final HashRing ring;
+  private final long timeout; // nanoseconds
+  private final NodeContext[] links; // null while the link to the node is down
+  private final boolean[] connecting;
+  private final HashMap<Long, Pending> pending = new HashMap<>(); // request id -> forwarded frame
+  private long lastRequestId;
+  private final HashMap<String, RemoteSharer> remoteSharers = new HashMap<>(); // login@node -> sharer
+
+  /**
+   * @param server        the server of this node
+   * @param nodes         the addresses of the nodes, in the same order on every node
+   * @param self          the index of this node
+   * @param timeoutMillis how long the answer of a node is waited for
+   */
+  Cluster(Server server, List<InetSocketAddress> nodes, int self, int timeoutMillis) {
+    if (self < 0 || self >= nodes.size()) {
+      throw new IllegalArgumentException(STR."Node \{self} is not in a cluster of \{nodes.size()} nodes");
+    }
+    this.server = server;
+    this.self = self;
+    this.nodes = List.copyOf(nodes);
+    this.ring = new HashRing(nodes.size());
+    this.timeout = timeoutMillis * 1_000_000L;
+    this.links = new NodeContext[nodes.size()];
+    this.connecting = new boolean[nodes.size()];
+  }
+
+  /**
+   * Parse the addresses of the nodes of a cluster
+   *
+   * @param cluster the addresses, as host/port separated by commas
+   * @return the addresses
+   * @throws IllegalArgumentException if an address is invalid
+   */
+  static List<InetSocketAddress> parseNodes(String cluster) {
+    var nodes = new ArrayList<InetSocketAddress>();
+    for (var node : cluster.split(",")) {
+      var parts = node.trim().split("/");
+      if (parts.length != 2) {
+        throw new IllegalArgumentException(STR."Invalid node \"\{node}\", expected host/port");
+      }
+      nodes.add(new InetSocketAddress(parts[0], Integer.parseInt(parts[1])));
+    }
+    return nodes;
+  }
+
+  int self() {
+    return self;
+  }
+
+  int size() {
+    return nodes.size();
+  }
+
+  /**
+   * Check that a link comes from another node of the cluster.
+   * Only the host is checked, the port of the link is not the listening port of the node.
+   * The nodes on the loopback all share the same host.
+   *
+   * @param node    the index the link claims
+   * @param address the remote address of the link
+   * @return true if the index is another node and the link comes from its host
+   */
+  boolean isNode(int node, InetAddress address) {
+    if (node < 0 || node >= nodes.size() || node == self) {
+      return false;
+    }
+    var expected = nodes.get(node).getAddress();
+    if (expected == null) {
+      return false;
+    }
+    return expected.equals(address) || expected.isLoopbackAddress() && address.isLoopbackAddress();
+  }
+
+  /**
+   * @param codexId the id of a codex
+   * @return the node owning the codex
+   */
+  int owner(String codexId) {
+    return ring.owner(codexId);
+  }
+
+  /**
+   * Open the missing links and give up the answers waited for too long.
+   * Called on every tick of the selector thread.
+   *
+   * @param connectionManager the connection manager of the server
+   */
+  void tick(TCPConnectionManager connectionManager) {
+    for (var node = 0; node < nodes.size(); node++) {
+      if (node == self || links[node] != null || connecting[node]) {
+        continue;
+      }
+      var target = node;
+      connecting[node] = true;
+      connectionManager.supplyConnectionData(key -> {
+        connecting[target] = false;
+        var link = new NodeContext(key, server, self, target);
+        links[target] = link;
+        return new TCPConnectionManager.ConnectionData(link, nodes.get(target));
+      });
+    }
+    var now = System.nanoTime();
+    var expired = pending.entrySet().stream()
+            .filter(entry -> now - entry.getValue().deadline() > 0)
+            .map(Map.Entry::getKey)
+            .toList();
+    for (var requestId : expired) {
+      var expiredPending = pending.remove(requestId);
+      logger.warning(STR."Node \{expiredPending.node()} did not answer request \{requestId}");
+      expiredPending.onAnswer().accept(List.of());
+    }
+  }
+
+  /**
+   * Forward a frame of a client to another node
+   *
+   * @param node   the node
+   * @param login  the login of the client
+   * @param sharer the listening address of the client
+   * @param frame  the frame
+   * @param reply  where the answers are relayed, null if no answer is expected
+   * @return false if the link to the node is down, the frame must be handled by this node
+   */
+  boolean forward(int node, String login, SocketField sharer, Frame frame, Consumer<Frame> reply) {
+    return forwardExpecting(node, login, sharer, frame, reply == null ? null : frames -> frames.forEach(reply));
+  }
+
+  private boolean forwardExpecting(int node, String login, SocketField sharer, Frame frame,
+                                   Consumer<List<Frame>> onAnswer) {
+    var link = links[node];
+    if (link == null || !link.isConnected()) {
+      logger.warning(STR."No link to node \{node}, \{frame.getClass().getSimpleName()} handled by node \{self}");
+      return false;
+    }
+    var requestId = 0L;
+    if (onAnswer != null) {
+      requestId = ++lastRequestId;
+      pending.put(requestId, new Pending(node, System.nanoTime() + timeout, onAnswer));
+    }
+    link.queueFrame(new Forward(requestId, login, sharer, FrameBytes.encode(frame)));
+    return true;
+  }
+
+  /**
+   * Search the codexes of every node.
+   * The next page of the previous search of the client is resumed by every node after the last merged result,
+   * any other page is cut from the merged results up to its end, at most MAX_SEARCH_DEPTH of each node.
+   *
+   * @param search the search of the client
+   * @param cursor the cursor of the previous page returned to the client, may be null
+   * @param login  the login of the client
+   * @param sharer the listening address of the client
+   * @param local  the search of the codexes owned by this node
+   * @param reply  where the merged page is sent, with the cursor to resume the search after it
+   */
+  void search(Search search, CodexSearchIndex.Cursor cursor, String login, SocketField sharer,
+              BiFunction<Search, CodexSearchIndex.Cursor, CodexSearchIndex.Page> local,
+              Consumer<CodexSearchIndex.Page> reply) {
+    Frame nodeSearch;
+    Supplier<CodexSearchIndex.Page> localSearch;
+    SearchMerge merge;
+    if (cursor != null && cursor.resumes(search) && cursor.last() != null) {
+      var resume = cursor.resume(search);
+      nodeSearch = resume;
+      localSearch = () -> local.apply(resume.search(), CodexSearchIndex.Cursor.of(resume));
+      merge = new SearchMerge(search, 0, cursor, reply, nodes.size());
+    } else {
+      // every node returns the results up to the end of the page, the page is cut from the merged results
+      var results = (int) Math.min(MAX_SEARCH_DEPTH, (long) search.offset() + search.results());
+      var widened = new Search(search.codexName(), search.options(), search.date(), results, 0);
+      nodeSearch = widened;
+      localSearch = () -> local.apply(widened, null);
+      merge = new SearchMerge(search, search.offset(), null, reply, nodes.size());
+    }
+    for (var node = 0; node < nodes.size(); node++) {
+      if (node != self && !forwardExpecting(node, login, sharer, nodeSearch, merge::answered)) {
+        merge.answered(List.of());
+      }
+    }
+    merge.answered(List.of(localSearch.get().response()));
+  }
+
+  /**
+   * Resolve an abbreviated codex id on every node, its owner is unknown.
+   * The codex is answered if it is the only one of the cluster starting with the id,
+   * otherwise the candidates of every node are merged.
+   *
+   * @param request the request of the client
+   * @param login   the login of the client
+   * @param sharer  the listening address of the client
+   * @param local   the answer of this node
+   * @param reply   where the answer is sent
+   */
+  void request(Request request, String login, SocketField sharer, Function<Request, List<Frame>> local,
+               Consumer<Frame> reply) {
+    var merge = new RequestMerge(request.codexId(), reply, nodes.size());
+    for (var node = 0; node < nodes.size(); node++) {
+      if (node != self && !forwardExpecting(node, login, sharer, request, merge::answered)) {
+        merge.answered(List.of());
+      }
+    }
+    merge.answered(local.apply(request));
+  }
+
+  /**
+   * Relay the answer of another node
+   *
+   * @param forwarded the answer
+   */
+  void answered(Forwarded forwarded) {
+    var answered = pending.remove(forwarded.requestId());
+    if (answered == null) {
+      logger.warning(STR."Answer to request \{forwarded.requestId()} received too late");
+      return;
+    }
+    List<Frame> frames;
+    try {
+      frames = FrameBytes.decode(forwarded.frames());
+    } catch (IllegalArgumentException e) {
+      logger.warning(STR."Node \{answered.node()} answered invalid frames to request \{forwarded.requestId()}");
+      frames = List.of();
+    }
+    answered.onAnswer().accept(frames);
+  }
+
+  /**
+   * The link to a node closed, it is opened again on the next tick
+   * and the frames forwarded on it are not answered
+   *
+   * @param node the node
+   * @param link the link
+   */
+  void linkClosed(int node, NodeContext link) {
+    if (links[node] != link) {
+      return;
+    }
+    links[node] = null;
+    logger.warning(STR."Link to node \{node} closed");
+    var lost = pending.entrySet().stream()
+            .filter(entry -> entry.getValue().node() == node)
+            .map(Map.Entry::getKey)
+            .toList();
+    for (var requestId : lost) {
+      pending.remove(requestId).onAnswer().accept(List.of());
+    }
+  }
+
+  /**
+   * Name a sharer connected to another node, and remember its address
+   *
+   * @param node    the node of the sharer
+   * @param login   the login of the sharer on its node
+   * @param address the listening address of the sharer
+   * @return the name of the sharer on this node
+   */
+  String remoteSharer(int node, String login, SocketField address) {
+    var name = sharerName(node, login);
+    if (!remoteSharers.containsKey(name)) {
+      try {
+        var inetAddress = new InetSocketAddress(InetAddress.getByAddress(address.ip()), address.port());
+        remoteSharers.put(name, new RemoteSharer(node, inetAddress, new HashSet<>()));
+      } catch (UnknownHostException e) {
+        throw new IllegalArgumentException(STR."Invalid address of \{name}", e);
+      }
+    }
+    return name;
+  }
+
+  static String sharerName(int node, String login) {
+    return STR."\{login}@\{node}";
+  }
+
+  /**
+   * @param sharer the name of a sharer connected to another node
+   * @return its listening address, or null if it is unknown
+   */
+  InetSocketAddress sharerAddress(String sharer) {
+    var remoteSharer = remoteSharers.get(sharer);
+    return remoteSharer == null ? null : remoteSharer.address();
+  }
+
+  void shared(String sharer, String codexId) {
+    var remoteSharer = remoteSharers.get(sharer);
+    if (remoteSharer != null) {
+      remoteSharer.codexIds().add(codexId);
+    }
+  }
+
+  void withdrawn(String sharer, String codexId) {
+    var remoteSharer = remoteSharers.get(sharer);
+    if (remoteSharer != null && remoteSharer.codexIds().remove(codexId) && remoteSharer.codexIds().isEmpty()) {
+      remoteSharers.remove(sharer);
+    }
+  }
+
+  /**
+   * @param node a node
+   * @return the codexes shared by each sharer of the node
+   */
+  Map<String, Set<String>> sharersOf(int node) {
+    var sharers = new HashMap<String, Set<String>>();
+    remoteSharers.forEach((name, remoteSharer) -> {
+      if (remoteSharer.node() == node) {
+        sharers.put(name, Set.copyOf(remoteSharer.codexIds()));
+      }
+    });
+    return sharers;
+  }
+
+  /**
+   * Forget the sharers of a node whose link closed
+   *
+   * @param node the node
+   */
+  void removeSharersOf(int node) {
+    remoteSharers.values().removeIf(remoteSharer -> remoteSharer.node() == node);
+  }
+}
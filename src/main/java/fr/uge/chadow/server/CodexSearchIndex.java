@@ -0,0 +1,425 @@
+package fr.uge.chadow.server;
+
+import fr.uge.chadow.core.protocol.client.Search;
+import fr.uge.chadow.core.protocol.node.ResumeSearch;
+import fr.uge.chadow.core.protocol.server.SearchResponse;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Search engine of the codexes shared on the server.
+ * <p>
+ * The codexes are ordered by registration date, then by id, and the results of a search follow this order.
+ * Two indexes are maintained incrementally:
+ * <ul>
+ *   <li>the date index, every codex in this order, which answers the date options with a range;</li>
+ *   <li>an inverted index of the trigrams of the names, each trigram maps to the codexes containing it,
+ *   in the same order.</li>
+ * </ul>
+ * A name of at least 3 characters is searched in the smallest posting of its trigrams, restricted to
+ * the date ranges; a shorter name is searched in the date ranges. The candidates are then checked
+ * against the name, as trigrams may match elsewhere in a name.
+ * <p>
+ * A page ends with a {@link Cursor} on its last result, the next page resumes the search after it
+ * instead of skipping the previous results.
+ * <p>
+ * The first results of the recent queries are kept in a bounded LRU cache, as the same popular queries
+ * are searched again and again, page after page. A cached query is dropped when a codex it matches
+ * is added or removed before the end of its cached results; the number of sharers is read
+ * from the registry when a page is returned, so it is always up to date.
+ */
+public final class CodexSearchIndex {
+  private static final int GRAM_LENGTH = 3;
+  /**
+   * Number of results kept for a cached query, the pages after are searched in the index
+   */
+  static final int CACHED_RESULTS = 256;
+
+  /**
+   * Position of a codex in the order of the results
+   */
+  private record Key(long registrationDate, String codexId) implements Comparable<Key> {
+    private static Key of(Server.CodexRecord codexRecord) {
+      return new Key(codexRecord.registrationDate(), codexRecord.codex().id());
+    }
+
+    /**
+     * @return the smallest key of a date, "" is before any id
+     */
+    private static Key first(long registrationDate) {
+      return new Key(registrationDate, "");
+    }
+
+    @Override
+    public int compareTo(Key key) {
+      var compare = Long.compare(registrationDate, key.registrationDate);
+      return compare != 0 ? compare : codexId.compareTo(key.codexId);
+    }
+  }
+
+  /**
+   * Where a search stopped
+   *
+   * @param codexName the searched name
+   * @param options   the date options of the search
+   * @param date      the date of the search
+   * @param offset    the number of results returned so far, the offset of the next page
+   * @param last      the last result returned, null if there was none
+   */
+  public record Cursor(String codexName, int options, long date, int offset, Key last) {
+    /**
+     * @param search a search
+     * @return true if the search asks for the page following this cursor
+     */
+    boolean resumes(Search search) {
+      return codexName.equals(search.codexName()) && options == search.options() && date == search.date()
+              && offset == search.offset();
+    }
+
+    /**
+     * @param resume the next page of a search sent by another node
+     * @return the cursor resuming the search of the page after the last result merged by the node
+     */
+    static Cursor of(ResumeSearch resume) {
+      return new Cursor(resume.codexName(), resume.options(), resume.date(), 0,
+              new Key(resume.lastDate(), resume.lastCodexId()));
+    }
+
+    /**
+     * @param search the search of a page
+     * @param offset the number of results returned so far
+     * @param last   the last result returned, null if there was none
+     * @return the cursor to resume the search after this result
+     */
+    static Cursor of(Search search, int offset, SearchResponse.Result last) {
+      return new Cursor(search.codexName(), search.options(), search.date(), offset,
+              last == null ? null : new Key(last.creationDate(), last.codexId()));
+    }
+
+    /**
+     * @param search the search of the next page
+     * @return the next page for every node, resumed after the last result of this cursor
+     */
+    ResumeSearch resume(Search search) {
+      return new ResumeSearch(codexName, options, date, search.results(), last.registrationDate, last.codexId);
+    }
+  }
+
+  /**
+   * A searched name and date options, the key of the cache
+   */
+  private record Query(String codexName, int options, long date) {
+    private static Query of(Search search) {
+      return new Query(search.codexName(), search.options(), search.date());
+    }
+
+    private boolean matches(Key key, String name) {
+      return name.contains(codexName) && matchesDate(key.registrationDate, options, date);
+    }
+  }
+
+  /**
+   * The first results of a query
+   *
+   * @param keys     the results, in the order of the index, at most CACHED_RESULTS
+   * @param complete true if the query has no other result
+   */
+  private record CachedResults(List<Key> keys, boolean complete) {
+    /**
+     * @return true if a codex added or removed at this position changes the cached results
+     */
+    private boolean covers(Key key) {
+      return complete || key.compareTo(keys.getLast()) <= 0;
+    }
+  }
+
+  /**
+   * The metrics of the cache
+   *
+   * @param capacity      the maximum number of queries cached, 0 if disabled
+   * @param size          the number of queries cached
+   * @param hits          number of pages returned from the cache
+   * @param misses        number of pages searched in the index
+   * @param invalidations number of queries dropped because a codex they match was added or removed
+   */
+  public record CacheStats(int capacity, int size, long hits, long misses, long invalidations) {
+    public double hitRatio() {
+      var lookups = hits + misses;
+      return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    @Override
+    public String toString() {
+      return STR."capacity \{capacity}, \{size} queries, \{hits} hits, \{misses} misses, \{invalidations} invalidations, hit ratio \{Math.round(hitRatio() * 100)}%";
+    }
+  }
+
+  /**
+   * A page of results
+   *
+   * @param response the results, in the order of the index
+   * @param next     the cursor to resume the search after this page
+   */
+  public record Page(SearchResponse response, Cursor next) {
+  }
+
+  private final NavigableMap<Key, Server.CodexRecord> byDate = new TreeMap<>();
+  private final HashMap<String, TreeSet<Key>> postings = new HashMap<>();
+  private final int cacheCapacity;
+  private final LinkedHashMap<Query, CachedResults> cache;
+  private long hits;
+  private long misses;
+  private long invalidations;
+
+  /**
+   * @param cacheCapacity the number of queries whose results are cached, 0 to disable the cache
+   */
+  public CodexSearchIndex(int cacheCapacity) {
+    if (cacheCapacity < 0) {
+      throw new IllegalArgumentException("Cache capacity must be positive");
+    }
+    this.cacheCapacity = cacheCapacity;
+    this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Query, CachedResults> eldest) {
+        return size() > cacheCapacity;
+      }
+    };
+  }
+
+  /**
+   * Index a codex, nothing is done if it is already indexed
+   *
+   * @param codexRecord the codex and its registration date
+   */
+  public void add(Server.CodexRecord codexRecord) {
+    var key = Key.of(codexRecord);
+    if (byDate.putIfAbsent(key, codexRecord) != null) {
+      return;
+    }
+    for (var gram : grams(codexRecord.codex().name())) {
+      postings.computeIfAbsent(gram, _ -> new TreeSet<>()).add(key);
+    }
+    invalidate(key, codexRecord.codex().name());
+  }
+
+  /**
+   * Remove a codex from the index, it won't be found anymore
+   *
+   * @param codexRecord the codex and its registration date
+   */
+  public void remove(Server.CodexRecord codexRecord) {
+    var key = Key.of(codexRecord);
+    if (byDate.remove(key) == null) {
+      return;
+    }
+    for (var gram : grams(codexRecord.codex().name())) {
+      postings.computeIfPresent(gram, (_, keys) -> {
+        keys.remove(key);
+        return keys.isEmpty() ? null : keys;
+      });
+    }
+    invalidate(key, codexRecord.codex().name());
+  }
+
+  /**
+   * Drop the cached queries whose results change with a codex
+   */
+  private void invalidate(Key key, String name) {
+    if (cache.isEmpty()) {
+      return;
+    }
+    var size = cache.size();
+    cache.entrySet().removeIf(entry -> entry.getKey().matches(key, name) && entry.getValue().covers(key));
+    invalidations += size - cache.size();
+  }
+
+  /**
+   * @return the metrics of the cache
+   */
+  public CacheStats cacheStats() {
+    return new CacheStats(cacheCapacity, cache.size(), hits, misses, invalidations);
+  }
+
+  /**
+   * @return the number of codexes indexed
+   */
+  public int size() {
+    return byDate.size();
+  }
+
+  /**
+   * Search the codexes whose name contains the searched name and whose registration date matches the options
+   *
+   * @param search the search, its offset is the number of results to skip
+   * @param cursor the cursor returned with the previous page of the same connection, may be null.
+   *               If the search asks for the next page, the results are taken after it.
+   * @return the page of results
+   */
+  public Page search(Search search, Cursor cursor) {
+    Objects.requireNonNull(search);
+    var query = Query.of(search);
+    var resumed = cursor != null && cursor.resumes(search);
+    var after = resumed ? cursor.last() : null;
+    var keys = cacheCapacity == 0 ? null : cachedPage(query, after, resumed ? 0 : search.offset(), search.results());
+    if (keys == null) {
+      misses++;
+      keys = scan(query, after, resumed ? 0 : search.offset(), search.results());
+    }
+    var results = new SearchResponse.Result[keys.size()];
+    for (var i = 0; i < results.length; i++) {
+      var codexRecord = byDate.get(keys.get(i));
+      var codex = codexRecord.codex();
+      results[i] = new SearchResponse.Result(codex.name(), codex.id(), codexRecord.registrationDate(),
+              codexRecord.sharers().size());
+    }
+    var last = keys.isEmpty() ? after : keys.getLast();
+    var next = new Cursor(search.codexName(), search.options(), search.date(), search.offset() + results.length, last);
+    return new Page(new SearchResponse(results), next);
+  }
+
+  /**
+   * Get a page from the cache, the first results of the query are cached on a miss
+   *
+   * @return the page, or null if it is after the cached results
+   */
+  private List<Key> cachedPage(Query query, Key after, int skip, int limit) {
+    var cached = cache.get(query);
+    var populated = cached == null;
+    if (populated) {
+      var keys = scan(query, null, 0, CACHED_RESULTS + 1);
+      var complete = keys.size() <= CACHED_RESULTS;
+      cached = new CachedResults(List.copyOf(complete ? keys : keys.subList(0, CACHED_RESULTS)), complete);
+      cache.put(query, cached);
+    }
+    var from = skip;
+    if (after != null) {
+      var position = Collections.binarySearch(cached.keys(), after);
+      from = position >= 0 ? position + 1 : -position - 1;
+    }
+    var to = (long) from + limit;
+    if (to > cached.keys().size() && !cached.complete()) {
+      return null;
+    }
+    if (populated) {
+      misses++;
+    } else {
+      hits++;
+    }
+    var size = cached.keys().size();
+    return cached.keys().subList(Math.min(from, size), (int) Math.min(to, size));
+  }
+
+  /**
+   * Search the index
+   *
+   * @param query the query
+   * @param after the key after which the results are taken, null to start from the first one
+   * @param skip  the number of results to skip
+   * @param limit the maximum number of results
+   * @return the keys of the results, in the order of the index
+   */
+  private List<Key> scan(Query query, Key after, int skip, int limit) {
+    var keys = new ArrayList<Key>();
+    var source = source(query.codexName());
+    if (source == null) {
+      return keys;
+    }
+    for (var range : dateRanges(source, query.options(), query.date())) {
+      var candidates = after == null ? range : range.tailSet(after, false);
+      for (var key : candidates) {
+        if (keys.size() >= limit) {
+          return keys;
+        }
+        if (!byDate.get(key).codex().name().contains(query.codexName())) {
+          continue;
+        }
+        if (skip > 0) {
+          skip--;
+          continue;
+        }
+        keys.add(key);
+      }
+    }
+    return keys;
+  }
+
+  /**
+   * Choose the codexes to check for a name
+   *
+   * @param codexName the searched name
+   * @return the keys of the candidates, null if no codex can match
+   */
+  private NavigableSet<Key> source(String codexName) {
+    if (codexName.length() < GRAM_LENGTH) {
+      return byDate.navigableKeySet();
+    }
+    TreeSet<Key> smallest = null;
+    for (var gram : grams(codexName)) {
+      var keys = postings.get(gram);
+      if (keys == null) {
+        return null;
+      }
+      if (smallest == null || keys.size() < smallest.size()) {
+        smallest = keys;
+      }
+    }
+    return smallest;
+  }
+
+  /**
+   * Restrict candidates to the dates matching the options, the options are combined with a or
+   *
+   * @param keys    the candidates
+   * @param options the date options, 0 for any date
+   * @param date    the date of the options
+   * @return the ranges of candidates, in the order of the index
+   */
+  private static List<NavigableSet<Key>> dateRanges(NavigableSet<Key> keys, int options, long date) {
+    if (options == 0) {
+      return List.of(keys);
+    }
+    var ranges = new ArrayList<NavigableSet<Key>>();
+    if ((options & Search.Option.BEFORE_DATE.value()) != 0) {
+      ranges.add(keys.headSet(Key.first(date), false));
+    }
+    // the date comes from the client, the next date doesn't exist after Long.MAX_VALUE
+    var last = date == Long.MAX_VALUE;
+    if ((options & Search.Option.AT_DATE.value()) != 0) {
+      ranges.add(last ? keys.tailSet(Key.first(date), true)
+              : keys.subSet(Key.first(date), true, Key.first(date + 1), false));
+    }
+    if ((options & Search.Option.AFTER_DATE.value()) != 0) {
+      ranges.add(last ? Collections.emptyNavigableSet() : keys.tailSet(Key.first(date + 1), true));
+    }
+    return ranges;
+  }
+
+  private static boolean matchesDate(long registrationDate, int options, long date) {
+    if (options == 0) {
+      return true;
+    }
+    return (options & Search.Option.BEFORE_DATE.value()) != 0 && registrationDate < date
+            || (options & Search.Option.AT_DATE.value()) != 0 && registrationDate == date
+            || (options & Search.Option.AFTER_DATE.value()) != 0 && registrationDate > date;
+  }
+
+  private static HashSet<String> grams(String name) {
+    var grams = new HashSet<String>();
+    for (var i = 0; i + GRAM_LENGTH <= name.length(); i++) {
+      grams.add(name.substring(i, i + GRAM_LENGTH));
+    }
+    return grams;
+  }
+}
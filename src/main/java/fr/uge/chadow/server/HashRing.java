@@ -0,0 +1,60 @@
+package fr.uge.chadow.server;
+
+import java.util.TreeMap;
+
+/**
+ * Consistent hashing of the codex ids over the nodes of a cluster.
+ * <p>
+ * Every node is placed at several points of a 64-bit ring, a key belongs to the node of the first
+ * point following its hash. The points of a node don't depend on the other nodes: adding a node
+ * only moves to it the keys now falling before its points, about 1 / n of them,
+ * and the virtual points spread the keys evenly over the nodes.
+ */
+final class HashRing {
+  static final int VIRTUAL_NODES = 128;
+
+  private final TreeMap<Long, Integer> points = new TreeMap<>(); // point on the ring -> node
+
+  /**
+   * @param nodes        the number of nodes
+   * @param virtualNodes the number of points of each node
+   */
+  HashRing(int nodes, int virtualNodes) {
+    if (nodes < 1 || virtualNodes < 1) {
+      throw new IllegalArgumentException("A ring needs at least one node and one point per node");
+    }
+    for (var node = 0; node < nodes; node++) {
+      for (var i = 0; i < virtualNodes; i++) {
+        points.put(hash(STR."node-\{node}#\{i}"), node);
+      }
+    }
+  }
+
+  HashRing(int nodes) {
+    this(nodes, VIRTUAL_NODES);
+  }
+
+  /**
+   * @param key a codex id
+   * @return the node owning the key
+   */
+  int owner(String key) {
+    var point = points.ceilingEntry(hash(key));
+    return (point == null ? points.firstEntry() : point).getValue();
+  }
+
+  /**
+   * FNV-1a over the chars of the key, followed by the finalizer of SplitMix64
+   * so that close keys land far apart on the ring
+   */
+  static long hash(String key) {
+    var hash = 0xcbf29ce484222325L;
+    for (var i = 0; i < key.length(); i++) {
+      hash ^= key.charAt(i);
+      hash *= 0x100000001b3L;
+    }
+    hash = (hash ^ (hash >>> 30)) * 0xbf58476d1ce4e5b9L;
+    hash = (hash ^ (hash >>> 27)) * 0x94d049bb133111ebL;
+    return hash ^ (hash >>> 31);
+  }
+}
@@ -0,0 +1,61 @@
+package fr.uge.chadow.server;
+
+import fr.uge.chadow.core.protocol.server.PresenceDigest;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.Optional;
+
+/**
+ * The logins and logouts not yet sent to the connected clients.
+ * <p>
+ * A user that joins and leaves between two digests is sent as a departure only: a client may have seen
+ * the login in a directory page or delta in between. A user that leaves and joins again is sent
+ * in both lists, the clients apply the departures first.
+ */
+final class PresenceChanges {
+  private final LinkedHashSet<String> joined = new LinkedHashSet<>();
+  private final LinkedHashSet<String> left = new LinkedHashSet<>();
+
+  void joined(String login) {
+    joined.add(login);
+  }
+
+  void left(String login) {
+    joined.remove(login);
+    left.add(login);
+  }
+
+  /**
+   * @return the number of changes not yet sent
+   */
+  int size() {
+    return joined.size() + left.size();
+  }
+
+  /**
+   * Take the oldest changes, the others are kept for the next digest.
+   * The departures are taken first, so a departure is never sent after a login of the same user.
+   *
+   * @param maxUsers the maximum number of changes in the digest
+   * @return the digest, or an empty optional if there is no change
+   */
+  Optional<PresenceDigest> drain(int maxUsers) {
+    if (size() == 0) {
+      return Optional.empty();
+    }
+    var leftLogins = take(left, maxUsers);
+    var joinedLogins = take(joined, maxUsers - leftLogins.length);
+    return Optional.of(new PresenceDigest(joinedLogins, leftLogins));
+  }
+
+  private static String[] take(LinkedHashSet<String> logins, int count) {
+    var taken = new ArrayList<String>(Math.min(count, logins.size()));
+    var iterator = logins.iterator();
+    while (taken.size() < count && iterator.hasNext()) {
+      taken.add(iterator.next());
+      iterator.remove();
+    }
+    return taken.toArray(String[]::new);
+  }
+}
@@ -0,0 +1,177 @@
+package fr.uge.chadow.server;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.function.Predicate;
+
+/**
+ * Scores of the clients that can be proxies, the lower the score the better the proxy.
+ * <p>
+ * The clients are kept in a binary min-heap by score, indexed by username: adding, removing a client
+ * or changing its score is in O(log n). The best proxy outside a set of excluded clients is found by
+ * walking the heap from the root in score order, only the excluded clients with a better score
+ * are visited, so a selection costs O(k log k) for k excluded clients instead of O(n).
+ */
+final class ProxyScores {
+  private static final class Node {
+    private final String username;
+    private int score;
+    private int position;
+
+    private Node(String username, int position) {
+      this.username = username;
+      this.position = position;
+    }
+  }
+
+  private final ArrayList<Node> heap = new ArrayList<>();
+  private final HashMap<String, Node> nodes = new HashMap<>();
+
+  /**
+   * Add a client with a score of 0, nothing is done if it is already present
+   *
+   * @param username the username of the client
+   */
+  void add(String username) {
+    if (nodes.containsKey(username)) {
+      return;
+    }
+    var node = new Node(username, heap.size());
+    heap.add(node);
+    nodes.put(username, node);
+    siftUp(node.position);
+  }
+
+  /**
+   * Remove a client, nothing is done if it is absent
+   *
+   * @param username the username of the client
+   */
+  void remove(String username) {
+    var node = nodes.remove(username);
+    if (node == null) {
+      return;
+    }
+    var last = heap.removeLast();
+    if (last == node) {
+      return;
+    }
+    last.position = node.position;
+    heap.set(last.position, last);
+    siftDown(last.position);
+    siftUp(last.position);
+  }
+
+  /**
+   * Add a chain to the score of a client, nothing is done if it is absent
+   *
+   * @param username the username of the client
+   */
+  void increment(String username) {
+    var node = nodes.get(username);
+    if (node == null) {
+      return;
+    }
+    node.score++;
+    siftDown(node.position);
+  }
+
+  /**
+   * Release a chain of a client, nothing is done if it is absent
+   *
+   * @param username the username of the client
+   */
+  void decrement(String username) {
+    var node = nodes.get(username);
+    if (node == null) {
+      return;
+    }
+    node.score--;
+    siftUp(node.position);
+  }
+
+  /**
+   * @param username the username of a client
+   * @return the score of the client
+   * @throws NoSuchElementException if the client is absent
+   */
+  int score(String username) {
+    var node = nodes.get(username);
+    if (node == null) {
+      throw new NoSuchElementException(STR."No score for \{username}");
+    }
+    return node.score;
+  }
+
+  int size() {
+    return heap.size();
+  }
+
+  /**
+   * Select the client with the lowest score that is not excluded
+   *
+   * @param excluded the clients that can't be selected
+   * @return the username of the selected client
+   * @throws NoSuchElementException if every client is excluded
+   */
+  String selectBest(Predicate<String> excluded) {
+    if (heap.isEmpty()) {
+      throw new NoSuchElementException("No proxy available");
+    }
+    // the positions to visit, in score order: the children of an excluded client may be better than its siblings
+    var frontier = new PriorityQueue<Integer>((i, j) -> Integer.compare(heap.get(i).score, heap.get(j).score));
+    frontier.add(0);
+    while (!frontier.isEmpty()) {
+      var position = frontier.poll();
+      var node = heap.get(position);
+      if (!excluded.test(node.username)) {
+        return node.username;
+      }
+      for (var child = 2 * position + 1; child <= 2 * position + 2 && child < heap.size(); child++) {
+        frontier.add(child);
+      }
+    }
+    throw new NoSuchElementException("No proxy available");
+  }
+
+  private void siftUp(int position) {
+    var node = heap.get(position);
+    while (position > 0) {
+      var parentPosition = (position - 1) / 2;
+      var parent = heap.get(parentPosition);
+      if (parent.score <= node.score) {
+        break;
+      }
+      place(parent, position);
+      position = parentPosition;
+    }
+    place(node, position);
+  }
+
+  private void siftDown(int position) {
+    var node = heap.get(position);
+    for (; ; ) {
+      var child = 2 * position + 1;
+      if (child >= heap.size()) {
+        break;
+      }
+      if (child + 1 < heap.size() && heap.get(child + 1).score < heap.get(child).score) {
+        child++;
+      }
+      var smallest = heap.get(child);
+      if (node.score <= smallest.score) {
+        break;
+      }
+      place(smallest, position);
+      position = child;
+    }
+    place(node, position);
+  }
+
+  private void place(Node node, int position) {
+    heap.set(position, node);
+    node.position = position;
+  }
+}
@@ -3,23 +3,39 @@ package fr.uge.chadow.server;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.nio.channels.*;
+import java.nio.file.Path;
 import java.util.*;
-import java.util.function.Predicate;
+import java.util.function.Consumer;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import fr.uge.chadow.core.FrameLog;
 import fr.uge.chadow.core.Settings;
 import fr.uge.chadow.core.ProxyManager;
 import fr.uge.chadow.core.TCPConnectionManager;
 import fr.uge.chadow.core.context.*;
+import fr.uge.chadow.core.protocol.CodexSegment;
 import fr.uge.chadow.core.protocol.Frame;
 import fr.uge.chadow.core.protocol.WhisperMessage;
+import fr.uge.chadow.core.protocol.client.Announce;
+import fr.uge.chadow.core.protocol.client.DirectorySync;
+import fr.uge.chadow.core.protocol.client.LoadReport;
+import fr.uge.chadow.core.protocol.client.Propose;
+import fr.uge.chadow.core.protocol.client.Request;
 import fr.uge.chadow.core.protocol.client.RequestDownload;
 import fr.uge.chadow.core.protocol.client.Search;
 import fr.uge.chadow.core.protocol.field.Codex;
 import fr.uge.chadow.core.protocol.field.ProxyNodeSocket;
 import fr.uge.chadow.core.protocol.field.SocketField;
+import fr.uge.chadow.core.protocol.node.FrameBytes;
+import fr.uge.chadow.core.protocol.node.Forward;
+import fr.uge.chadow.core.protocol.node.Forwarded;
+import fr.uge.chadow.core.protocol.node.ResumeSearch;
+import fr.uge.chadow.core.protocol.node.Withdraw;
 import fr.uge.chadow.core.protocol.server.*;
 import fr.uge.chadow.core.protocol.server.Error;
+import fr.uge.chadow.core.reader.DecodingBudget;
+import fr.uge.chadow.core.reader.StringInterner;
 
 public class Server {
   /**
@@ -61,10 +77,14 @@ public class Server {
     // Map to store the client request associated with a chain ID.
     private final Map<Integer, ClientRequest> chainIdToRequest = new HashMap<>();
 
-    // Map to store the scores of proxies.
-    // The key is the username of the proxy and the value is the score.
-    // The score is used to determine the best proxy to use.
-    private final Map<String, Integer> proxyScores = new HashMap<>();
+    // Reverse index of the requests, the key is the username of a client and the value
+    // the requests it is part of, as the requester or in a chain.
+    // A disconnection only visits the requests of the client.
+    private final Map<String, Set<ClientRequest>> requestsByUser = new HashMap<>();
+
+    // Scores of the proxies, indexed by username in a min-heap.
+    // The score is the number of chains of the proxy, it is used to determine the best proxy to use.
+    private final ProxyScores proxyScores = new ProxyScores();
     private final Random random = new Random();
 
     public void initRequest(RequestDownload requestDownload, ServerContext serverContext) {
@@ -77,20 +97,14 @@ public class Server {
         return;
       }
 
-      var sharersList = codexes.entrySet().stream()
-              .filter(e -> e.getKey().codex().id().equals(requestDownload.codexId()))
-              .map(Map.Entry::getValue)
-              .findFirst()
-              .orElseThrow()
-              .stream()
-              .limit(possibleSharers)
-              .toList();
+      var sharersList = selectSharers(requestDownload.codexId(), possibleSharers);
 
       var clientRequest = new ClientRequest(serverContext, requestDownload.codexId());
       var proxiesDetails = new ProxiesDetails(requestDownload.numberOfProxies(), possibleSharers, new HashMap<>());
 
       // Add the client request and associated proxies details to the requests map
       requests.put(clientRequest, proxiesDetails);
+      index(serverContext.login(), clientRequest);
 
       // Create the different chainIds and add them to the proxiesDetails
       for (int i = 0; i < possibleSharers; i++) {
@@ -101,6 +115,7 @@ public class Server {
 
         // Add the Sharer to the contacted proxies
         proxiesDetails.chains.get(newChainId).proxiesContacted.add(sharersList.get(i));
+        index(sharersList.get(i), clientRequest);
       }
 
       // Contact the proxies for each chain
@@ -111,6 +126,16 @@ public class Server {
       }
     }
 
+    /**
+     * Adds a client request to the reverse index of a client.
+     *
+     * @param username      The username of the client.
+     * @param clientRequest The request the client is part of.
+     */
+    private void index(String username, ClientRequest clientRequest) {
+      requestsByUser.computeIfAbsent(username, k -> new HashSet<>()).add(clientRequest);
+    }
+
     /**
      * Initiates the process of contacting proxies for a given chain, starting from the last proxy in the chain
      * and working towards the first proxy.
@@ -136,12 +161,12 @@ public class Server {
         logger.info(STR."Next proxy in the chain: \{proxyUsername}");
 
         contactedProxies.add(proxyUsername);
-        proxyScores.put(proxyUsername, proxyScores.getOrDefault(proxyUsername, 0) + 1);
+        proxyScores.increment(proxyUsername);
 
         proxiesDetails.chains.get(chainId).proxiesContacted.add(proxyUsername);
+        index(proxyUsername, chainIdToRequest.get(chainId));
 
-        SocketField proxySocket = new SocketField(clients.get(currentProxyToContact).address().getAddress()
-                .getAddress(), clients.get(currentProxyToContact).address().getPort());
+        SocketField proxySocket = socketField(sharerAddress(currentProxyToContact));
 
         // Send a Proxy Frame to the proxy
         clients.get(proxyUsername).serverContext.queueFrame(new Proxy(chainId, proxySocket));
@@ -161,13 +186,8 @@ public class Server {
      * @throws NoSuchElementException if no proxy can be selected.
      */
     private String selectBestProxy(Set<String> sharers, Set<String> contactedProxies, String client) {
-      return proxyScores.entrySet().stream()
-              .filter(e -> !client.equals(e.getKey()))
-              .filter(e -> !sharers.contains(e.getKey()))
-              .filter(e -> !contactedProxies.contains(e.getKey()))
-              .min(Map.Entry.comparingByValue())
-              .map(Map.Entry::getKey)
-              .orElseThrow();
+      return proxyScores.selectBest(username -> client.equals(username) || sharers.contains(username)
+              || contactedProxies.contains(username));
     }
 
     /**
@@ -194,10 +214,8 @@ public class Server {
      * @return The possible number of sharers if the requested number of proxies is reasonable, otherwise -1.
      */
     public int calculatePossibleSharers(int numberOfProxies, int numberOfSharers, String codexId) {
-      var possibleSharers = codexes.entrySet().stream()
-              .filter(e -> e.getKey().codex().id().equals(codexId))
-              .mapToInt(e -> e.getValue().size())
-              .sum();
+      var codexRecord = codexes.get(codexId);
+      var possibleSharers = codexRecord == null ? 0 : codexRecord.sharers().size();
       possibleSharers = Math.min(possibleSharers, numberOfSharers);
 
       var possibleProxies = clients.size() - 1 - possibleSharers;
@@ -281,6 +299,7 @@ public class Server {
     /**
      * Removes all instances of a client from the proxy scores and requests, including
      * client requests associated with any chains involving the client.
+     * Only the requests the client is part of are visited.
      *
      * @param username The username of the client to remove.
      */
@@ -289,25 +308,38 @@ public class Server {
       // Remove the client from the proxy scores
       proxyScores.remove(username);
 
-      // Remove the requests associated with the client
-      requests.entrySet().removeIf(entry -> entry.getKey().serverContext.login().equals(username));
-
-      // Remove the client from the requests where the client is present in any chain
-      List<ClientRequest> requestsToRemove = new ArrayList<>();
-
-      for (var entry : requests.entrySet()) {
-        var clientRequest = entry.getKey();
-        var proxiesDetails = entry.getValue();
+      // Remove the requests of the client and the requests where the client is present in any chain
+      var clientRequests = requestsByUser.remove(username);
+      if (clientRequests != null) {
+        clientRequests.forEach(this::removeRequest);
+      }
+    }
 
-        for (var chainDetails : proxiesDetails.chains.values()) {
-          if (chainDetails.proxiesContacted.contains(username)) {
-            requestsToRemove.add(clientRequest);
-            break;
-          }
-        }
+    /**
+     * Removes a client request, its chains, and its entries in the reverse index.
+     * The scores of the proxies that confirmed the chains are decreased.
+     *
+     * @param clientRequest The client request to remove.
+     */
+    private void removeRequest(ClientRequest clientRequest) {
+      var proxiesDetails = requests.remove(clientRequest);
+      if (proxiesDetails == null) {
+        return;
       }
+      for (var entry : proxiesDetails.chains.entrySet()) {
+        chainIdToRequest.remove(entry.getKey());
+        var chainDetails = entry.getValue();
+        chainDetails.proxiesConfirmed.forEach(proxy -> proxyScores.decrement(proxy));
+        chainDetails.proxiesContacted.forEach(user -> unindex(user, clientRequest));
+      }
+      unindex(clientRequest.serverContext.login(), clientRequest);
+    }
 
-      requestsToRemove.forEach(requests::remove);
+    private void unindex(String username, ClientRequest clientRequest) {
+      requestsByUser.computeIfPresent(username, (k, clientRequests) -> {
+        clientRequests.remove(clientRequest);
+        return clientRequests.isEmpty() ? null : clientRequests;
+      });
     }
 
     /**
@@ -328,6 +360,8 @@ public class Server {
       proxiesDetails.chains.put(chainId, chainDetails);
       requests.put(clientRequest, proxiesDetails);
       chainIdToRequest.put(chainId, clientRequest);
+      index(serverContext.login(), clientRequest);
+      index(sharer, clientRequest);
     }
 
     /**
@@ -337,19 +371,7 @@ public class Server {
      * @param serverContext The server context associated with the requests to be removed.
      */
     public void removeCodexId(String codexId, ServerContext serverContext) {
-      var clientRequestToRemove = new ClientRequest(serverContext, codexId);
-      var proxiesDetails = requests.get(clientRequestToRemove);
-
-      // Decrease the score of the proxies that are in the chain
-      proxiesDetails.chains.values().forEach(chainDetails -> {
-        chainDetails.proxiesConfirmed.forEach(proxy -> proxyScores.put(proxy, proxyScores.get(proxy) - 1));
-      });
-
-      // Remove the chainIds associated with the client request from the chainIdToRequest map
-      proxiesDetails.chains.keySet().forEach(chainIdToRequest::remove);
-
-      // Remove the client request from the requests map
-      requests.remove(clientRequestToRemove);
+      removeRequest(new ClientRequest(serverContext, codexId));
     }
   }
 
@@ -365,19 +387,31 @@ public class Server {
   }
 
   /**
-   * Represents a record containing information about a codex and its registration date.
+   * Represents a record containing information about a codex, its registration date and its sharers.
    *
    * @param codex            The codex information.
    * @param registrationDate The registration date of the codex.
+   * @param sharers          The usernames of the clients sharing the codex.
    */
-  public record CodexRecord(Codex codex, long registrationDate) {
+  public record CodexRecord(Codex codex, long registrationDate, Set<String> sharers) {
   }
 
 
   private static final Logger logger = Logger.getLogger(Server.class.getName());
   private final Map<String, SocketInfo> clients = new HashMap<>();
-  private final Map<CodexRecord, Set<String>> codexes = new HashMap<>(); // codex -> list of usernames
+  static final int MAX_ID_CANDIDATES = 16;
+  private final Map<String, CodexRecord> codexes = new HashMap<>(); // codex id -> codex and its sharers
+  private final NavigableSet<String> codexIds = new TreeSet<>(); // sorted codex ids, to resolve abbreviated ids
+  private final CodexSearchIndex searchIndex; // codexes with at least one sharer
+  private final Map<String, Set<ServerContext>> subscribers = new HashMap<>(); // codex id -> open downloaders
+  // load assumed for a sharer that has not reported yet, a client that just connected is idle
+  private static final LoadReport UNREPORTED_LOAD = new LoadReport(0, 0, 8);
+  private final Map<String, LoadReport> loads = new HashMap<>(); // username -> last load report
+  private final Random random = new Random();
+  private final PresenceChanges presenceChanges = new PresenceChanges(); // not yet sent to the clients
+  private final UserDirectory directory; // the connected users, fetched by the clients with their changes
   private TCPConnectionManager connectionManager;
+  private Cluster cluster; // null when the server is not a node of a cluster
 
   // Proxy part
 
@@ -397,16 +431,80 @@ public class Server {
   private final ProxyManager proxyManager = new ProxyManager(); // when server is a
   private ServerProxyDetails serverProxyDetails;
   private final Settings settings;
+  private final DecodingBudget decodingBudget; // of every connection
 
   public Server(Settings settings) {
     this.settings = settings;
+    this.decodingBudget = DecodingBudget.of(settings);
+    this.searchIndex = new CodexSearchIndex(settings.getInt("searchCache"));
+    this.directory = new UserDirectory(random.nextLong(), settings.getInt("directoryLog"));
   }
 
   public void start() throws IOException {
-    this.connectionManager = new TCPConnectionManager(settings.getInt("port"), key -> new ServerContext(this, key, settings));
+    StringInterner.configure(settings.getInt("internCache"));
+    if (!settings.getStr("cluster").isEmpty()) {
+      cluster = new Cluster(this, Cluster.parseNodes(settings.getStr("cluster")), settings.getInt("node"),
+              settings.getInt("clusterTimeout"));
+      logger.info(STR."Node \{cluster.self()} of a cluster of \{cluster.size()} nodes");
+    }
+    var capture = startCapture();
+    this.connectionManager = new TCPConnectionManager(settings.getInt("port"), key -> {
+      var context = new ServerContext(this, key, settings);
+      if (capture != null) {
+        context.captureTo(capture);
+      }
+      return context;
+    });
+    connectionManager.onTick(settings.getInt("presenceInterval"), this::tick);
     connectionManager.launch();
   }
 
+  private void tick() {
+    sendPresenceDigest();
+    if (cluster != null) {
+      cluster.tick(connectionManager);
+    }
+    logStats();
+  }
+
+  /**
+   * Log the statistics of the caches, at FINE since it runs on every tick
+   */
+  private void logStats() {
+    if (!logger.isLoggable(Level.FINE)) {
+      return;
+    }
+    if (StringInterner.stats().capacity() != 0) {
+      logger.fine(STR."String interning: \{StringInterner.stats()}");
+    }
+    if (searchIndex.cacheStats().capacity() != 0) {
+      logger.fine(STR."Search cache: \{searchIndex.cacheStats()}");
+    }
+  }
+
+  /**
+   * Open the log of the received frames if the capture is enabled
+   *
+   * @return the log, or null if the capture is disabled
+   * @throws IOException if the log can't be created
+   */
+  private FrameLog.Writer startCapture() throws IOException {
+    var path = settings.getStr("capture");
+    if (path.isEmpty()) {
+      return null;
+    }
+    var capture = FrameLog.Writer.open(Path.of(path));
+    Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+      try {
+        capture.close();
+      } catch (IOException e) {
+        logger.warning(STR."Could not close the frame capture: \{e.getMessage()}");
+      }
+    }));
+    logger.info(STR."Capturing the received frames in \{path}");
+    return capture;
+  }
+
   /**
    * Get the server context associated with the given username
    *
@@ -417,14 +515,244 @@ public class Server {
     return clients.get(username).serverContext;
   }
 
+  /**
+   * Get the sharers of a codex known by the server
+   *
+   * @param codexId the id of the codex
+   * @return the usernames of the sharers of the codex
+   * @throws NoSuchElementException if the codex is unknown
+   */
+  private Set<String> sharersOf(String codexId) {
+    var codexRecord = codexes.get(codexId);
+    if (codexRecord == null) {
+      throw new NoSuchElementException(STR."Codex \{codexId} not found");
+    }
+    return codexRecord.sharers();
+  }
+
+  /**
+   * @param sharer a client of this node, or a sharer of another node of the cluster
+   * @return the listening address of the sharer, or null if it is unknown
+   */
+  private InetSocketAddress sharerAddress(String sharer) {
+    var socketInfo = clients.get(sharer);
+    if (socketInfo != null) {
+      return socketInfo.address();
+    }
+    return cluster == null ? null : cluster.sharerAddress(sharer);
+  }
+
+  private static SocketField socketField(InetSocketAddress address) {
+    return new SocketField(address.getAddress().getAddress(), address.getPort());
+  }
+
+  private SocketField listeningSocket(String login) {
+    return socketField(clients.get(login).address());
+  }
+
+  // -------------------------------- Cluster part --------------------------------
+
+  /**
+   * @param codexId the id of a codex
+   * @return the node owning the codex if it is another node of the cluster, -1 if the codex is handled here
+   */
+  private int ownerOf(String codexId) {
+    if (cluster == null) {
+      return -1;
+    }
+    var owner = cluster.owner(codexId);
+    return owner == cluster.self() ? -1 : owner;
+  }
+
+  /**
+   * @param codexIds the ids of codexes
+   * @return the ids grouped by owner, -1 for the codexes handled here
+   */
+  private Map<Integer, List<String>> byOwner(Collection<String> codexIds) {
+    var byOwner = new HashMap<Integer, List<String>>();
+    for (var codexId : codexIds) {
+      byOwner.computeIfAbsent(ownerOf(codexId), _ -> new ArrayList<>()).add(codexId);
+    }
+    return byOwner;
+  }
+
+  /**
+   * Check a NodeHello: a link is accepted only from the host of another node of the cluster
+   *
+   * @param node    the index the link claims
+   * @param address the remote address of the link
+   * @return true if the link is accepted
+   */
+  public boolean acceptNode(int node, InetSocketAddress address) {
+    return cluster != null && cluster.isNode(node, address.getAddress());
+  }
+
+  /**
+   * Handle a frame forwarded by another node of the cluster, about codexes owned by this node.
+   * The frame is answered on the link when the other node waits for an answer.
+   *
+   * @param node    the node that forwarded the frame
+   * @param forward the forwarded frame
+   * @param link    the context of the link opened by the other node
+   */
+  public void forwarded(int node, Forward forward, ServerContext link) {
+    List<Frame> frames;
+    try {
+      frames = FrameBytes.decode(forward.frame());
+    } catch (IllegalArgumentException e) {
+      logger.warning(STR."Node \{node} forwarded an invalid frame");
+      frames = List.of();
+    }
+    var answers = new ArrayList<Frame>();
+    for (var frame : frames) {
+      try {
+        forwarded(node, forward, frame, answers);
+      } catch (IllegalArgumentException | NoSuchElementException e) {
+        logger.warning(STR."Node \{node} forwarded an invalid \{frame.getClass().getSimpleName()}: \{e.getMessage()}");
+      }
+    }
+    if (forward.requestId() != 0) {
+      link.queueFrame(new Forwarded(forward.requestId(), FrameBytes.encode(answers)));
+    }
+  }
+
+  private void forwarded(int node, Forward forward, Frame frame, List<Frame> answers) {
+    switch (frame) {
+      case Propose propose -> {
+        var sharer = cluster.remoteSharer(node, forward.login(), forward.sharer());
+        register(propose.codex(), sharer);
+        cluster.shared(sharer, propose.codex().id());
+      }
+      case Announce announce -> {
+        var sharer = cluster.remoteSharer(node, forward.login(), forward.sharer());
+        var unknownCodexIds = new ArrayList<String>();
+        for (var codexId : announce.codexIds()) {
+          if (announce(codexId, sharer)) {
+            cluster.shared(sharer, codexId);
+          } else {
+            unknownCodexIds.add(codexId);
+          }
+        }
+        if (!unknownCodexIds.isEmpty()) {
+          answers.add(new MetadataRequest(unknownCodexIds.toArray(String[]::new)));
+        }
+      }
+      case Withdraw withdraw -> withdraw(Cluster.sharerName(node, forward.login()), Arrays.asList(withdraw.codexIds()));
+      case Request request -> request(request.codexId(), answers::add);
+      case RequestDownload requestDownload -> openDownload(requestDownload.codexId(), requestDownload.numberOfSharers(), answers::add);
+      case Search search -> answers.add(search(search));
+      case ResumeSearch resume -> answers.add(search(resume.search(), CodexSearchIndex.Cursor.of(resume)).response());
+      default -> logger.warning(STR."Node \{node} forwarded an unexpected frame \{frame}");
+    }
+  }
+
+  /**
+   * Remove a sharer from codexes owned by this node
+   *
+   * @param sharer   a sharer of another node
+   * @param codexIds the ids of the codexes
+   */
+  private void withdraw(String sharer, Collection<String> codexIds) {
+    for (var codexId : codexIds) {
+      var codexRecord = codexes.get(codexId);
+      if (codexRecord == null || !codexRecord.sharers().remove(sharer)) {
+        continue;
+      }
+      if (codexRecord.sharers().isEmpty()) {
+        searchIndex.remove(codexRecord);
+      }
+      notifySubscribers(codexId, sharer, (byte) 0);
+      cluster.withdrawn(sharer, codexId);
+    }
+  }
+
+  /**
+   * Relay the answer of another node of the cluster to the client
+   *
+   * @param forwarded the answer
+   */
+  public void answered(Forwarded forwarded) {
+    cluster.answered(forwarded);
+  }
+
+  /**
+   * The link this node opened to another node closed
+   *
+   * @param node the other node
+   * @param link the context of the link
+   */
+  public void nodeLinkClosed(int node, NodeContext link) {
+    cluster.linkClosed(node, link);
+  }
+
+  /**
+   * The link another node opened to this node closed, its sharers are removed
+   *
+   * @param node the other node
+   */
+  public void nodeDisconnected(int node) {
+    logger.warning(STR."Node \{node} disconnected");
+    // withdrawn before they are forgotten, their subscribers are told where they were
+    cluster.sharersOf(node).forEach(this::withdraw);
+    cluster.removeSharersOf(node);
+  }
+
+  // --------------------------------------------------------------------------------------------------
+
   public void discovery(ServerContext serverContext) {
     var username = serverContext.login();
     var usernames = clients.keySet().stream().filter(client -> !client.equals(username)).toArray(String[]::new);
     serverContext.queueFrame(new DiscoveryResponse(usernames));
   }
 
+  /**
+   * Answer the changes of the user directory since the version known by the client,
+   * or the next page of the directory if they are not known anymore
+   *
+   * @param serverContext the context of the client
+   * @param directorySync the request of the client
+   */
+  public void syncDirectory(ServerContext serverContext, DirectorySync directorySync) {
+    if (directorySync.after().isEmpty() && directory.knowsChangesSince(directorySync.epoch(), directorySync.version())) {
+      serverContext.queueFrame(directory.delta(directorySync.version(), DirectoryDelta.MAX_USERS));
+      return;
+    }
+    serverContext.queueFrame(directory.page(directorySync.after(), DirectoryPage.MAX_USERS));
+  }
+
   public void broadcast(Frame frame) {
-    connectionManager.broadcast(frame);
+    if (connectionManager == null) {
+      // not started, no connection to broadcast to
+      return;
+    }
+    // only to the logged-in clients, the links of the other nodes carry the forwarded frames only
+    for (var socketInfo : clients.values()) {
+      socketInfo.serverContext().queueFrame(frame);
+    }
+  }
+
+  /**
+   * Record the login of a user in the directory, it is sent to the clients with the next presence digest
+   *
+   * @param login the login of the user
+   */
+  public void userJoined(String login) {
+    directory.joined(login);
+    if (connectionManager != null) {
+      presenceChanges.joined(login);
+    }
+  }
+
+  /**
+   * Send the logins and logouts since the previous tick to every client, in one frame.
+   * A burst of changes larger than a frame is spread over the next ticks,
+   * so a client never receives more than one digest per tick.
+   */
+  private void sendPresenceDigest() {
+    presenceChanges.drain(PresenceDigest.MAX_USERS).ifPresent(digest -> {
+      logger.info(STR."Presence digest: \{digest.joined().length} joined, \{digest.left().length} left, \{presenceChanges.size()} pending");
+      broadcast(digest);
+    });
   }
 
   public void whisper(WhisperMessage message, String username_sender) {
@@ -435,82 +763,305 @@ public class Server {
   }
 
   public void propose(Codex codex, String username) {
-    codexes.entrySet().stream()
-            .filter(e -> e.getKey().codex().id().equals(codex.id()))
-            .map(Map.Entry::getValue)
-            .findFirst()
-            .ifPresentOrElse(
-                    clientCodexes -> clientCodexes.add(username),
-                    () -> {
-                      var newCodexRecord = new CodexRecord(codex, System.currentTimeMillis());
-                      codexes.put(newCodexRecord, new HashSet<>(List.of(username)));
-                    }
-            );
+    var owner = ownerOf(codex.id());
+    if (owner != -1 && cluster.forward(owner, username, listeningSocket(username), new Propose(codex), null)) {
+      return;
+    }
+    register(codex, username);
   }
 
-  public void request(String codexId, ServerContext serverContext) {
-    //logger.info(STR."map : \{codexes}");
-    var codex = codexes.keySet().stream()
-            .map(CodexRecord::codex)
-            .filter(c -> c.id().startsWith(codexId))
-            .findFirst()
-            .orElse(null);
-    if (codex == null) {
-      logger.warning(STR."Codex \{codexId} not found");
-      return;
+  /**
+   * Register a codex owned by this node, or add a sharer if it is already known
+   *
+   * @param codex  the codex
+   * @param sharer the sharer, a client of this node or a sharer of another node of the cluster
+   */
+  private void register(Codex codex, String sharer) {
+    if (!announce(codex.id(), sharer)) {
+      var newCodexRecord = new CodexRecord(codex, System.currentTimeMillis(), new HashSet<>(List.of(sharer)));
+      codexes.put(codex.id(), newCodexRecord);
+      codexIds.add(codex.id());
+      searchIndex.add(newCodexRecord);
+      notifySubscribers(codex.id(), sharer, (byte) 1);
     }
-    serverContext.queueFrame(new RequestResponse(codex));
   }
 
-  public SearchResponse search(Search search) {
-    Predicate<CodexRecord> dateFilter = c -> {
-      if (search.options() == 0) {
-        return true;
+  /**
+   * Add a client as a sharer of codexes identified by their id.
+   * The metadata of the codexes unknown by their owner are asked to the client.
+   *
+   * @param codexIds      the ids of the codexes
+   * @param serverContext the context of the client
+   * @return the ids of the codexes the client now shares, or asked to the client
+   */
+  public List<String> announce(String[] codexIds, ServerContext serverContext) {
+    var login = serverContext.login();
+    var shared = new ArrayList<String>();
+    var unknownCodexIds = new ArrayList<String>();
+    for (var entry : byOwner(Arrays.asList(codexIds)).entrySet()) {
+      var owner = entry.getKey();
+      var ownerCodexIds = entry.getValue();
+      if (owner != -1 && cluster.forward(owner, login, listeningSocket(login),
+              new Announce(ownerCodexIds.toArray(String[]::new)), serverContext::queueFrame)) {
+        // the owner asks the metadata it doesn't know, they are withdrawn from it on disconnection
+        shared.addAll(ownerCodexIds);
+        continue;
       }
-      var result = false;
-      if ((search.options() & Search.Option.AT_DATE.value()) != 0) {
-        result |= c.registrationDate == search.date();
+      for (var codexId : ownerCodexIds) {
+        if (announce(codexId, login)) {
+          shared.add(codexId);
+        } else {
+          unknownCodexIds.add(codexId);
+        }
       }
-      if ((search.options() & Search.Option.BEFORE_DATE.value()) != 0) {
-        result |= c.registrationDate < search.date();
+    }
+    logger.info(STR."\{login} announced \{codexIds.length} codexes, \{unknownCodexIds.size()} unknown");
+    if (!unknownCodexIds.isEmpty()) {
+      serverContext.queueFrame(new MetadataRequest(unknownCodexIds.toArray(String[]::new)));
+    }
+    return shared;
+  }
+
+  /**
+   * Add a sharer to a codex already known by the server
+   *
+   * @param codexId  the id of the codex
+   * @param username the username of the sharer
+   * @return false if the codex is unknown, its metadata must be proposed
+   */
+  public boolean announce(String codexId, String username) {
+    var codexRecord = codexes.get(codexId);
+    if (codexRecord == null) {
+      return false;
+    }
+    if (codexRecord.sharers().add(username)) {
+      if (codexRecord.sharers().size() == 1) {
+        // shared again, it can be found again
+        searchIndex.add(codexRecord);
       }
-      if ((search.options() & Search.Option.AFTER_DATE.value()) != 0) {
-        result |= c.registrationDate > search.date();
+      notifySubscribers(codexId, username, (byte) 1);
+    }
+    return true;
+  }
+
+  /**
+   * Register a client downloading a codex in open mode
+   * to be notified when sharers of the codex join or leave.
+   *
+   * @param codexId       the id of the codex
+   * @param serverContext the server context of the downloader
+   */
+  public void subscribe(String codexId, ServerContext serverContext) {
+    subscribers.computeIfAbsent(codexId, k -> new HashSet<>()).add(serverContext);
+  }
+
+  public void unsubscribe(String codexId, ServerContext serverContext) {
+    subscribers.computeIfPresent(codexId, (k, v) -> {
+      v.remove(serverContext);
+      return v.isEmpty() ? null : v;
+    });
+  }
+
+  /**
+   * Push a sharer event to the subscribers of a codex
+   *
+   * @param codexId the id of the codex
+   * @param sharer  the username of the sharer
+   * @param code    1 if the sharer joined, 0 if it left
+   */
+  private void notifySubscribers(String codexId, String sharer, byte code) {
+    var codexSubscribers = subscribers.get(codexId);
+    var sharerAddress = sharerAddress(sharer);
+    if (codexSubscribers == null || sharerAddress == null) {
+      return;
+    }
+    var socket = socketField(sharerAddress);
+    var event = new SharerEvent(code, codexId, socket);
+    for (var subscriber : codexSubscribers) {
+      if (!sharer.equals(subscriber.login())) {
+        subscriber.queueFrame(event);
       }
-      return result;
-    };
+    }
+    logger.info(STR."Sharer \{sharer} \{code == 1 ? "joined" : "left"} codex \{codexId}, \{codexSubscribers.size()} subscribers notified");
+  }
+
+  /**
+   * Find the ids of the codexes starting with a prefix, in O(log n + limit)
+   *
+   * @param prefix the prefix of the ids
+   * @param limit  the maximum number of ids returned
+   * @return the matching ids, in ascending order
+   */
+  public List<String> codexIdsStartingWith(String prefix, int limit) {
+    return codexIds.tailSet(prefix).stream()
+            .takeWhile(id -> id.startsWith(prefix))
+            .limit(limit)
+            .toList();
+  }
 
+  public void request(String codexId, ServerContext serverContext) {
+    var login = serverContext.login();
+    if (cluster != null && codexId.length() < Codex.ID_LENGTH) {
+      // the owner of an abbreviated id is unknown, every node resolves it with the codexes it owns
+      cluster.request(new Request(codexId), login, listeningSocket(login), request -> {
+        var frames = new ArrayList<Frame>();
+        request(request.codexId(), frames::add);
+        return frames;
+      }, serverContext::queueFrame);
+      return;
+    }
+    var owner = ownerOf(codexId);
+    if (owner != -1 && cluster.forward(owner, login, listeningSocket(login), new Request(codexId), serverContext::queueFrame)) {
+      return;
+    }
+    request(codexId, serverContext::queueFrame);
+  }
+
+  private void request(String codexId, Consumer<Frame> reply) {
+    var codexRecord = codexes.get(codexId);
+    if (codexRecord == null) {
+      // the id may be abbreviated, it must match a single codex
+      var candidates = codexIdsStartingWith(codexId, MAX_ID_CANDIDATES);
+      if (candidates.size() != 1) {
+        logger.warning(candidates.isEmpty() ? STR."Codex \{codexId} not found"
+                : STR."Codex id \{codexId} is ambiguous, candidates: \{candidates}");
+        reply.accept(new CodexCandidates(codexId, candidates.toArray(String[]::new)));
+        return;
+      }
+      codexRecord = codexes.get(candidates.getFirst());
+    }
+    var codex = codexRecord.codex();
+    if (CodexSegment.isSegmented(codex)) {
+      for (var segment : CodexSegment.split(codex)) {
+        reply.accept(segment);
+      }
+      return;
+    }
+    reply.accept(new RequestResponse(codex));
+  }
+
+  public SearchResponse search(Search search) {
+    return search(search, null).response();
+  }
+
+  /**
+   * Search the shared codexes by name and registration date
+   *
+   * @param search the search
+   * @param cursor the cursor of the previous page returned to the same client, may be null
+   * @return the page of results and the cursor to resume the search
+   */
+  public CodexSearchIndex.Page search(Search search, CodexSearchIndex.Cursor cursor) {
     logger.info(STR."Searching for \{search.codexName()}");
-    var filteredCodexes = codexes.keySet().stream()
-            .filter(dateFilter)
-            .filter(c -> c.codex().name().contains(search.codexName()))
-            .skip(search.offset())
-            .limit(search.results())
-            .map(codexRegistration -> {
-              var codex = codexRegistration.codex();
-              return new SearchResponse.Result(codex.name(), codex.id(), codexRegistration.registrationDate,
-                      codexes.get(codexRegistration).size());
-            })
-            .toArray(SearchResponse.Result[]::new);
-    return new SearchResponse(filteredCodexes);
+    return searchIndex.search(search, cursor);
+  }
+
+  /**
+   * @return the decoding budget of the connections of the server
+   */
+  public DecodingBudget decodingBudget() {
+    return decodingBudget;
+  }
+
+  /**
+   * @return true if the server is a node of a cluster, the searches are sent to every node
+   */
+  public boolean isClustered() {
+    return cluster != null;
+  }
+
+  /**
+   * Search the codexes of every node of the cluster, the page is returned when every node answered
+   *
+   * @param search        the search
+   * @param cursor        the cursor of the previous page returned to the client, may be null
+   * @param serverContext the context of the client
+   * @param onPage        called with the page and the cursor to resume the search after it
+   */
+  public void searchCluster(Search search, CodexSearchIndex.Cursor cursor, ServerContext serverContext,
+                            Consumer<CodexSearchIndex.Page> onPage) {
+    var login = serverContext.login();
+    cluster.search(search, cursor, login, listeningSocket(login), this::search, onPage);
+  }
+
+  /**
+   * @return the metrics of the cache of the search results
+   */
+  public CodexSearchIndex.CacheStats searchCacheStats() {
+    return searchIndex.cacheStats();
+  }
+
+  /**
+   * Save the last load reported by a client
+   *
+   * @param username   the username of the client
+   * @param loadReport the load of the client
+   */
+  public void reportLoad(String username, LoadReport loadReport) {
+    loads.put(username, loadReport);
+  }
+
+  /**
+   * Spare capacity of a sharer, from its last load report: its free slots,
+   * divided by its upload rate in MiB/s plus one.
+   * A saturated sharer keeps a small weight, its report may be outdated.
+   *
+   * @param sharer the username of the sharer
+   * @return the weight of the sharer in the selection
+   */
+  private double spareCapacity(String sharer) {
+    var load = loads.getOrDefault(sharer, UNREPORTED_LOAD);
+    return (Math.max(0, load.freeSlots()) + 1) / (1 + Math.max(0, load.uploadRate()) / 1024.0);
+  }
+
+  /**
+   * Select sharers of a codex at random, weighted by their spare capacity,
+   * so that the downloaders are spread over the sharers instead of always getting the same ones.
+   * Weighted sampling without replacement: each sharer gets the key log(u) / weight
+   * for u uniform in [0, 1[, and the sharers with the largest keys are selected.
+   *
+   * @param codexId the id of the codex
+   * @param count   the maximum number of sharers
+   * @return the selected sharers
+   * @throws NoSuchElementException if the codex is unknown
+   */
+  private List<String> selectSharers(String codexId, int count) {
+    record Candidate(String username, double key) {
+    }
+    var sharers = sharersOf(codexId);
+    if (count <= 0) {
+      return List.of();
+    }
+    var selected = new PriorityQueue<>(count, Comparator.comparingDouble(Candidate::key));
+    for (var sharer : sharers) {
+      var key = Math.log(random.nextDouble()) / spareCapacity(sharer);
+      if (selected.size() < count) {
+        selected.add(new Candidate(sharer, key));
+      } else if (key > selected.peek().key()) {
+        selected.poll();
+        selected.add(new Candidate(sharer, key));
+      }
+    }
+    return selected.stream().map(Candidate::username).toList();
   }
 
   public void requestOpenDownload(ServerContext serverContext, String codexId, int numberOfSharers) {
-    var sharersList = codexes.entrySet().stream()
-            .filter(e -> e.getKey().codex().id().equals(codexId))
-            .map(Map.Entry::getValue)
-            .findFirst()
-            .orElseThrow();
-
-    // TODO: add a random selection of sharers
-    var sharersSocketFieldArray = sharersList.stream()
-            .map(clients::get)
-            .map(SocketInfo::address)
-            .map(address -> new SocketField(address.getAddress().getAddress(), address.getPort()))
-            .limit(numberOfSharers)
+    var owner = ownerOf(codexId);
+    var login = serverContext.login();
+    if (owner != -1 && cluster.forward(owner, login, listeningSocket(login),
+            new RequestDownload(codexId, (byte) 0, numberOfSharers, 0), serverContext::queueFrame)) {
+      return;
+    }
+    openDownload(codexId, numberOfSharers, serverContext::queueFrame);
+  }
+
+  private void openDownload(String codexId, int numberOfSharers, Consumer<Frame> reply) {
+    var sharersSocketFieldArray = selectSharers(codexId, numberOfSharers).stream()
+            .map(this::sharerAddress)
+            .map(Server::socketField)
             .toArray(SocketField[]::new);
 
-    serverContext.queueFrame(new RequestOpenDownload(sharersSocketFieldArray));
+    reply.accept(new RequestOpenDownload(sharersSocketFieldArray));
   }
 
   // -------------------------------- Proxy part / Closed download --------------------------------
@@ -524,6 +1075,11 @@ public class Server {
    * @param requestDownload The request for a closed download initiated by the client.
    */
   public void requestClosedDownload(ServerContext serverContext, RequestDownload requestDownload) {
+    if (ownerOf(requestDownload.codexId()) != -1) {
+      // the proxies are chosen among the clients of this node, from the sharers known by this node
+      serverContext.queueFrame(new Error("Closed downloads are only served by the node owning the codex"));
+      return;
+    }
     if (requestDownload.numberOfProxies() == 1 && clients.size() == 2) {
       // The Server is used as a proxy
       // Save the proxy route
@@ -548,14 +1104,8 @@ public class Server {
    * @param serverContext   The server context associated with the server acting as a proxy.
    */
   private void saveServerProxyRoute(int chainId, RequestDownload requestDownload, ServerContext serverContext) {
-    var sharerName = codexes.entrySet().stream()
-            .filter(e -> e.getKey().codex().id().equals(requestDownload.codexId()))
-            .map(Map.Entry::getValue)
-            .findFirst()
-            .orElseThrow()
-        .stream().iterator().next();
-    var sharerSocket = new SocketField(clients.get(sharerName).address().getAddress().getAddress(),
-            clients.get(sharerName).address().getPort());
+    var sharerName = selectSharers(requestDownload.codexId(), 1).getFirst();
+    var sharerSocket = socketField(sharerAddress(sharerName));
 
     serverProxyDetails = new ServerProxyDetails(requestDownload.codexId(), chainId, serverContext.login(), sharerName);
 
@@ -605,7 +1155,7 @@ public class Server {
     if (socket.isEmpty()) {
       return false;
     }
-    connectionManager.addContext(socket.orElseThrow(), key -> new ProxyBridgeRightSideContext(key, clientAsServerContext));
+    connectionManager.addContext(socket.orElseThrow(), key -> new ProxyBridgeRightSideContext(key, clientAsServerContext, decodingBudget));
     return true;
   }
 
@@ -616,19 +1166,38 @@ public class Server {
       return false;
     }
     clients.put(login, new SocketInfo(sc, address, serverContext));
-    proxyHandler.proxyScores.put(login, 0);
+    proxyHandler.proxyScores.add(login);
     return true;
   }
 
-  public void removeClient(String login, Set<String> sharedCodex) {
+  public void removeClient(String login, Set<String> sharedCodex, Set<String> subscribedCodex) {
     logger.info(STR."Client \{login} has disconnected");
-    codexes.entrySet().stream()
-            .filter(e -> sharedCodex.contains(e.getKey().codex().id()))
-            .map(Map.Entry::getValue)
-            .findFirst()
-            .ifPresent(codexes -> codexes.remove(login));
+    if (cluster != null && clients.containsKey(login)) {
+      var socket = listeningSocket(login);
+      byOwner(sharedCodex).forEach((owner, ownerCodexIds) -> {
+        if (owner != -1) {
+          cluster.forward(owner, login, socket, new Withdraw(ownerCodexIds.toArray(String[]::new)), null);
+        }
+      });
+    }
+    for (var codexId : sharedCodex) {
+      var codexRecord = codexes.get(codexId);
+      if (codexRecord != null && codexRecord.sharers().remove(login) && codexRecord.sharers().isEmpty()) {
+        // no one shares it anymore, it can't be found
+        searchIndex.remove(codexRecord);
+      }
+    }
+    var socketInfo = clients.get(login);
+    if (socketInfo != null) {
+      subscribedCodex.forEach(codexId -> unsubscribe(codexId, socketInfo.serverContext()));
+    }
+    sharedCodex.forEach(codexId -> notifySubscribers(codexId, login, (byte) 0));
     clients.remove(login);
+    loads.remove(login);
     proxyHandler.removeAllInstancesOfClient(login);
-    broadcast(new Event((byte) 0, login));
+    directory.left(login);
+    if (connectionManager != null) {
+      presenceChanges.left(login);
+    }
   }
 }
\ No newline at end of file
@@ -0,0 +1,134 @@
+package fr.uge.chadow.server;
+
+import fr.uge.chadow.core.protocol.server.DirectoryDelta;
+import fr.uge.chadow.core.protocol.server.DirectoryPage;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * The connected users, versioned so that the clients fetch the changes since the version they know.
+ * <p>
+ * Every login and logout increments the version. Only the last change of each user is kept,
+ * ordered by version: the changes since a version are the users changed after it, with their
+ * current presence. The oldest changes are forgotten past a capacity, a client whose version is
+ * older than the forgotten changes fetches the whole directory again, by pages.
+ * The epoch distinguishes the directories of two runs of the server.
+ */
+final class UserDirectory {
+  private final long epoch;
+  private final int capacity;
+  private final TreeSet<String> users = new TreeSet<>();
+  private final TreeMap<Long, String> changes = new TreeMap<>(); // version -> user changed at this version
+  private final HashMap<String, Long> lastChanges = new HashMap<>(); // user -> version of its last change
+  private long version;
+  private long horizon; // the changes after this version are known
+
+  /**
+   * @param epoch    the epoch of the directory
+   * @param capacity the number of changes kept
+   */
+  UserDirectory(long epoch, int capacity) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("The capacity must be positive");
+    }
+    this.epoch = epoch;
+    this.capacity = capacity;
+  }
+
+  void joined(String login) {
+    if (users.add(login)) {
+      changed(login);
+    }
+  }
+
+  void left(String login) {
+    if (users.remove(login)) {
+      changed(login);
+    }
+  }
+
+  private void changed(String login) {
+    version++;
+    var previous = lastChanges.put(login, version);
+    if (previous != null) {
+      changes.remove(previous);
+    }
+    changes.put(version, login);
+    if (changes.size() > capacity) {
+      var oldest = changes.pollFirstEntry();
+      lastChanges.remove(oldest.getValue());
+      horizon = oldest.getKey();
+    }
+  }
+
+  long version() {
+    return version;
+  }
+
+  int size() {
+    return users.size();
+  }
+
+  /**
+   * @param epoch   the epoch known by a client
+   * @param version the version known by a client
+   * @return true if the changes since this version are known
+   */
+  boolean knowsChangesSince(long epoch, long version) {
+    return epoch == this.epoch && version >= horizon && version <= this.version;
+  }
+
+  /**
+   * The users following a username
+   *
+   * @param after    the username to start after, empty to start from the first user
+   * @param maxUsers the maximum number of users in the page
+   * @return the page
+   */
+  DirectoryPage page(String after, int maxUsers) {
+    var usernames = new ArrayList<String>(Math.min(maxUsers, users.size()));
+    var tail = after.isEmpty() ? users : users.tailSet(after, false);
+    var next = "";
+    for (var username : tail) {
+      if (usernames.size() == maxUsers) {
+        next = usernames.getLast();
+        break;
+      }
+      usernames.add(username);
+    }
+    return new DirectoryPage(epoch, version, usernames.toArray(String[]::new), next);
+  }
+
+  /**
+   * The users changed since a version, at most maxUsers of them: the delta then stops
+   * at the version of the last one and is marked incomplete
+   *
+   * @param since    the version known by the client
+   * @param maxUsers the maximum number of users in the delta
+   * @return the delta
+   * @throws IllegalArgumentException if the changes since this version are not known
+   */
+  DirectoryDelta delta(long since, int maxUsers) {
+    if (!knowsChangesSince(epoch, since)) {
+      throw new IllegalArgumentException(STR."Changes since \{since} are not known");
+    }
+    var joined = new ArrayList<String>();
+    var left = new ArrayList<String>();
+    var reached = version;
+    var complete = true;
+    for (Map.Entry<Long, String> change : changes.tailMap(since, false).entrySet()) {
+      if (joined.size() + left.size() == maxUsers) {
+        complete = false;
+        break;
+      }
+      reached = change.getKey();
+      (users.contains(change.getValue()) ? joined : left).add(change.getValue());
+    }
+    return new DirectoryDelta(epoch, reached, joined.toArray(String[]::new), left.toArray(String[]::new),
+            (byte) (complete ? 1 : 0));
+  }
+}
@@ -0,0 +1,284 @@
+package fr.uge.chadow.bench;
+
+import fr.uge.chadow.core.Settings;
+import fr.uge.chadow.core.SettingsParser;
+import fr.uge.chadow.core.protocol.Frame;
+import fr.uge.chadow.core.protocol.client.Propose;
+import fr.uge.chadow.core.protocol.client.Register;
+import fr.uge.chadow.core.protocol.client.Request;
+import fr.uge.chadow.core.protocol.client.RequestDownload;
+import fr.uge.chadow.core.protocol.client.Search;
+import fr.uge.chadow.core.protocol.field.Codex;
+import fr.uge.chadow.core.protocol.field.SocketField;
+import fr.uge.chadow.core.protocol.server.OK;
+import fr.uge.chadow.core.protocol.server.RequestOpenDownload;
+import fr.uge.chadow.core.protocol.server.RequestResponse;
+import fr.uge.chadow.core.protocol.server.SearchResponse;
+import fr.uge.chadow.core.reader.FrameReader;
+import fr.uge.chadow.core.reader.Reader;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.LogManager;
+import java.util.stream.Collectors;
+
+/**
+ * Federated trackers on loopback: N Servers forming a cluster in one JVM, and raw clients spread over them.
+ * <p>
+ * Every client registers on a node and proposes its codexes, which are registered on the nodes owning them.
+ * Then all the clients send requests at the same time, each one waiting for the answer before sending the next:
+ * a request or an open download of a random codex, about (n - 1) / n of them owned by another node,
+ * or a search of the unique name of a random codex, sent to every node. For each cluster size it reports
+ * the throughput, the latency percentiles of each operation and the answers missing or wrong.
+ * <pre>
+ * java --enable-preview -cp target/classes:target/test-classes fr.uge.chadow.bench.ClusterBenchmark \
+ *   --nodes:1,2,4 --clients:64 --codexes:16 --operations:200
+ * </pre>
+ */
+public class ClusterBenchmark {
+  private static final int BUFFER_SIZE = 8192;
+  private static final String[] WORDS = {"linux", "music", "movie", "book", "dataset", "backup", "game", "course"};
+
+  enum Operation {
+    REQUEST, OPEN_DOWNLOAD, SEARCH
+  }
+
+  /**
+   * A raw client connected to a node, answers are waited for one at a time
+   */
+  private static final class Session {
+    private final SocketChannel sc;
+    private final LinkedBlockingQueue<Frame> received = new LinkedBlockingQueue<>();
+
+    Session(InetSocketAddress node) throws IOException {
+      sc = SocketChannel.open(node);
+      Thread.ofVirtual().start(this::receive);
+    }
+
+    void send(Frame frame) throws IOException {
+      var bb = frame.toByteBuffer().flip();
+      while (bb.hasRemaining()) {
+        sc.write(bb);
+      }
+    }
+
+    /**
+     * Wait for a frame, skipping the others (presence digests...)
+     *
+     * @return the frame, or null if it is not received before the timeout
+     */
+    <T extends Frame> T await(Class<T> type, long timeoutMillis) throws InterruptedException {
+      var deadline = System.nanoTime() + timeoutMillis * 1_000_000L;
+      for (; ; ) {
+        var frame = received.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        if (frame == null || type.isInstance(frame)) {
+          return type.cast(frame);
+        }
+      }
+    }
+
+    private void receive() {
+      var bb = ByteBuffer.allocate(BUFFER_SIZE);
+      var frameReader = new FrameReader();
+      try {
+        while (sc.read(bb) != -1) {
+          bb.flip();
+          for (; ; ) {
+            var status = frameReader.read(bb);
+            if (status == Reader.ProcessStatus.REFILL) {
+              break;
+            }
+            if (status == Reader.ProcessStatus.ERROR) {
+              return;
+            }
+            received.add(frameReader.get());
+            frameReader.reset();
+          }
+          bb.compact();
+        }
+      } catch (IOException e) {
+        // closed by the benchmark or by the node
+      }
+    }
+
+    void close() throws IOException {
+      sc.close();
+    }
+  }
+
+  private final Settings settings;
+  private final Path directory;
+  private final HexFormat hex = HexFormat.of();
+  private final EnumMap<Operation, ArrayList<Long>> latencies = new EnumMap<>(Operation.class);
+  private final EnumMap<Operation, Integer> missing = new EnumMap<>(Operation.class);
+
+  ClusterBenchmark(Settings settings, Path directory) {
+    this.settings = settings;
+    this.directory = directory;
+  }
+
+  private void startCluster(List<Integer> ports) throws IOException, InterruptedException {
+    var cluster = ports.stream().map(port -> STR."localhost/\{port}").collect(Collectors.joining(","));
+    for (var node = 0; node < ports.size(); node++) {
+      var port = ports.get(node);
+      SwarmBenchmark.startServer(port, STR."--port:\{port}--downloadPath:\{directory.resolve(STR."node-\{port}")}"
+              + STR."--cluster:\{cluster}--node:\{node}--presenceInterval:\{settings.getInt("tick")}");
+    }
+    // the links between the nodes are opened on the first tick
+    Thread.sleep(4L * settings.getInt("tick"));
+  }
+
+  private String run(int nodes) throws IOException, InterruptedException {
+    var ports = new ArrayList<Integer>();
+    for (var node = 0; node < nodes; node++) {
+      ports.add(SwarmBenchmark.freePort());
+    }
+    startCluster(ports);
+    latencies.clear();
+    missing.clear();
+    var random = new Random(nodes);
+    var timeout = settings.getInt("timeout");
+    var loopback = InetAddress.getLoopbackAddress().getAddress();
+    var sessions = new ArrayList<Session>();
+    var codexes = new ArrayList<Codex>();
+    try {
+      for (var i = 0; i < settings.getInt("clients"); i++) {
+        var session = new Session(new InetSocketAddress("localhost", ports.get(i % nodes)));
+        sessions.add(session);
+        var listenerPort = 20_000 + i;
+        session.send(new Register(STR."n\{nodes}c\{i}", listenerPort, new SocketField(loopback, listenerPort)));
+        if (session.await(OK.class, timeout) == null) {
+          throw new IllegalStateException(STR."Client \{i} not registered");
+        }
+        for (var j = 0; j < settings.getInt("codexes"); j++) {
+          var id = hex.toHexDigits(random.nextLong()) + hex.toHexDigits(random.nextLong()) + hex.toHexDigits(random.nextInt());
+          var codex = new Codex(id, STR."\{WORDS[random.nextInt(WORDS.length)]}-\{i}.\{j}.", new Codex.FileInfo[0]);
+          codexes.add(codex);
+          session.send(new Propose(codex));
+        }
+      }
+      // the proposals forwarded to the owners are not answered
+      Thread.sleep(4L * settings.getInt("tick"));
+      var threads = new ArrayList<Thread>();
+      var start = System.nanoTime();
+      for (var i = 0; i < sessions.size(); i++) {
+        var session = sessions.get(i);
+        var sessionRandom = new Random(i);
+        threads.add(Thread.ofVirtual().start(() -> {
+          try {
+            for (var k = 0; k < settings.getInt("operations"); k++) {
+              operate(session, codexes.get(sessionRandom.nextInt(codexes.size())),
+                      Operation.values()[sessionRandom.nextInt(Operation.values().length)], timeout);
+            }
+          } catch (IOException | InterruptedException e) {
+            throw new AssertionError(e);
+          }
+        }));
+      }
+      for (var thread : threads) {
+        thread.join();
+      }
+      return report(nodes, System.nanoTime() - start);
+    } finally {
+      for (var session : sessions) {
+        session.close();
+      }
+    }
+  }
+
+  private void operate(Session session, Codex codex, Operation operation, int timeout)
+          throws IOException, InterruptedException {
+    var start = System.nanoTime();
+    var answered = switch (operation) {
+      case REQUEST -> {
+        session.send(new Request(codex.id()));
+        var response = session.await(RequestResponse.class, timeout);
+        yield response != null && response.codex().id().equals(codex.id());
+      }
+      case OPEN_DOWNLOAD -> {
+        session.send(new RequestDownload(codex.id(), (byte) 0, 1, 0));
+        var response = session.await(RequestOpenDownload.class, timeout);
+        yield response != null && response.sockets().length == 1;
+      }
+      case SEARCH -> {
+        // the name of every codex ends with -client.index.
+        session.send(new Search(codex.name().substring(codex.name().indexOf('-')), 0, 0L, 10, 0));
+        var response = session.await(SearchResponse.class, timeout);
+        yield response != null && response.results().length == 1 && response.results()[0].codexId().equals(codex.id());
+      }
+    };
+    var latency = System.nanoTime() - start;
+    synchronized (this) {
+      if (answered) {
+        latencies.computeIfAbsent(operation, _ -> new ArrayList<>()).add(latency);
+      } else {
+        missing.merge(operation, 1, Integer::sum);
+      }
+    }
+  }
+
+  private synchronized String report(int nodes, long elapsedNanos) {
+    var operations = latencies.values().stream().mapToInt(List::size).sum() + missing.values().stream().mapToInt(i -> i).sum();
+    var report = new StringBuilder(String.format(Locale.ROOT, "%d node(s): %d operations in %.2f s, %.0f operations/s",
+            nodes, operations, elapsedNanos / 1e9, operations * 1e9 / elapsedNanos));
+    for (var operation : Operation.values()) {
+      var sorted = latencies.getOrDefault(operation, new ArrayList<>()).stream().mapToLong(Long::longValue).sorted().toArray();
+      report.append(String.format(Locale.ROOT, "%n  %-16s %6d answered  p50 %9.1f us  p99 %9.1f us  %d missing",
+              operation, sorted.length, micros(sorted, 50), micros(sorted, 99), missing.getOrDefault(operation, 0)));
+    }
+    return report.toString();
+  }
+
+  private static double micros(long[] sortedNanos, int percentile) {
+    if (sortedNanos.length == 0) {
+      return Double.NaN;
+    }
+    var rank = (int) Math.ceil(percentile / 100.0 * sortedNanos.length);
+    return sortedNanos[Math.max(0, rank - 1)] / 1e3;
+  }
+
+  static SettingsParser benchmarkSettings() {
+    return new SettingsParser()
+            .addAsString("nodes", "1,2,4")
+            .addAsInt("clients", 64)
+            .addAsInt("codexes", 16) // per client
+            .addAsInt("operations", 200) // per client
+            .addAsInt("tick", 250) // milliseconds, presence and link interval of the nodes
+            .addAsInt("timeout", 5_000); // milliseconds, per answer
+  }
+
+  public static void main(String[] args) throws Exception {
+    LogManager.getLogManager().reset();
+    var settings = benchmarkSettings().parse(String.join("", args));
+    var directory = Files.createTempDirectory("chadow-cluster");
+    try {
+      var benchmark = new ClusterBenchmark(settings, directory);
+      System.out.println(STR."\{settings.getInt("clients")} clients, \{settings.getInt("codexes")} codexes "
+              + STR."and \{settings.getInt("operations")} operations per client");
+      for (var nodes : Arrays.stream(settings.getStr("nodes").split(",")).map(Integer::parseInt).toList()) {
+        System.out.println(benchmark.run(nodes));
+      }
+    } finally {
+      try (var paths = Files.walk(directory)) {
+        paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+      }
+    }
+    // the selector threads of the nodes can't be stopped
+    System.exit(0);
+  }
+}
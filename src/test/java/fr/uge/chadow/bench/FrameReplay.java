@@ -0,0 +1,256 @@
+package fr.uge.chadow.bench;
+
+import fr.uge.chadow.core.FrameLog;
+import fr.uge.chadow.core.SettingsParser;
+import fr.uge.chadow.core.protocol.CodexSegment;
+import fr.uge.chadow.core.protocol.Frame;
+import fr.uge.chadow.core.protocol.client.DirectorySync;
+import fr.uge.chadow.core.protocol.client.Discovery;
+import fr.uge.chadow.core.protocol.client.Register;
+import fr.uge.chadow.core.protocol.client.Request;
+import fr.uge.chadow.core.protocol.client.RequestDownload;
+import fr.uge.chadow.core.protocol.client.Search;
+import fr.uge.chadow.core.protocol.server.ClosedDownloadResponse;
+import fr.uge.chadow.core.protocol.server.CodexCandidates;
+import fr.uge.chadow.core.protocol.server.DirectoryDelta;
+import fr.uge.chadow.core.protocol.server.DirectoryPage;
+import fr.uge.chadow.core.protocol.server.DiscoveryResponse;
+import fr.uge.chadow.core.protocol.server.OK;
+import fr.uge.chadow.core.protocol.server.RequestOpenDownload;
+import fr.uge.chadow.core.protocol.server.RequestResponse;
+import fr.uge.chadow.core.protocol.server.SearchResponse;
+import fr.uge.chadow.core.reader.FrameReader;
+import fr.uge.chadow.core.reader.Reader;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.LogManager;
+
+/**
+ * Replay a frame log recorded by a server with {@code --capture:<path>}.
+ * <p>
+ * Every recorded session is re-opened as a connection to the target server, and its frames are sent
+ * at the recorded pace divided by the speed ({@code --speed:0} sends as fast as possible).
+ * The frames answered by the server (Register, Discovery, DirectorySync, Request, Search, RequestDownload)
+ * are matched with the first answer of the expected type on the same connection, which gives their latency.
+ * A recorded disconnection closes the connection, its unanswered frames are not waited for.
+ * Without {@code --port}, the log is replayed against a server started in this JVM.
+ * <pre>
+ * java --enable-preview -cp target/classes:target/test-classes fr.uge.chadow.bench.FrameReplay \
+ *   --log:capture.log --speed:10
+ * </pre>
+ */
+public class FrameReplay {
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  /**
+   * The frame a response answers
+   */
+  private static final Map<Class<? extends Frame>, Class<? extends Frame>> ANSWERED = Map.of(
+          OK.class, Register.class,
+          DiscoveryResponse.class, Discovery.class,
+          DirectoryPage.class, DirectorySync.class,
+          DirectoryDelta.class, DirectorySync.class,
+          RequestResponse.class, Request.class,
+          CodexCandidates.class, Request.class,
+          CodexSegment.class, Request.class,
+          SearchResponse.class, Search.class,
+          RequestOpenDownload.class, RequestDownload.class,
+          ClosedDownloadResponse.class, RequestDownload.class);
+
+  /**
+   * Latencies of the answered frames, in nanoseconds, by request
+   */
+  private final TreeMap<String, ArrayList<Long>> latencies = new TreeMap<>();
+  private final InetSocketAddress server;
+  private long framesSent;
+  private long bytesSent;
+  private long framesReceived;
+
+  FrameReplay(InetSocketAddress server) {
+    this.server = server;
+  }
+
+  /**
+   * A recorded session replayed on its own connection
+   */
+  private final class Session {
+    private final SocketChannel sc;
+    // send times of the frames waiting for an answer, by request
+    private final HashMap<Class<? extends Frame>, ArrayDeque<Long>> pending = new HashMap<>();
+
+    Session() throws IOException {
+      sc = SocketChannel.open(server);
+      Thread.ofVirtual().start(this::receive);
+    }
+
+    void send(Frame frame) throws IOException {
+      var bb = frame.toByteBuffer().flip();
+      var size = bb.remaining();
+      if (ANSWERED.containsValue(frame.getClass())) {
+        synchronized (FrameReplay.this) {
+          pending.computeIfAbsent(frame.getClass(), _ -> new ArrayDeque<>()).add(System.nanoTime());
+        }
+      }
+      while (bb.hasRemaining()) {
+        sc.write(bb);
+      }
+      synchronized (FrameReplay.this) {
+        framesSent++;
+        bytesSent += size;
+      }
+    }
+
+    private void receive() {
+      var bb = ByteBuffer.allocate(BUFFER_SIZE);
+      var frameReader = new FrameReader();
+      try {
+        while (sc.read(bb) != -1) {
+          bb.flip();
+          for (; ; ) {
+            var status = frameReader.read(bb);
+            if (status == Reader.ProcessStatus.REFILL) {
+              break;
+            }
+            if (status == Reader.ProcessStatus.ERROR) {
+              return;
+            }
+            answered(frameReader.get());
+            frameReader.reset();
+          }
+          bb.compact();
+        }
+      } catch (IOException e) {
+        // closed by the replay or by the server
+      }
+    }
+
+    private void answered(Frame response) {
+      var now = System.nanoTime();
+      synchronized (FrameReplay.this) {
+        framesReceived++;
+        var request = ANSWERED.get(response.getClass());
+        if (request == null) {
+          return;
+        }
+        var sendTimes = pending.get(request);
+        if (sendTimes != null && !sendTimes.isEmpty()) {
+          latencies.computeIfAbsent(request.getSimpleName(), _ -> new ArrayList<>()).add(now - sendTimes.poll());
+        }
+      }
+    }
+
+    int unanswered() {
+      synchronized (FrameReplay.this) {
+        return pending.values().stream().mapToInt(ArrayDeque::size).sum();
+      }
+    }
+
+    void close() throws IOException {
+      sc.close();
+    }
+  }
+
+  /**
+   * Replay a log
+   *
+   * @param log   the log
+   * @param speed the speed factor, 0 to send as fast as possible
+   * @param grace how long to wait for the last answers, in milliseconds
+   */
+  void replay(Path log, int speed, int grace) throws IOException, InterruptedException {
+    var sessions = new HashMap<Integer, Session>();
+    var replayed = 0;
+    var start = System.nanoTime();
+    try (var reader = FrameLog.Reader.open(log)) {
+      for (var entry = reader.next(); entry.isPresent(); entry = reader.next()) {
+        if (speed > 0) {
+          var due = start + entry.orElseThrow().micros() * 1_000 / speed;
+          var wait = due - System.nanoTime();
+          if (wait > 0) {
+            Thread.sleep(wait / 1_000_000, (int) (wait % 1_000_000));
+          }
+        }
+        switch (entry.orElseThrow()) {
+          case FrameLog.Received received -> {
+            var session = sessions.get(received.session());
+            if (session == null) {
+              session = new Session();
+              sessions.put(received.session(), session);
+              replayed++;
+            }
+            session.send(received.frame());
+          }
+          case FrameLog.Closed c -> {
+            var session = sessions.remove(c.session());
+            if (session != null) {
+              session.close();
+            }
+          }
+        }
+      }
+    }
+    var sent = System.nanoTime() - start;
+    // the answers may still be on their way
+    var all = sessions.values();
+    var deadline = System.nanoTime() + grace * 1_000_000L;
+    while (System.nanoTime() < deadline && all.stream().anyMatch(session -> session.unanswered() > 0)) {
+      Thread.sleep(10);
+    }
+    var unanswered = all.stream().mapToInt(Session::unanswered).sum();
+    for (var session : all) {
+      session.close();
+    }
+    report(replayed, sent, unanswered);
+  }
+
+  private synchronized void report(int sessions, long elapsedNanos, int unanswered) {
+    System.out.println(String.format(Locale.ROOT,
+            "%d sessions, %d frames sent in %.2f s: %.0f frames/s, %.2f MiB/s, %d frames received, %d unanswered",
+            sessions, framesSent, elapsedNanos / 1e9, framesSent * 1e9 / elapsedNanos,
+            bytesSent * 1e9 / elapsedNanos / (1024 * 1024), framesReceived, unanswered));
+    for (var entry : latencies.entrySet()) {
+      var sorted = entry.getValue().stream().mapToLong(Long::longValue).sorted().toArray();
+      System.out.println(String.format(Locale.ROOT, "  %-16s %6d answered  p50 %9.1f us  p99 %9.1f us  max %9.1f us",
+              entry.getKey(), sorted.length, micros(sorted, 50), micros(sorted, 99), micros(sorted, 100)));
+    }
+  }
+
+  private static double micros(long[] sortedNanos, int percentile) {
+    var rank = (int) Math.ceil(percentile / 100.0 * sortedNanos.length);
+    return sortedNanos[Math.max(0, rank - 1)] / 1e3;
+  }
+
+  static SettingsParser replaySettings() {
+    return new SettingsParser()
+            .addAsString("log", "capture.log")
+            .addAsString("hostname", "localhost")
+            .addAsInt("port", 0) // 0 starts a server in this JVM
+            .addAsInt("speed", 1) // 0 is as fast as possible
+            .addAsInt("grace", 2_000); // milliseconds
+  }
+
+  public static void main(String[] args) throws IOException, InterruptedException {
+    LogManager.getLogManager().reset();
+    var settings = replaySettings().parse(String.join("", args));
+    var port = settings.getInt("port");
+    if (port == 0) {
+      port = SwarmBenchmark.freePort();
+      SwarmBenchmark.startServer(port, Files.createTempDirectory("chadow-replay"), "");
+    }
+    new FrameReplay(new InetSocketAddress(settings.getStr("hostname"), port))
+            .replay(Path.of(settings.getStr("log")), settings.getInt("speed"), settings.getInt("grace"));
+    // the selector thread of the server can't be stopped
+    System.exit(0);
+  }
+}
@@ -0,0 +1,97 @@
+package fr.uge.chadow.bench;
+
+import fr.uge.chadow.core.protocol.*;
+import fr.uge.chadow.core.protocol.client.*;
+import fr.uge.chadow.core.protocol.field.Codex;
+import fr.uge.chadow.core.protocol.node.*;
+import fr.uge.chadow.core.protocol.field.ProxyNodeSocket;
+import fr.uge.chadow.core.protocol.field.SocketField;
+import fr.uge.chadow.core.protocol.server.*;
+import fr.uge.chadow.core.protocol.server.Error;
+
+import java.util.stream.IntStream;
+
+/**
+ * Representative frames of every opcode, shared by the benchmarks and the codec tests
+ */
+public final class SampleFrames {
+  private static final String CODEX_ID = "6f1ed002ab5595859014ebf0951522d9a7b1a1d0a5f3f7e1c2b3a4d5e6f708192";
+
+  private SampleFrames() {
+  }
+
+  public static SocketField socket(int i) {
+    return new SocketField(new byte[]{10, 0, (byte) (i >> 8), (byte) i}, 7000 + i);
+  }
+
+  public static Codex codex(int files) {
+    var infos = IntStream.range(0, files)
+            .mapToObj(i -> new Codex.FileInfo(STR."\{i}-\{CODEX_ID}", STR."file-\{i}.dat", 1024L * 1024 + i, STR."dir\{i % 100}/sub"))
+            .toArray(Codex.FileInfo[]::new);
+    return new Codex(CODEX_ID, STR."codex of \{files} files", infos);
+  }
+
+  public static SearchResponse searchResponse(int results) {
+    return new SearchResponse(IntStream.range(0, results)
+            .mapToObj(i -> new SearchResponse.Result(STR."codex \{i}", STR."\{i}-\{CODEX_ID}", 1_700_000_000_000L + i, i % 50))
+            .toArray(SearchResponse.Result[]::new));
+  }
+
+  /**
+   * A chunk wrapped in a Hidden envelope, as it travels through a proxy chain
+   */
+  public static Hidden hiddenChunk(int chunkSize) {
+    return new Hidden(42, new HereChunk(0L, new byte[chunkSize]).toByteBuffer().array());
+  }
+
+  public static Frame sample(Opcode opcode) {
+    return switch (opcode) {
+      case REGISTER -> new Register("login", 4242, socket(1));
+      case OK -> new OK();
+      case DISCOVERY -> new Discovery();
+      case DISCOVERY_RESPONSE -> new DiscoveryResponse(IntStream.range(0, 100).mapToObj(i -> STR."user\{i}").toArray(String[]::new));
+      case EVENT -> new Event((byte) 1, "login");
+      case YELL -> new YellMessage("login", "hello everyone, this is a message", 1_700_000_000_000L);
+      case WHISPER -> new WhisperMessage("login", "hello you, this is a private message", 1_700_000_000_000L);
+      case PROPOSE -> new Propose(codex(10));
+      case REQUEST -> new Request(CODEX_ID);
+      case REQUEST_RESPONSE -> new RequestResponse(codex(10));
+      case SEARCH -> new Search("codex", 0, 0L, 50, 0);
+      case SEARCH_RESPONSE -> searchResponse(50);
+      case REQUEST_DOWNLOAD -> new RequestDownload(CODEX_ID, (byte) 0, 5, 1);
+      case REQUEST_OPEN_DOWNLOAD_RESPONSE -> new RequestOpenDownload(IntStream.range(0, 5).mapToObj(SampleFrames::socket).toArray(SocketField[]::new));
+      case REQUEST_CLOSED_DOWNLOAD_RESPONSE -> new ClosedDownloadResponse(IntStream.range(0, 5).mapToObj(i -> new ProxyNodeSocket(socket(i), i)).toArray(ProxyNodeSocket[]::new));
+      case HANDSHAKE -> new Handshake(CODEX_ID);
+      case DENIED -> new Denied(CODEX_ID);
+      case NEEDCHUNK -> new NeedChunk(128L * 1024, 128 * 1024);
+      case CANCEL -> new Cancel(128L * 1024, 128 * 1024);
+      case HERECHUNK -> new HereChunk(128L * 1024, new byte[128 * 1024]);
+      case PROXY -> new Proxy(42, socket(1));
+      case PROXYOPEN -> new ProxyOpen(42, CODEX_ID);
+      case PROXYOK -> new ProxyOk(42);
+      case HIDDEN -> hiddenChunk(128 * 1024);
+      case UPDATE -> new Update(CODEX_ID);
+      case ERROR -> new Error("something went wrong");
+      case SUBSCRIBE -> new Subscribe((byte) 1, CODEX_ID);
+      case SHARER_EVENT -> new SharerEvent((byte) 1, CODEX_ID, socket(1));
+      case PEER_EXCHANGE -> new PeerExchange(IntStream.range(0, 32).mapToObj(SampleFrames::socket).toArray(SocketField[]::new));
+      case CODEX_SEGMENT -> CodexSegment.split(codex(1000))[0];
+      case ANNOUNCE -> new Announce(IntStream.range(0, 100).mapToObj(i -> STR."\{i}-\{CODEX_ID}").toArray(String[]::new));
+      case METADATA_REQUEST -> new MetadataRequest(IntStream.range(0, 10).mapToObj(i -> STR."\{i}-\{CODEX_ID}").toArray(String[]::new));
+      case LOAD_REPORT -> new LoadReport(3, 2048, 5);
+      case PRESENCE_DIGEST -> new PresenceDigest(IntStream.range(0, 20).mapToObj(i -> STR."login\{i}").toArray(String[]::new),
+              IntStream.range(20, 30).mapToObj(i -> STR."login\{i}").toArray(String[]::new));
+      case DIRECTORY_SYNC -> new DirectorySync(42L, 1_000L, "login99");
+      case DIRECTORY_PAGE -> new DirectoryPage(42L, 1_000L, IntStream.range(0, 100).mapToObj(i -> STR."user\{i}").toArray(String[]::new), "user99");
+      case DIRECTORY_DELTA -> new DirectoryDelta(42L, 1_000L, IntStream.range(0, 20).mapToObj(i -> STR."login\{i}").toArray(String[]::new),
+              IntStream.range(20, 30).mapToObj(i -> STR."login\{i}").toArray(String[]::new), (byte) 1);
+      case NODE_HELLO -> new NodeHello(2);
+      case FORWARD -> new Forward(7L, "login", socket(1), FrameBytes.encode(new Request(CODEX_ID)));
+      case FORWARDED -> new Forwarded(7L, FrameBytes.encode(new RequestResponse(codex(10))));
+      case WITHDRAW -> new Withdraw(IntStream.range(0, 10).mapToObj(i -> STR."\{i}-\{CODEX_ID}").toArray(String[]::new));
+      case CODEX_CANDIDATES -> new CodexCandidates(CODEX_ID.substring(0, 8),
+              IntStream.range(0, 16).mapToObj(i -> STR."\{CODEX_ID.substring(0, 8)}\{i}").toArray(String[]::new));
+      case RESUME_SEARCH -> new ResumeSearch("linux", 4, 1_700_000_000_000L, 50, 1_700_000_100_000L, CODEX_ID);
+    };
+  }
+}
@@ -0,0 +1,266 @@
+package fr.uge.chadow.bench;
+
+import fr.uge.chadow.core.Settings;
+import fr.uge.chadow.core.context.ServerContext;
+import fr.uge.chadow.server.Server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.SocketOption;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.spi.SelectorProvider;
+import java.util.ArrayDeque;
+import java.util.Set;
+
+/**
+ * Connections without sockets, to put a Server under a large population of clients.
+ * <p>
+ * Each connection has a real ServerContext attached to a channel that accepts every byte written
+ * and never has anything to read. The frames queued by the server are encoded and "sent"
+ * when the network is flushed, like the selector loop would do, and the bytes are counted.
+ */
+final class SimulatedNetwork {
+  private final SimulatedSelector selector = new SimulatedSelector();
+  private final ArrayDeque<SimulatedKey> writable = new ArrayDeque<>();
+  private long bytesWritten;
+
+  /**
+   * Open a connection to the server
+   *
+   * @param server   the server
+   * @param settings the settings of the server
+   * @param remote   the address of the client
+   * @return the context of the server for this connection
+   */
+  ServerContext connect(Server server, Settings settings, InetSocketAddress remote) {
+    var key = new SimulatedKey(new SimulatedChannel(remote));
+    var context = new ServerContext(server, key, settings);
+    key.attach(context);
+    return context;
+  }
+
+  /**
+   * Write the frames queued by the server, as the selector would
+   */
+  void flush() throws IOException {
+    while (!writable.isEmpty()) {
+      var key = writable.poll();
+      while ((key.interestOps & SelectionKey.OP_WRITE) != 0 && key.isValid()) {
+        ((ServerContext) key.attachment()).doWrite();
+      }
+    }
+  }
+
+  long bytesWritten() {
+    return bytesWritten;
+  }
+
+  private final class SimulatedChannel extends SocketChannel {
+    private final InetSocketAddress remote;
+
+    SimulatedChannel(InetSocketAddress remote) {
+      super(SelectorProvider.provider());
+      this.remote = remote;
+    }
+
+    @Override
+    public int write(ByteBuffer src) {
+      var written = src.remaining();
+      src.position(src.limit());
+      bytesWritten += written;
+      return written;
+    }
+
+    @Override
+    public long write(ByteBuffer[] srcs, int offset, int length) {
+      var written = 0L;
+      for (int i = offset; i < offset + length; i++) {
+        written += write(srcs[i]);
+      }
+      return written;
+    }
+
+    @Override
+    public int read(ByteBuffer dst) {
+      return 0;
+    }
+
+    @Override
+    public long read(ByteBuffer[] dsts, int offset, int length) {
+      return 0;
+    }
+
+    @Override
+    public SocketAddress getRemoteAddress() {
+      return remote;
+    }
+
+    @Override
+    public SocketAddress getLocalAddress() {
+      return null;
+    }
+
+    @Override
+    public SocketChannel bind(SocketAddress local) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public <T> SocketChannel setOption(SocketOption<T> name, T value) {
+      return this;
+    }
+
+    @Override
+    public <T> T getOption(SocketOption<T> name) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Set<SocketOption<?>> supportedOptions() {
+      return Set.of();
+    }
+
+    @Override
+    public SocketChannel shutdownInput() {
+      return this;
+    }
+
+    @Override
+    public SocketChannel shutdownOutput() {
+      return this;
+    }
+
+    @Override
+    public Socket socket() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean isConnected() {
+      return isOpen();
+    }
+
+    @Override
+    public boolean isConnectionPending() {
+      return false;
+    }
+
+    @Override
+    public boolean connect(SocketAddress remote) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean finishConnect() {
+      return true;
+    }
+
+    @Override
+    protected void implCloseSelectableChannel() {
+    }
+
+    @Override
+    protected void implConfigureBlocking(boolean block) {
+    }
+  }
+
+  private final class SimulatedKey extends SelectionKey {
+    private final SimulatedChannel channel;
+    private int interestOps;
+    private boolean valid = true;
+
+    SimulatedKey(SimulatedChannel channel) {
+      this.channel = channel;
+    }
+
+    @Override
+    public SocketChannel channel() {
+      return channel;
+    }
+
+    @Override
+    public Selector selector() {
+      return selector;
+    }
+
+    @Override
+    public boolean isValid() {
+      return valid && channel.isOpen();
+    }
+
+    @Override
+    public void cancel() {
+      valid = false;
+    }
+
+    @Override
+    public int interestOps() {
+      return interestOps;
+    }
+
+    @Override
+    public SelectionKey interestOps(int ops) {
+      if ((ops & OP_WRITE) != 0 && (interestOps & OP_WRITE) == 0) {
+        writable.add(this);
+      }
+      interestOps = ops;
+      return this;
+    }
+
+    @Override
+    public int readyOps() {
+      return interestOps;
+    }
+  }
+
+  private static final class SimulatedSelector extends Selector {
+    @Override
+    public boolean isOpen() {
+      return true;
+    }
+
+    @Override
+    public SelectorProvider provider() {
+      return SelectorProvider.provider();
+    }
+
+    @Override
+    public Set<SelectionKey> keys() {
+      return Set.of();
+    }
+
+    @Override
+    public Set<SelectionKey> selectedKeys() {
+      return Set.of();
+    }
+
+    @Override
+    public int selectNow() {
+      return 0;
+    }
+
+    @Override
+    public int select(long timeout) {
+      return 0;
+    }
+
+    @Override
+    public int select() {
+      return 0;
+    }
+
+    @Override
+    public Selector wakeup() {
+      return this;
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+}
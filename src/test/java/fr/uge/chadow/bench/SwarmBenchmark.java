@@ -0,0 +1,333 @@
+package fr.uge.chadow.bench;
+
+import fr.uge.chadow.Main;
+import fr.uge.chadow.client.ClientAPI;
+import fr.uge.chadow.client.CodexController;
+import fr.uge.chadow.client.CodexStatus;
+import fr.uge.chadow.core.Settings;
+import fr.uge.chadow.core.SettingsParser;
+import fr.uge.chadow.server.Server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.logging.LogManager;
+
+/**
+ * Headless swarm on loopback: a Server and N ClientAPI in one JVM.
+ * <p>
+ * The sharers share the same codex, then every downloader fetches it and downloads it at the same time.
+ * Each scenario starts a fresh server and fresh clients, so the clients get the sharersRequired
+ * and proxyChainSize of the scenario. For each scenario it reports the aggregate throughput,
+ * the time to first byte (first chunk written) and the distribution of the completion times.
+ * <pre>
+ * java --enable-preview -cp target/classes:target/test-classes fr.uge.chadow.bench.SwarmBenchmark \
+ *   --sharers:4 --downloaders:8 --files:4 --fileSize:4096 --scenarios:open-1,open-4,hidden-1-1,hidden-2-2
+ * </pre>
+ * A scenario is {@code open-<sharersRequired>} or {@code hidden-<sharersRequired>-<proxyChainSize>}.
+ * The sizes are in KiB, like the chunkSize of the client. With {@code --capture:<prefix>}, the server
+ * of each scenario records the frames it receives in {@code <prefix>-<scenario>.log}.
+ */
+public class SwarmBenchmark {
+  private static final String CODEX_NAME = "swarm";
+  private static final long POLL_MILLIS = 2;
+
+  /**
+   * @param hidden          if the downloads are hidden
+   * @param sharersRequired the number of sharers asked to the server
+   * @param proxyChainSize  the size of the proxy chains, hidden downloads only
+   */
+  record Scenario(boolean hidden, int sharersRequired, int proxyChainSize) {
+    static Scenario parse(String scenario) {
+      var parts = scenario.split("-");
+      try {
+        return switch (parts[0]) {
+          case "open" -> {
+            if (parts.length != 2) {
+              throw new IllegalArgumentException(STR."Invalid scenario \"\{scenario}\"");
+            }
+            yield new Scenario(false, Integer.parseInt(parts[1]), 1);
+          }
+          case "hidden" -> {
+            if (parts.length != 3) {
+              throw new IllegalArgumentException(STR."Invalid scenario \"\{scenario}\"");
+            }
+            yield new Scenario(true, Integer.parseInt(parts[1]), Integer.parseInt(parts[2]));
+          }
+          default -> throw new IllegalArgumentException(STR."Invalid scenario \"\{scenario}\"");
+        };
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException(STR."Invalid scenario \"\{scenario}\"", e);
+      }
+    }
+
+    @Override
+    public String toString() {
+      return hidden ? STR."hidden-\{sharersRequired}-\{proxyChainSize}" : STR."open-\{sharersRequired}";
+    }
+  }
+
+  /**
+   * A download followed by the harness
+   *
+   * @param status the status of the codex on the downloader
+   * @param start  when the download was asked, in nanoseconds
+   */
+  private record Download(CodexStatus status, long start) {
+  }
+
+  /**
+   * @param scenario      the scenario
+   * @param bytes         the bytes downloaded by all the downloaders
+   * @param elapsedNanos  from the first download asked to the last one completed (or the timeout)
+   * @param firstByte     the time to first byte of each download that started, in nanoseconds
+   * @param completion    the completion time of each download that completed, in nanoseconds
+   * @param downloads     the number of downloads
+   */
+  record Result(Scenario scenario, long bytes, long elapsedNanos, long[] firstByte, long[] completion, int downloads) {
+    @Override
+    public String toString() {
+      return String.format(Locale.ROOT,
+              "%-12s %9.1f MiB/s  first byte p50 %7.1f ms p90 %7.1f ms max %7.1f ms  "
+                      + "completion p50 %8.1f ms p90 %8.1f ms p99 %8.1f ms max %8.1f ms  %d/%d completed",
+              scenario, bytes * 1e9 / elapsedNanos / (1024 * 1024),
+              millis(firstByte, 50), millis(firstByte, 90), millis(firstByte, 100),
+              millis(completion, 50), millis(completion, 90), millis(completion, 99), millis(completion, 100),
+              completion.length, downloads);
+    }
+
+    /**
+     * Nearest-rank percentile
+     */
+    private static double millis(long[] sortedNanos, int percentile) {
+      if (sortedNanos.length == 0) {
+        return Double.NaN;
+      }
+      var rank = (int) Math.ceil(percentile / 100.0 * sortedNanos.length);
+      return sortedNanos[Math.max(0, rank - 1)] / 1e6;
+    }
+  }
+
+  private final Settings settings;
+  private final Path directory;
+  private final Path source;
+  private long codexSize;
+
+  SwarmBenchmark(Settings settings, Path directory) {
+    this.settings = settings;
+    this.directory = directory;
+    this.source = directory.resolve("source");
+  }
+
+  /**
+   * Create the files of the codex shared by all the sharers
+   */
+  void createSource() throws IOException {
+    Files.createDirectories(source);
+    var random = new Random(0);
+    var content = new byte[settings.getInt("fileSize") * 1024];
+    for (int i = 0; i < settings.getInt("files"); i++) {
+      random.nextBytes(content);
+      Files.write(source.resolve(STR."file\{i}.bin"), content);
+      codexSize += content.length;
+    }
+  }
+
+  static int freePort() throws IOException {
+    try (var socket = new ServerSocket(0)) {
+      return socket.getLocalPort();
+    }
+  }
+
+  /**
+   * Start a server in this JVM and wait for it to listen
+   *
+   * @param port         the listening port
+   * @param downloadPath the download path of the server
+   * @param capture      the file where the received frames are recorded, empty to disable the capture
+   */
+  static void startServer(int port, Path downloadPath, String capture) throws IOException, InterruptedException {
+    var captureSetting = capture.isEmpty() ? "" : STR."--capture:\{capture}";
+    startServer(port, STR."--port:\{port}--downloadPath:\{downloadPath}\{captureSetting}");
+  }
+
+  /**
+   * Start a server in this JVM and wait for it to listen
+   *
+   * @param port     the port of the server
+   * @param settings the settings of the server, with the same port
+   */
+  static void startServer(int port, String settings) throws IOException, InterruptedException {
+    var server = new Server(Main.serverSettings().parse(settings));
+    Thread.ofPlatform().daemon().start(() -> {
+      try {
+        server.start();
+      } catch (IOException e) {
+        throw new AssertionError(e);
+      }
+    });
+    // wait for the server to listen
+    var address = new InetSocketAddress("localhost", port);
+    for (; ; ) {
+      try (var _ = SocketChannel.open(address)) {
+        return;
+      } catch (IOException e) {
+        Thread.sleep(10);
+      }
+    }
+  }
+
+  private ClientAPI startClient(int port, String login, Scenario scenario) throws IOException, InterruptedException {
+    var downloadPath = directory.resolve(login);
+    var clientSettings = Main.clientSettings().parse(STR."--login:\{login}--port:\{port}--downloadPath:\{downloadPath}"
+            + STR."--chunkSize:\{settings.getInt("chunkSize")}--sharersRequired:\{scenario.sharersRequired()}"
+            + STR."--proxyChainSize:\{scenario.proxyChainSize()}");
+    var codexController = new CodexController(downloadPath.toString(), clientSettings.getInt("chunkSize") * 1024);
+    var api = new ClientAPI(new InetSocketAddress("localhost", port), codexController, clientSettings);
+    // startService runs the downloader loop of the client
+    Thread.ofPlatform().daemon().start(() -> {
+      try {
+        api.startService();
+      } catch (IOException | InterruptedException e) {
+        api.close();
+      }
+    });
+    api.waitForConnection();
+    return api;
+  }
+
+  Result run(Scenario scenario) throws IOException, InterruptedException, NoSuchAlgorithmException {
+    var port = freePort();
+    var capture = settings.getStr("capture");
+    startServer(port, directory.resolve(STR."server-\{scenario}"), capture.isEmpty() ? "" : STR."\{capture}-\{scenario}.log");
+    var clients = new ArrayList<ClientAPI>();
+    try {
+      String codexId = null;
+      for (int i = 0; i < settings.getInt("sharers"); i++) {
+        var sharer = startClient(port, STR."\{scenario}-s\{i}", scenario);
+        clients.add(sharer);
+        codexId = sharer.addCodex(CODEX_NAME, source.toString()).id();
+        sharer.share(codexId);
+      }
+      var downloaders = new ArrayList<ClientAPI>();
+      for (int i = 0; i < settings.getInt("downloaders"); i++) {
+        var downloader = startClient(port, STR."\{scenario}-d\{i}", scenario);
+        clients.add(downloader);
+        downloaders.add(downloader);
+      }
+      var statuses = new ArrayList<CodexStatus>();
+      for (var downloader : downloaders) {
+        statuses.add(fetch(downloader, codexId));
+      }
+
+      var downloads = new ArrayList<Download>();
+      for (int i = 0; i < downloaders.size(); i++) {
+        var start = System.nanoTime();
+        downloaders.get(i).download(codexId, scenario.hidden(), scenario.proxyChainSize());
+        downloads.add(new Download(statuses.get(i), start));
+      }
+      return follow(scenario, downloads);
+    } finally {
+      clients.forEach(ClientAPI::close);
+    }
+  }
+
+  /**
+   * Fetch the codex from the server, waiting for the announces of the sharers to be processed
+   */
+  private CodexStatus fetch(ClientAPI downloader, String codexId) throws InterruptedException {
+    for (int attempt = 0; attempt < 100; attempt++) {
+      var status = downloader.getCodex(codexId);
+      if (status.isPresent()) {
+        return status.orElseThrow();
+      }
+      Thread.sleep(20);
+    }
+    throw new IllegalStateException(STR."Codex \{codexId} not found on the server");
+  }
+
+  private Result follow(Scenario scenario, List<Download> downloads) throws InterruptedException {
+    var firstByte = new long[downloads.size()];
+    var completion = new long[downloads.size()];
+    var deadline = System.nanoTime() + settings.getInt("timeout") * 1_000_000_000L;
+    int started = 0;
+    int completed = 0;
+    long now;
+    for (; ; ) {
+      now = System.nanoTime();
+      for (int i = 0; i < downloads.size(); i++) {
+        var download = downloads.get(i);
+        if (firstByte[i] == 0 && download.status().completionRate() > 0) {
+          firstByte[i] = now - download.start();
+          started++;
+        }
+        if (completion[i] == 0 && download.status().isComplete()) {
+          completion[i] = now - download.start();
+          completed++;
+        }
+      }
+      if (completed == downloads.size() || now > deadline) {
+        break;
+      }
+      Thread.sleep(POLL_MILLIS);
+    }
+    var elapsed = now - downloads.getFirst().start();
+    var bytes = 0L;
+    for (var download : downloads) {
+      bytes += (long) (download.status().completionRate() * codexSize);
+    }
+    return new Result(scenario, bytes, elapsed, sortedPositive(firstByte, started),
+            sortedPositive(completion, completed), downloads.size());
+  }
+
+  private static long[] sortedPositive(long[] values, int count) {
+    var result = Arrays.stream(values).filter(value -> value > 0).sorted().toArray();
+    assert result.length == count;
+    return result;
+  }
+
+  static SettingsParser benchmarkSettings() {
+    return new SettingsParser()
+            .addAsInt("sharers", 4)
+            .addAsInt("downloaders", 8)
+            .addAsInt("files", 4)
+            .addAsInt("fileSize", 4096) // KiB
+            .addAsInt("chunkSize", 128) // KiB
+            .addAsInt("timeout", 120) // seconds, per scenario
+            .addAsString("capture", "") // prefix of the frame logs of the servers
+            .addAsString("scenarios", "open-1,open-4,hidden-1-1,hidden-2-2");
+  }
+
+  public static void main(String[] args) throws Exception {
+    LogManager.getLogManager().reset();
+    var settings = benchmarkSettings().parse(String.join("", args));
+    var scenarios = Arrays.stream(settings.getStr("scenarios").split(",")).map(Scenario::parse).toList();
+    var directory = Files.createTempDirectory("chadow-swarm");
+    try {
+      var benchmark = new SwarmBenchmark(settings, directory);
+      benchmark.createSource();
+      System.out.println(STR."\{settings.getInt("sharers")} sharers, \{settings.getInt("downloaders")} downloaders, "
+              + STR."codex of \{settings.getInt("files")} x \{settings.getInt("fileSize")} KiB, "
+              + STR."chunks of \{settings.getInt("chunkSize")} KiB");
+      for (var scenario : scenarios) {
+        System.out.println(benchmark.run(scenario));
+      }
+    } finally {
+      try (var paths = Files.walk(directory)) {
+        paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+      }
+    }
+    // the selector threads of the clients and the servers can't be stopped
+    System.exit(0);
+  }
+}
@@ -0,0 +1,272 @@
+package fr.uge.chadow.bench;
+
+import fr.uge.chadow.Main;
+import fr.uge.chadow.core.Settings;
+import fr.uge.chadow.core.SettingsParser;
+import fr.uge.chadow.core.context.ServerContext;
+import fr.uge.chadow.core.protocol.client.Register;
+import fr.uge.chadow.core.protocol.client.RequestDownload;
+import fr.uge.chadow.core.protocol.client.Search;
+import fr.uge.chadow.core.protocol.field.Codex;
+import fr.uge.chadow.core.protocol.field.SocketField;
+import fr.uge.chadow.server.Server;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+import java.util.logging.LogManager;
+
+/**
+ * Put a Server under synthetic populations of users and codexes, without sockets.
+ * <p>
+ * The population grows by stages (x10 codexes each time, with users in the same proportion).
+ * At each stage, the latency percentiles of the public operations of the server
+ * and the heap used are reported. The responses queued by the server are encoded and written
+ * to a {@link SimulatedNetwork}, and this cost is part of the latency of the operation.
+ * Broadcasts are not simulated: the server is not started.
+ * <p>
+ * A stage that takes more than the stage budget to populate is the last one,
+ * it tells where the server breaks.
+ * <pre>
+ * java --enable-preview -Xmx3g -cp target/classes:target/test-classes fr.uge.chadow.bench.TrackerSimulator \
+ *   --users:100000 --codexes:1000000 --sharersPerCodex:2 --samples:200 --stageBudget:60
+ * </pre>
+ */
+public class TrackerSimulator {
+  private static final String[] WORDS = {
+          "linux", "debian", "ubuntu", "arch", "kernel", "firmware", "docs", "manual",
+          "music", "album", "live", "concert", "podcast", "episode", "lecture", "course",
+          "java", "python", "rust", "compiler", "network", "database", "dataset", "images",
+          "photos", "holidays", "family", "archive", "backup", "release", "source", "build",
+          "movie", "trailer", "series", "season", "game", "mods", "maps", "textures",
+          "book", "novel", "poetry", "science", "physics", "maths", "history", "atlas"};
+
+  enum Operation {
+    ADD_CLIENT, PROPOSE, SEARCH, REQUEST, REQUEST_PREFIX, OPEN_DOWNLOAD, CLOSED_DOWNLOAD, REMOVE_CLIENT
+  }
+
+  /**
+   * A simulated user
+   *
+   * @param login   the login
+   * @param context the context of the server for its connection
+   * @param shared  the ids of the codexes it shares
+   */
+  private record User(String login, ServerContext context, Set<String> shared) {
+  }
+
+  private final Settings settings;
+  private final Settings serverSettings;
+  private final Server server;
+  private final SimulatedNetwork network = new SimulatedNetwork();
+  private final Random random;
+  private final HexFormat hex = HexFormat.of();
+  private final ArrayList<User> users = new ArrayList<>();
+  private final ArrayList<String> codexIds = new ArrayList<>();
+  private int userCounter;
+
+  TrackerSimulator(Settings settings) throws IOException {
+    this.settings = settings;
+    this.serverSettings = Main.serverSettings().parse("--maxLoginLength:16--internCache:0");
+    this.server = new Server(serverSettings);
+    this.random = new Random(settings.getInt("seed"));
+  }
+
+  private User addUser() throws IOException {
+    var n = userCounter++;
+    var ip = new byte[]{10, (byte) (n >> 16), (byte) (n >> 8), (byte) n};
+    var login = STR."u\{n}";
+    var context = network.connect(server, serverSettings,
+            new InetSocketAddress(InetAddress.getByAddress(ip), 40_000 + n % 20_000));
+    context.processCurrentOpcodeAction(new Register(login, 7777, new SocketField(ip, 7777)));
+    network.flush();
+    var user = new User(login, context, new HashSet<>());
+    users.add(user);
+    return user;
+  }
+
+  private void removeUser() throws IOException {
+    var index = random.nextInt(users.size());
+    var user = users.get(index);
+    users.set(index, users.getLast());
+    users.removeLast();
+    server.removeClient(user.login(), user.shared(), Set.of());
+    network.flush();
+  }
+
+  private Codex newCodex() {
+    var id = hex.toHexDigits(random.nextLong()) + hex.toHexDigits(random.nextLong()) + hex.toHexDigits(random.nextInt());
+    var name = STR."\{WORDS[random.nextInt(WORDS.length)]} \{WORDS[random.nextInt(WORDS.length)]} \{codexIds.size()}";
+    var file = new Codex.FileInfo(id, STR."\{name}.dat", 1024L * 1024 + random.nextInt(1 << 30), "");
+    return new Codex(id, name, new Codex.FileInfo[]{file});
+  }
+
+  private void addCodex() throws IOException {
+    var codex = newCodex();
+    var owner = users.get(random.nextInt(users.size()));
+    server.propose(codex, owner.login());
+    owner.shared().add(codex.id());
+    for (int i = 1; i < settings.getInt("sharersPerCodex"); i++) {
+      var sharer = users.get(random.nextInt(users.size()));
+      server.announce(codex.id(), sharer.login());
+      sharer.shared().add(codex.id());
+    }
+    network.flush();
+    codexIds.add(codex.id());
+  }
+
+  private String randomCodexId() {
+    return codexIds.get(random.nextInt(codexIds.size()));
+  }
+
+  private ServerContext randomContext() {
+    return users.get(random.nextInt(users.size())).context();
+  }
+
+  /**
+   * Grow the population
+   *
+   * @return false if the deadline was reached before the targets
+   */
+  boolean populate(int targetUsers, int targetCodexes, long deadline) throws IOException {
+    while (users.size() < targetUsers) {
+      addUser();
+      if ((users.size() & 1023) == 0 && System.nanoTime() > deadline) {
+        return false;
+      }
+    }
+    while (codexIds.size() < targetCodexes) {
+      addCodex();
+      if ((codexIds.size() & 1023) == 0 && System.nanoTime() > deadline) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return false if the server failed with an exception
+   */
+  private boolean run(Operation operation) throws IOException {
+    try {
+      switch (operation) {
+        case ADD_CLIENT -> addUser();
+        case PROPOSE -> addCodex();
+        case SEARCH -> server.search(new Search(WORDS[random.nextInt(WORDS.length)], 0, 0L, 50, 0));
+        case REQUEST -> server.request(randomCodexId(), randomContext());
+        // abbreviated id, as typed in :cdx:
+        case REQUEST_PREFIX -> server.request(randomCodexId().substring(0, 8), randomContext());
+        case OPEN_DOWNLOAD -> server.requestOpenDownload(randomContext(), randomCodexId(), 5);
+        case CLOSED_DOWNLOAD -> server.requestClosedDownload(randomContext(),
+                new RequestDownload(randomCodexId(), (byte) 1, 1, 1));
+        case REMOVE_CLIENT -> removeUser();
+      }
+      network.flush();
+      return true;
+    } catch (RuntimeException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Latencies of an operation
+   *
+   * @param sortedNanos the sorted latencies in nanoseconds
+   * @param failures    the number of times the server failed with an exception
+   */
+  record Latencies(long[] sortedNanos, int failures) {
+  }
+
+  /**
+   * Measure each operation on the current population
+   *
+   * @return the latencies by operation
+   */
+  EnumMap<Operation, Latencies> measure() throws IOException {
+    var samples = settings.getInt("samples");
+    var nanos = new long[Operation.values().length][samples];
+    var failures = new int[Operation.values().length];
+    // interleaved, so the population stays the same on average
+    for (int i = 0; i < samples; i++) {
+      for (var operation : Operation.values()) {
+        var start = System.nanoTime();
+        if (!run(operation)) {
+          failures[operation.ordinal()]++;
+        }
+        nanos[operation.ordinal()][i] = System.nanoTime() - start;
+      }
+    }
+    var latencies = new EnumMap<Operation, Latencies>(Operation.class);
+    for (var operation : Operation.values()) {
+      Arrays.sort(nanos[operation.ordinal()]);
+      latencies.put(operation, new Latencies(nanos[operation.ordinal()], failures[operation.ordinal()]));
+    }
+    return latencies;
+  }
+
+  private static double micros(long[] sortedNanos, int percentile) {
+    var rank = (int) Math.ceil(percentile / 100.0 * sortedNanos.length);
+    return sortedNanos[Math.max(0, rank - 1)] / 1e3;
+  }
+
+  private static long usedHeap() throws InterruptedException {
+    var memory = ManagementFactory.getMemoryMXBean();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+      Thread.sleep(50);
+    }
+    return memory.getHeapMemoryUsage().getUsed();
+  }
+
+  static SettingsParser simulatorSettings() {
+    return new SettingsParser()
+            .addAsInt("users", 100_000)
+            .addAsInt("codexes", 1_000_000)
+            .addAsInt("sharersPerCodex", 2)
+            .addAsInt("samples", 200)
+            .addAsInt("stageBudget", 60) // seconds to populate a stage
+            .addAsInt("seed", 0);
+  }
+
+  public static void main(String[] args) throws IOException, InterruptedException {
+    LogManager.getLogManager().reset();
+    var settings = simulatorSettings().parse(String.join("", args));
+    var simulator = new TrackerSimulator(settings);
+    var maxCodexes = settings.getInt("codexes");
+    var usersPerCodex = (double) settings.getInt("users") / maxCodexes;
+    for (var codexes = Math.min(1_000, maxCodexes); ; codexes = Math.min(codexes * 10, maxCodexes)) {
+      var users = Math.max(3, (int) (codexes * usersPerCodex));
+      var start = System.nanoTime();
+      var complete = simulator.populate(users, codexes, start + settings.getInt("stageBudget") * 1_000_000_000L);
+      var populateSeconds = (System.nanoTime() - start) / 1e9;
+      var heap = usedHeap();
+      System.out.println(String.format(Locale.ROOT, "%d users, %d codexes, populated in %.1f s, heap %.1f MiB",
+              simulator.users.size(), simulator.codexIds.size(), populateSeconds, heap / (1024.0 * 1024)));
+      if (!complete) {
+        System.out.println(STR."Stage budget of \{settings.getInt("stageBudget")} s exceeded before \{users} users and \{codexes} codexes");
+        break;
+      }
+      var latencies = simulator.measure();
+      for (var entry : latencies.entrySet()) {
+        var sorted = entry.getValue().sortedNanos();
+        System.out.println(String.format(Locale.ROOT, "  %-16s p50 %10.1f us  p99 %10.1f us  max %10.1f us  %d failed",
+                entry.getKey(), micros(sorted, 50), micros(sorted, 99), micros(sorted, 100), entry.getValue().failures()));
+      }
+      System.out.println(STR."  search cache: \{simulator.server.searchCacheStats()}");
+      if (codexes == maxCodexes) {
+        break;
+      }
+    }
+    System.out.println(String.format(Locale.ROOT, "%.1f MiB written to the simulated connections",
+            simulator.network.bytesWritten() / (1024.0 * 1024)));
+  }
+}
@@ -0,0 +1,131 @@
+package fr.uge.chadow.client;
+
+import fr.uge.chadow.core.protocol.client.HereChunk;
+import fr.uge.chadow.core.protocol.field.Codex;
+import fr.uge.chadow.core.reader.FrameReader;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Pipe;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+
+/**
+ * The chunk upload/download hot path over an in-process channel pair:
+ * <pre>
+ * CodexStatus.getChunk -> HereChunk.toByteBuffer -> output buffer -> pipe
+ *   -> input buffer -> FrameReader -> CodexStatus.writeChunk
+ * </pre>
+ * The output and input buffers have the size of the buffers of the contexts and are
+ * filled and drained the way Context.processOut and Context.processIn do.
+ * Everything runs on the calling thread, so the allocation of the thread is the allocation of the pipeline.
+ * Shared by ChunkPipelineTest and the JMH ChunkPipelineBenchmark.
+ */
+final class ChunkPipeline implements AutoCloseable {
+  private static final int CONTEXT_BUFFER_SIZE = 1024;
+
+  private final Path directory;
+  private final long codexSize;
+  private final Codex codex;
+  private final Path shared;
+  private final Path downloads;
+  private final ByteBuffer bufferOut = ByteBuffer.allocate(CONTEXT_BUFFER_SIZE);
+  private final ByteBuffer bufferIn = ByteBuffer.allocate(CONTEXT_BUFFER_SIZE);
+  private final FrameReader frameReader = new FrameReader();
+  private final Pipe pipe;
+
+  /**
+   * The bytes a chunk may allocate along the pipeline: the chunk read from the file,
+   * the encoded frame, and the payload decoded incrementally (at most twice its size),
+   * plus a fixed allowance for the frame objects.
+   *
+   * @param chunkSize the size of the chunk
+   * @return the budget in bytes
+   */
+  static long allocationBudget(int chunkSize) {
+    return 4L * chunkSize + 8 * 1024;
+  }
+
+  /**
+   * @param codexSize the size of the single file of the codex transferred
+   */
+  ChunkPipeline(long codexSize) throws IOException {
+    this.codexSize = codexSize;
+    directory = Files.createTempDirectory("chadow-pipeline");
+    shared = directory.resolve("shared.bin");
+    downloads = directory.resolve("downloads");
+    Files.createDirectories(downloads);
+    try (var file = new RandomAccessFile(shared.toFile(), "rw")) {
+      file.setLength(codexSize);
+    }
+    codex = new Codex("pipeline", "pipeline", new Codex.FileInfo[]{
+            new Codex.FileInfo("file", "downloaded.bin", codexSize, "")});
+    pipe = Pipe.open();
+    pipe.sink().configureBlocking(false);
+    pipe.source().configureBlocking(false);
+  }
+
+  /**
+   * Transfer the whole codex once
+   *
+   * @return the number of chunks transferred
+   */
+  int transfer(int chunkSize) throws IOException {
+    var sharer = new CodexStatus(codex, shared.toString(), chunkSize, false);
+    var downloader = new CodexStatus(codex, downloads.toString(), chunkSize, true);
+    downloader.createFileTree();
+    int chunks = 0;
+    for (long offset = 0; offset < codexSize; offset += chunkSize) {
+      var length = (int) Math.min(chunkSize, codexSize - offset);
+      var frame = new HereChunk(offset, sharer.getChunk(offset, length)).toByteBuffer().flip();
+      var chunk = (HereChunk) send(frame);
+      downloader.writeChunk(chunk.offset(), chunk.payload());
+      chunks++;
+    }
+    sharer.stopSharing();
+    return chunks;
+  }
+
+  /**
+   * Send a frame through the pipe and decode it on the other side
+   *
+   * @param frame the encoded frame, in read-mode
+   * @return the decoded frame
+   */
+  private Object send(ByteBuffer frame) throws IOException {
+    frameReader.reset();
+    for (; ; ) {
+      // sending side, as Context.processOut then doWrite
+      var oldLimit = frame.limit();
+      frame.limit(frame.position() + Math.min(frame.remaining(), bufferOut.remaining()));
+      bufferOut.put(frame);
+      frame.limit(oldLimit);
+      pipe.sink().write(bufferOut.flip());
+      bufferOut.compact();
+      // receiving side, as Context.doRead then processIn
+      pipe.source().read(bufferIn);
+      bufferIn.flip();
+      var status = frameReader.read(bufferIn);
+      bufferIn.compact();
+      switch (status) {
+        case DONE -> {
+          return frameReader.get();
+        }
+        case ERROR -> throw new IOException("Invalid frame");
+        case REFILL -> {
+        }
+      }
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    pipe.sink().close();
+    pipe.source().close();
+    try (var paths = Files.walk(directory)) {
+      paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+    }
+  }
+}
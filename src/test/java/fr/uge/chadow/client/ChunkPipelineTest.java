@@ -0,0 +1,49 @@
+package fr.uge.chadow.client;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.logging.LogManager;
+
+import static org.junit.Assert.*;
+
+public class ChunkPipelineTest {
+  private static final long CODEX_SIZE = 16L * 1024 * 1024;
+  private static final com.sun.management.ThreadMXBean THREADS =
+          (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+  @BeforeClass
+  public static void silenceLogs() {
+    // the frame reader logs every frame
+    LogManager.getLogManager().reset();
+  }
+
+  private static void assertWithinBudget(int chunkSize) throws IOException {
+    try (var pipeline = new ChunkPipeline(CODEX_SIZE)) {
+      pipeline.transfer(chunkSize); // warmup
+      var threadId = Thread.currentThread().threadId();
+      var allocatedBefore = THREADS.getThreadAllocatedBytes(threadId);
+      var chunks = pipeline.transfer(chunkSize);
+      var bytesPerChunk = (THREADS.getThreadAllocatedBytes(threadId) - allocatedBefore) / chunks;
+      assertTrue(STR."\{bytesPerChunk} bytes allocated per chunk of \{chunkSize} bytes",
+              bytesPerChunk <= ChunkPipeline.allocationBudget(chunkSize));
+    }
+  }
+
+  @Test
+  public void smallChunksWithinAllocationBudget() throws IOException {
+    assertWithinBudget(4 * 1024);
+  }
+
+  @Test
+  public void mediumChunksWithinAllocationBudget() throws IOException {
+    assertWithinBudget(128 * 1024);
+  }
+
+  @Test
+  public void largeChunksWithinAllocationBudget() throws IOException {
+    assertWithinBudget(1024 * 1024);
+  }
+}
@@ -0,0 +1,64 @@
+package fr.uge.chadow.core;
+
+import fr.uge.chadow.bench.SampleFrames;
+import fr.uge.chadow.core.protocol.Frame;
+import fr.uge.chadow.core.protocol.Opcode;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class FrameLogTest {
+  private static byte[] encode(Frame frame) {
+    var bb = frame.toByteBuffer().flip();
+    return Arrays.copyOf(bb.array(), bb.limit());
+  }
+
+  @Test
+  public void everyOpcodeAndClose() throws IOException {
+    var path = Files.createTempFile("frames", ".log");
+    try {
+      try (var writer = FrameLog.Writer.open(path)) {
+        var first = writer.newSession();
+        var second = writer.newSession();
+        for (var opcode : Opcode.values()) {
+          writer.received(opcode.ordinal() % 2 == 0 ? first : second, SampleFrames.sample(opcode));
+        }
+        writer.closed(first);
+      }
+      var entries = new ArrayList<FrameLog.Entry>();
+      try (var reader = FrameLog.Reader.open(path)) {
+        for (var entry = reader.next(); entry.isPresent(); entry = reader.next()) {
+          entries.add(entry.orElseThrow());
+        }
+      }
+      assertEquals(Opcode.values().length + 1, entries.size());
+      var micros = 0L;
+      for (var opcode : Opcode.values()) {
+        var received = (FrameLog.Received) entries.get(opcode.ordinal());
+        assertEquals(opcode.ordinal() % 2, received.session());
+        assertArrayEquals(opcode.name(), encode(SampleFrames.sample(opcode)), encode(received.frame()));
+        assertTrue(received.micros() >= micros);
+        micros = received.micros();
+      }
+      assertEquals(0, ((FrameLog.Closed) entries.getLast()).session());
+    } finally {
+      Files.delete(path);
+    }
+  }
+
+  @Test
+  public void notAFrameLog() throws IOException {
+    var path = Files.createTempFile("frames", ".log");
+    try {
+      Files.write(path, new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9});
+      assertThrows(IOException.class, () -> FrameLog.Reader.open(path));
+    } finally {
+      Files.delete(path);
+    }
+  }
+}
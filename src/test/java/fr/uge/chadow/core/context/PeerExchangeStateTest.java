@@ -0,0 +1,81 @@
+package fr.uge.chadow.core.context;
+
+import fr.uge.chadow.core.protocol.client.PeerExchange;
+import fr.uge.chadow.core.protocol.field.SocketField;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static fr.uge.chadow.core.context.PeerExchangeState.INTERVAL_MILLIS;
+import static fr.uge.chadow.core.context.PeerExchangeState.MAX_SHARERS;
+import static org.junit.Assert.*;
+
+public class PeerExchangeStateTest {
+  private static final long START = 1_000_000;
+  private static final InetSocketAddress PEER = address(1);
+
+  private static InetSocketAddress address(int i) {
+    return new InetSocketAddress("10.0.0." + i, 7000 + i);
+  }
+
+  private static SocketField socket(InetSocketAddress address) {
+    return new SocketField(address.getAddress().getAddress(), address.getPort());
+  }
+
+  private static PeerExchange frame(InetSocketAddress... addresses) {
+    return new PeerExchange(List.of(addresses).stream().map(PeerExchangeStateTest::socket).toArray(SocketField[]::new));
+  }
+
+  private static List<InetSocketAddress> addresses(PeerExchange peerExchange) {
+    return List.of(peerExchange.sharers()).stream().map(socket -> {
+      try {
+        return new InetSocketAddress(InetAddress.getByAddress(socket.ip()), socket.port());
+      } catch (UnknownHostException e) {
+        throw new AssertionError(e);
+      }
+    }).toList();
+  }
+
+  @Test
+  public void repeatedPeerReceivedIsDropped() {
+    var state = new PeerExchangeState();
+    assertEquals(List.of(address(2), address(3)), state.accept(frame(address(2), address(2), address(3)), START));
+    assertEquals(List.of(address(4)), state.accept(frame(address(3), address(4), address(2)), START + INTERVAL_MILLIS));
+  }
+
+  @Test
+  public void peerSentIsNeitherSentNorReceivedAgain() {
+    var state = new PeerExchangeState();
+    var sent = state.nextFrame(List.of(PEER, address(2), address(3)), PEER, START).orElseThrow();
+    assertEquals(List.of(address(2), address(3)), addresses(sent));
+    var next = state.nextFrame(List.of(address(2), address(3), address(4)), PEER, START + INTERVAL_MILLIS).orElseThrow();
+    assertEquals(List.of(address(4)), addresses(next));
+    assertTrue(state.nextFrame(List.of(address(2), address(4)), PEER, START + 2 * INTERVAL_MILLIS).isEmpty());
+    assertEquals(List.of(), state.accept(frame(address(2), address(3)), START));
+  }
+
+  @Test
+  public void exchangeRefusedInsideTheInterval() {
+    var state = new PeerExchangeState();
+    assertTrue(state.nextFrame(List.of(address(2)), PEER, START).isPresent());
+    assertTrue(state.nextFrame(List.of(address(3)), PEER, START + INTERVAL_MILLIS - 1).isEmpty());
+    assertTrue(state.nextFrame(List.of(address(3)), PEER, START + INTERVAL_MILLIS).isPresent());
+
+    assertEquals(List.of(address(4)), state.accept(frame(address(4)), START));
+    assertEquals(List.of(), state.accept(frame(address(5)), START + INTERVAL_MILLIS - 1));
+    // refused frames are not remembered
+    assertEquals(List.of(address(5)), state.accept(frame(address(5)), START + INTERVAL_MILLIS));
+  }
+
+  @Test
+  public void exchangeLimitedToMaxSharers() {
+    var state = new PeerExchangeState();
+    var many = IntStream.range(2, 2 + 2 * MAX_SHARERS).mapToObj(PeerExchangeStateTest::address).toArray(InetSocketAddress[]::new);
+    assertEquals(MAX_SHARERS, state.nextFrame(List.of(many), PEER, START).orElseThrow().sharers().length);
+    assertEquals(MAX_SHARERS, new PeerExchangeState().accept(frame(many), START).size());
+  }
+}
@@ -0,0 +1,99 @@
+package fr.uge.chadow.core.protocol;
+
+import fr.uge.chadow.core.protocol.field.Codex;
+import fr.uge.chadow.core.reader.DecodingBudget;
+import fr.uge.chadow.core.reader.FrameReader;
+import fr.uge.chadow.core.reader.Reader;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class CodexSegmentTest {
+  private static Codex codexOf(int numberOfFiles) {
+    var files = new Codex.FileInfo[numberOfFiles];
+    for (int i = 0; i < numberOfFiles; i++) {
+      files[i] = new Codex.FileInfo("id" + i, "file" + i, i, "/dir" + i % 10);
+    }
+    return new Codex("codexId", "name", files);
+  }
+
+  @Test
+  public void splitAndAssemble() {
+    var codex = codexOf(CodexSegment.FILES_PER_SEGMENT * 3 + 7);
+    assertTrue(CodexSegment.isSegmented(codex));
+    var segments = CodexSegment.split(codex);
+    assertEquals(4, segments.length);
+    var frameReader = new FrameReader();
+    CodexAssembler assembler = null;
+    // segments in reverse order
+    for (int i = segments.length - 1; i >= 0; i--) {
+      assertEquals(Reader.ProcessStatus.DONE, frameReader.process(segments[i].toByteBuffer()));
+      var segment = (CodexSegment) frameReader.get();
+      frameReader.reset();
+      if (assembler == null) {
+        assembler = new CodexAssembler(segment);
+      }
+      assertFalse(assembler.isComplete());
+      assembler.add(segment);
+    }
+    assertTrue(assembler.isComplete());
+    assertEquals(codex.id(), assembler.codex().id());
+    assertEquals(codex.name(), assembler.codex().name());
+    assertEquals(Arrays.asList(codex.files()), Arrays.asList(assembler.codex().files()));
+  }
+
+  @Test
+  public void emptyCodex() {
+    var segments = CodexSegment.split(codexOf(0));
+    assertEquals(1, segments.length);
+    var assembler = new CodexAssembler(segments[0]);
+    assembler.add(segments[0]);
+    assertTrue(assembler.isComplete());
+    assertEquals(0, assembler.codex().files().length);
+  }
+
+  @Test
+  public void wrongRawLength() {
+    var segment = CodexSegment.split(codexOf(10))[0];
+    var corrupted = new CodexSegment(segment.codexId(), segment.name(), segment.numberOfFiles(), segment.firstFile(),
+            segment.rawLength() + 1, segment.payload());
+    assertThrows(IllegalArgumentException.class, () -> new CodexAssembler(corrupted).add(corrupted));
+  }
+
+  @Test
+  public void invalidNumberOfFiles() {
+    var segment = CodexSegment.split(codexOf(10))[0];
+    var forged = new CodexSegment(segment.codexId(), segment.name(), -1, 0, segment.rawLength(), segment.payload());
+    assertThrows(IllegalArgumentException.class, () -> new CodexAssembler(forged));
+  }
+
+  @Test
+  public void largeCodexFitsTheDefaultBudget() {
+    var files = new Codex.FileInfo[200_000];
+    for (int i = 0; i < files.length; i++) {
+      files[i] = new Codex.FileInfo("%040x".formatted(i), STR."file-\{i}.dat", i, STR."dir\{i % 100}/sub");
+    }
+    var codex = new Codex("codexId", "name", files);
+    var assembler = new CodexAssembler(CodexSegment.split(codex)[0]);
+    for (var segment : CodexSegment.split(codex)) {
+      assembler.add(segment);
+    }
+    assertTrue(assembler.isComplete());
+    assertTrue(assembler.receivedBytes() < DecodingBudget.DEFAULT_CONNECTION_BYTES);
+    assertArrayEquals(files, assembler.codex().files());
+  }
+
+  @Test
+  public void segmentOutOfTheCodex() {
+    var segment = CodexSegment.split(codexOf(10))[0];
+    // announces more files than it carries
+    var truncated = new CodexSegment(segment.codexId(), segment.name(), 1_000_000, 0,
+            segment.rawLength(), segment.payload());
+    assertThrows(IllegalArgumentException.class, () -> new CodexAssembler(truncated).add(truncated));
+    // not at a segment boundary
+    var shifted = new CodexSegment(segment.codexId(), segment.name(), 20, 3, segment.rawLength(), segment.payload());
+    assertThrows(IllegalArgumentException.class, () -> new CodexAssembler(shifted).add(shifted));
+  }
+}
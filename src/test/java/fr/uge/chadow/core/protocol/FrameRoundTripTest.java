@@ -0,0 +1,47 @@
+package fr.uge.chadow.core.protocol;
+
+import fr.uge.chadow.bench.SampleFrames;
+import fr.uge.chadow.core.reader.FrameReader;
+import fr.uge.chadow.core.reader.Reader;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class FrameRoundTripTest {
+  private static byte[] encode(Frame frame) {
+    var bb = frame.toByteBuffer().flip();
+    return Arrays.copyOf(bb.array(), bb.limit());
+  }
+
+  @Test
+  public void everyOpcode() {
+    for (var opcode : Opcode.values()) {
+      var bytes = encode(SampleFrames.sample(opcode));
+      var reader = new FrameReader();
+      assertEquals(opcode.name(), Reader.ProcessStatus.DONE, reader.read(ByteBuffer.wrap(bytes)));
+      assertArrayEquals(opcode.name(), bytes, encode(reader.get()));
+    }
+  }
+
+  @Test
+  public void everyOpcodeFragmented() {
+    for (var opcode : Opcode.values()) {
+      var bytes = encode(SampleFrames.sample(opcode));
+      var reader = new FrameReader();
+      var bb = ByteBuffer.allocate(7);
+      var status = Reader.ProcessStatus.REFILL;
+      for (int i = 0; i < bytes.length; ) {
+        var length = Math.min(bb.remaining(), bytes.length - i);
+        bb.put(bytes, i, length);
+        i += length;
+        status = reader.process(bb);
+      }
+      assertEquals(opcode.name(), Reader.ProcessStatus.DONE, status);
+      assertArrayEquals(opcode.name(), bytes, encode(reader.get()));
+    }
+  }
+}
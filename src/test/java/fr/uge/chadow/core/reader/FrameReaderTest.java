@@ -0,0 +1,105 @@
+package fr.uge.chadow.core.reader;
+
+import fr.uge.chadow.Main;
+import fr.uge.chadow.core.protocol.Opcode;
+import fr.uge.chadow.core.protocol.YellMessage;
+import fr.uge.chadow.core.protocol.client.HereChunk;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+public class FrameReaderTest {
+  @Test
+  public void simple() {
+    var reader = new FrameReader();
+    var bb = new YellMessage("login", "hello", 42L).toByteBuffer();
+    assertEquals(Reader.ProcessStatus.DONE, reader.process(bb));
+    assertEquals(new YellMessage("login", "hello", 42L), reader.get());
+  }
+
+  @Test
+  public void hugeLengthRejectedBeforeContent() {
+    var reader = new FrameReader();
+    var bb = ByteBuffer.allocate(64)
+            .put(Opcode.toByte(HereChunk.class))
+            .putLong(0L)
+            .putInt(Integer.MAX_VALUE);
+    assertEquals(Reader.ProcessStatus.ERROR, reader.process(bb));
+  }
+
+  @Test
+  public void opcodeBudget() {
+    var budget = DecodingBudget.DEFAULT.with(Opcode.HERECHUNK, 1024);
+    var reader = new FrameReader(budget);
+    assertEquals(Reader.ProcessStatus.DONE, reader.process(new HereChunk(0L, new byte[512]).toByteBuffer()));
+    reader.reset();
+    assertEquals(Reader.ProcessStatus.ERROR, reader.process(new HereChunk(0L, new byte[2048]).toByteBuffer()));
+  }
+
+  @Test
+  public void controlFramesHaveSmallBudget() {
+    var reader = new FrameReader(DecodingBudget.of(1024));
+    var bb = ByteBuffer.allocate(64)
+            .put(Opcode.toByte(YellMessage.class))
+            .putInt(1000);
+    assertEquals(Reader.ProcessStatus.REFILL, reader.process(bb));
+    assertEquals(1024, DecodingBudget.of(1024).limit(Opcode.YELL));
+    assertEquals(DecodingBudget.DEFAULT_FRAME_BYTES, DecodingBudget.DEFAULT.limit(Opcode.YELL));
+  }
+
+  @Test
+  public void retainedStateShrinksTheBudget() {
+    var reader = new FrameReader(DecodingBudget.of(4096));
+    assertTrue(reader.retain(3072));
+    assertFalse(reader.retain(2048));
+    assertEquals(Reader.ProcessStatus.ERROR, reader.process(new HereChunk(0L, new byte[2048]).toByteBuffer()));
+    reader = new FrameReader(DecodingBudget.of(4096));
+    assertTrue(reader.retain(3072));
+    reader.release(3072);
+    assertEquals(0, reader.retained());
+    assertEquals(Reader.ProcessStatus.DONE, reader.process(new HereChunk(0L, new byte[2048]).toByteBuffer()));
+  }
+
+  @Test
+  public void budgetFromSettings() throws IOException {
+    var budget = DecodingBudget.of(Main.serverSettings().parse("--decodingBudget:1024--opcodeBudgets:hidden/16,YELL/2048"));
+    assertEquals(1024 * 1024, budget.connectionBytes());
+    assertEquals(16 * 1024, budget.limit(Opcode.HIDDEN));
+    assertEquals(1024 * 1024, budget.limit(Opcode.YELL)); // bounded by the connection
+    assertEquals(1024 * 1024, budget.limit(Opcode.HERECHUNK));
+    assertEquals(DecodingBudget.DEFAULT.limit(Opcode.SEARCH),
+            DecodingBudget.of(Main.serverSettings().parse("")).limit(Opcode.SEARCH));
+    assertThrows(IllegalArgumentException.class,
+            () -> DecodingBudget.of(Main.serverSettings().parse("--opcodeBudgets:NOT_AN_OPCODE/1")));
+  }
+
+  @Test
+  public void largePayloadInPieces() {
+    var payload = new byte[100_000];
+    for (int i = 0; i < payload.length; i++) {
+      payload[i] = (byte) i;
+    }
+    var frame = new HereChunk(42L, payload).toByteBuffer().flip();
+    var reader = new FrameReader();
+    var bb = ByteBuffer.allocate(1000);
+    Reader.ProcessStatus status = Reader.ProcessStatus.REFILL;
+    while (frame.hasRemaining()) {
+      var oldLimit = frame.limit();
+      frame.limit(Math.min(oldLimit, frame.position() + bb.remaining()));
+      bb.put(frame);
+      frame.limit(oldLimit);
+      status = reader.process(bb);
+    }
+    assertEquals(Reader.ProcessStatus.DONE, status);
+    var chunk = (HereChunk) reader.get();
+    assertEquals(42L, chunk.offset());
+    assertArrayEquals(payload, chunk.payload());
+  }
+}
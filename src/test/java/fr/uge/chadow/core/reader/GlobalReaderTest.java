@@ -196,4 +196,26 @@ public class GlobalReaderTest {
       assertEquals(request.sockets()[i].port(), reader.get().sockets()[i].port());
     }
   }
-}
\ No newline at end of file
+
+  @Test
+  public void proposeOneByteAtATime() {
+    var files = new Codex.FileInfo[]{new Codex.FileInfo("id1", "filename1", 42, "relativePath"),
+            new Codex.FileInfo("id2", "filename2", 4242424242L, "")};
+    var propose = new Propose(new Codex("id", "name", files));
+    var reader = new GlobalReader<>(Propose.class);
+    var bb = propose.toByteBuffer();
+    bb.flip();
+    bb.get(); // Skip opcode
+    var oneByte = ByteBuffer.allocate(1);
+    while (bb.hasRemaining()) {
+      oneByte.put(bb.get());
+      var status = reader.process(oneByte);
+      assertEquals(bb.hasRemaining() ? Reader.ProcessStatus.REFILL : Reader.ProcessStatus.DONE, status);
+    }
+    var codex = reader.get().codex();
+    assertEquals("id", codex.id());
+    assertEquals(2, codex.files().length);
+    assertEquals(files[1].length(), codex.files()[1].length());
+    assertEquals(files[1].relativePath(), codex.files()[1].relativePath());
+  }
+}
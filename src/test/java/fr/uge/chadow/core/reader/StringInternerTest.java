@@ -0,0 +1,66 @@
+package fr.uge.chadow.core.reader;
+
+import fr.uge.chadow.core.protocol.client.Request;
+import org.junit.After;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.*;
+
+public class StringInternerTest {
+  @After
+  public void disable() {
+    StringInterner.configure(0);
+  }
+
+  private static String readString(String s) {
+    var bytes = s.getBytes(UTF_8);
+    var bb = ByteBuffer.allocate(Integer.BYTES + bytes.length).putInt(bytes.length).put(bytes);
+    var reader = new StringReader();
+    assertEquals(Reader.ProcessStatus.DONE, reader.process(bb));
+    return reader.get();
+  }
+
+  @Test
+  public void disabledByDefault() {
+    var first = readString("login");
+    var second = readString("login");
+    assertEquals(first, second);
+    assertNotSame(first, second);
+    assertEquals(0, StringInterner.stats().hits());
+  }
+
+  @Test
+  public void sameInstance() {
+    StringInterner.configure(16);
+    var first = readString("login");
+    var second = readString("login");
+    assertSame(first, second);
+    assertEquals(new StringInterner.Stats(16, 1, 1), StringInterner.stats());
+  }
+
+  @Test
+  public void frames() {
+    StringInterner.configure(16);
+    var reader = new GlobalReader<>(Request.class);
+    var bb = new Request("codexId").toByteBuffer().flip();
+    bb.get(); // Skip opcode
+    var payload = new byte[bb.remaining()];
+    bb.get(payload);
+    assertEquals(Reader.ProcessStatus.DONE, reader.read(ByteBuffer.wrap(payload)));
+    var first = reader.get().codexId();
+    reader.reset();
+    assertEquals(Reader.ProcessStatus.DONE, reader.read(ByteBuffer.wrap(payload)));
+    assertSame(first, reader.get().codexId());
+  }
+
+  @Test
+  public void longStringsAreNotCached() {
+    StringInterner.configure(16);
+    var message = "x".repeat(StringInterner.MAX_LENGTH + 1);
+    assertNotSame(readString(message), readString(message));
+    assertEquals(0, StringInterner.stats().misses());
+  }
+}
@@ -0,0 +1,76 @@
+package fr.uge.chadow.server;
+
+import fr.uge.chadow.core.protocol.client.Propose;
+import fr.uge.chadow.core.protocol.client.Register;
+import fr.uge.chadow.core.protocol.client.Search;
+import fr.uge.chadow.core.protocol.field.Codex;
+import fr.uge.chadow.core.protocol.field.SocketField;
+import fr.uge.chadow.core.protocol.server.OK;
+import fr.uge.chadow.core.protocol.server.SearchResponse;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static fr.uge.chadow.server.TestServers.*;
+import static org.junit.Assert.*;
+
+public class ClusterSearchTest {
+  private static final int CODEXES = 12;
+
+  /**
+   * @return the ids of the results, skipping the other frames (presence digests...)
+   */
+  private static List<String> search(Socket socket, int results, int offset) throws IOException {
+    send(socket, new Search("book", 0, 0, results, offset));
+    for (; ; ) {
+      var frame = receive(socket);
+      assertNotNull(frame);
+      if (frame instanceof SearchResponse response) {
+        return Arrays.stream(response.results()).map(SearchResponse.Result::codexId).toList();
+      }
+    }
+  }
+
+  @Test
+  public void pagesOfACluster() throws IOException, InterruptedException {
+    var ports = new int[]{freePort(), freePort()};
+    var cluster = STR."--cluster:localhost/\{ports[0]},localhost/\{ports[1]}--presenceInterval:100";
+    for (var node = 0; node < ports.length; node++) {
+      startServer(ports[node], STR."\{cluster}--node:\{node}");
+    }
+    // the links between the nodes are opened on the first tick
+    Thread.sleep(500);
+    var ids = IntStream.range(0, CODEXES)
+            .mapToObj(i -> "%02x".formatted(i) + "0".repeat(Codex.ID_LENGTH - 2))
+            .toList();
+    var ring = new HashRing(2);
+    assertTrue(ids.stream().anyMatch(id -> ring.owner(id) == 0) && ids.stream().anyMatch(id -> ring.owner(id) == 1));
+    try (var socket = connect(ports[0])) {
+      send(socket, new Register("alice", 7777, new SocketField(new byte[]{127, 0, 0, 1}, 7777)));
+      assertTrue(receive(socket) instanceof OK);
+      for (var id : ids) {
+        send(socket, new Propose(new Codex(id, STR."book \{id}", new Codex.FileInfo[0])));
+      }
+      Thread.sleep(300);
+      var all = search(socket, CODEXES, 0);
+      assertEquals(CODEXES, all.size());
+
+      // the next pages are resumed after the last merged result
+      var paged = new ArrayList<String>();
+      for (var offset = 0; offset < CODEXES; offset += 5) {
+        paged.addAll(search(socket, 5, offset));
+      }
+      assertEquals(all, paged);
+      assertEquals(List.of(), search(socket, 5, CODEXES));
+
+      // a page that doesn't follow the previous one is cut from the merged results
+      assertEquals(all.subList(3, 7), search(socket, 4, 3));
+      assertEquals(all.subList(7, 11), search(socket, 4, 7));
+    }
+  }
+}
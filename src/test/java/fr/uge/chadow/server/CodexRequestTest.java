@@ -0,0 +1,121 @@
+package fr.uge.chadow.server;
+
+import fr.uge.chadow.core.protocol.Frame;
+import fr.uge.chadow.core.protocol.client.Propose;
+import fr.uge.chadow.core.protocol.client.Register;
+import fr.uge.chadow.core.protocol.client.Request;
+import fr.uge.chadow.core.protocol.field.Codex;
+import fr.uge.chadow.core.protocol.field.SocketField;
+import fr.uge.chadow.core.protocol.server.CodexCandidates;
+import fr.uge.chadow.core.protocol.server.OK;
+import fr.uge.chadow.core.protocol.server.RequestResponse;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.util.Set;
+
+import static fr.uge.chadow.server.TestServers.*;
+import static org.junit.Assert.*;
+
+public class CodexRequestTest {
+  private static final String FIRST_ID = "ab" + "1".repeat(38);
+  private static final String SECOND_ID = "ab" + "2".repeat(38);
+
+  /**
+   * Register a client proposing two codexes whose ids share the prefix "ab"
+   */
+  private static Socket proposingClient(int port) throws IOException {
+    var socket = connect(port);
+    send(socket, new Register("alice", 7777, new SocketField(new byte[]{127, 0, 0, 1}, 7777)));
+    assertTrue(receive(socket) instanceof OK);
+    send(socket, new Propose(new Codex(FIRST_ID, "first", new Codex.FileInfo[0])));
+    send(socket, new Propose(new Codex(SECOND_ID, "second", new Codex.FileInfo[0])));
+    return socket;
+  }
+
+  /**
+   * @return the answer to the request, skipping the other frames (presence digests...)
+   */
+  private static Frame request(Socket socket, String codexId) throws IOException {
+    send(socket, new Request(codexId));
+    for (; ; ) {
+      var frame = receive(socket);
+      if (frame == null || frame instanceof RequestResponse || frame instanceof CodexCandidates) {
+        return frame;
+      }
+    }
+  }
+
+  @Test
+  public void ambiguousPrefixAnsweredWithItsCandidates() throws IOException, InterruptedException {
+    var port = freePort();
+    startServer(port, "");
+    try (var socket = proposingClient(port)) {
+      var answer = request(socket, "ab");
+      assertTrue(answer instanceof CodexCandidates);
+      var candidates = (CodexCandidates) answer;
+      assertEquals("ab", candidates.codexId());
+      assertEquals(Set.of(FIRST_ID, SECOND_ID), Set.of(candidates.codexIds()));
+    }
+  }
+
+  @Test
+  public void unknownPrefixAnsweredWithoutCandidates() throws IOException, InterruptedException {
+    var port = freePort();
+    startServer(port, "");
+    try (var socket = proposingClient(port)) {
+      var answer = request(socket, "cd");
+      assertTrue(answer instanceof CodexCandidates candidates && candidates.codexIds().length == 0);
+    }
+  }
+
+  /**
+   * @return an id starting with "ab" owned by the node in a cluster of two nodes
+   */
+  private static String idOwnedBy(int node) {
+    var ring = new HashRing(2);
+    for (var i = 0; ; i++) {
+      var id = "ab%02x".formatted(i) + "0".repeat(Codex.ID_LENGTH - 4);
+      if (ring.owner(id) == node) {
+        return id;
+      }
+    }
+  }
+
+  @Test
+  public void prefixResolvedOnEveryNodeOfACluster() throws IOException, InterruptedException {
+    var ports = new int[]{freePort(), freePort()};
+    var cluster = STR."--cluster:localhost/\{ports[0]},localhost/\{ports[1]}--presenceInterval:100";
+    for (var node = 0; node < ports.length; node++) {
+      startServer(ports[node], STR."\{cluster}--node:\{node}");
+    }
+    // the links between the nodes are opened on the first tick
+    Thread.sleep(500);
+    var local = idOwnedBy(0);
+    var remote = idOwnedBy(1);
+    try (var socket = connect(ports[0])) {
+      send(socket, new Register("alice", 7777, new SocketField(new byte[]{127, 0, 0, 1}, 7777)));
+      assertTrue(receive(socket) instanceof OK);
+      send(socket, new Propose(new Codex(local, "local", new Codex.FileInfo[0])));
+      send(socket, new Propose(new Codex(remote, "remote", new Codex.FileInfo[0])));
+      var answer = request(socket, "ab");
+      assertTrue(answer instanceof CodexCandidates);
+      assertEquals(Set.of(local, remote), Set.of(((CodexCandidates) answer).codexIds()));
+      answer = request(socket, remote.substring(0, 4));
+      assertTrue(answer instanceof RequestResponse response && response.codex().id().equals(remote));
+      answer = request(socket, "cd");
+      assertTrue(answer instanceof CodexCandidates candidates && candidates.codexIds().length == 0);
+    }
+  }
+
+  @Test
+  public void uniquePrefixAnsweredWithTheCodex() throws IOException, InterruptedException {
+    var port = freePort();
+    startServer(port, "");
+    try (var socket = proposingClient(port)) {
+      var answer = request(socket, "ab2");
+      assertTrue(answer instanceof RequestResponse response && response.codex().id().equals(SECOND_ID));
+    }
+  }
+}
@@ -0,0 +1,152 @@
+package fr.uge.chadow.server;
+
+import fr.uge.chadow.core.protocol.client.Search;
+import fr.uge.chadow.core.protocol.field.Codex;
+import fr.uge.chadow.core.protocol.server.SearchResponse;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class CodexSearchIndexTest {
+  private static final String[] WORDS = {"linux", "debian", "music", "album", "live", "java", "rust", "photos"};
+
+  private static Server.CodexRecord codexRecord(String id, String name, long date) {
+    return new Server.CodexRecord(new Codex(id, name, new Codex.FileInfo[0]), date, new HashSet<>(Set.of("user")));
+  }
+
+  private static List<String> ids(SearchResponse response) {
+    return Arrays.stream(response.results()).map(SearchResponse.Result::codexId).toList();
+  }
+
+  /**
+   * The linear scan the index replaces
+   */
+  private static List<String> scan(List<Server.CodexRecord> codexRecords, Search search) {
+    return codexRecords.stream()
+            .filter(c -> c.codex().name().contains(search.codexName()))
+            .filter(c -> search.options() == 0
+                    || (search.options() & Search.Option.AT_DATE.value()) != 0 && c.registrationDate() == search.date()
+                    || (search.options() & Search.Option.BEFORE_DATE.value()) != 0 && c.registrationDate() < search.date()
+                    || (search.options() & Search.Option.AFTER_DATE.value()) != 0 && c.registrationDate() > search.date())
+            .sorted((c1, c2) -> c1.registrationDate() != c2.registrationDate()
+                    ? Long.compare(c1.registrationDate(), c2.registrationDate())
+                    : c1.codex().id().compareTo(c2.codex().id()))
+            .skip(search.offset())
+            .limit(search.results())
+            .map(c -> c.codex().id())
+            .toList();
+  }
+
+  private static void assertSameResultsAsAScan(int cacheCapacity) {
+    var random = new Random(0);
+    var index = new CodexSearchIndex(cacheCapacity);
+    var codexRecords = new ArrayList<Server.CodexRecord>();
+    for (var i = 0; i < 2_000; i++) {
+      var name = STR."\{WORDS[random.nextInt(WORDS.length)]}-\{WORDS[random.nextInt(WORDS.length)]}";
+      var codexRecord = codexRecord(STR."id\{i}", name, random.nextInt(50));
+      codexRecords.add(codexRecord);
+      index.add(codexRecord);
+    }
+    for (var round = 0; round < 3; round++) {
+      for (var name : List.of("", "a", "li", "live", "linux-java", "ux-ja", "nothing")) {
+        for (var options = 0; options < 8; options++) {
+          for (var offset : List.of(0, 3, 250, 1_000)) {
+            var search = new Search(name, options, 25, 20, offset);
+            assertEquals(STR."\{name} \{options} \{offset}", scan(codexRecords, search),
+                    ids(index.search(search, null).response()));
+          }
+        }
+      }
+      // the cached queries change with the codexes
+      var removed = codexRecords.remove(random.nextInt(codexRecords.size()));
+      index.remove(removed);
+      var added = codexRecord(STR."new\{round}", "live-linux", random.nextInt(50));
+      codexRecords.add(added);
+      index.add(added);
+    }
+  }
+
+  @Test
+  public void sameResultsAsAScan() {
+    assertSameResultsAsAScan(0);
+  }
+
+  @Test
+  public void sameResultsAsAScanWithCache() {
+    assertSameResultsAsAScan(1_000);
+  }
+
+  @Test
+  public void cacheHitsAndInvalidations() {
+    var index = new CodexSearchIndex(16);
+    var album = codexRecord("1", "album", 1);
+    index.add(album);
+    index.add(codexRecord("2", "photos", 2));
+    var search = new Search("album", 0, 0, 10, 0);
+    index.search(search, null);
+    index.search(search, null);
+    assertEquals(1, index.cacheStats().hits());
+    assertEquals(1, index.cacheStats().misses());
+    // the number of sharers is not cached
+    album.sharers().add("other");
+    assertEquals(2, index.search(search, null).response().results()[0].sharers());
+    assertEquals(2, index.cacheStats().hits());
+    // a codex the query doesn't match keeps it
+    index.add(codexRecord("3", "music", 3));
+    assertEquals(0, index.cacheStats().invalidations());
+    index.add(codexRecord("4", "live album", 4));
+    assertEquals(1, index.cacheStats().invalidations());
+    assertEquals(List.of("1", "4"), ids(index.search(search, null).response()));
+    assertEquals(2, index.cacheStats().misses());
+  }
+
+  @Test
+  public void resumeAfterCursor() {
+    var index = new CodexSearchIndex(0);
+    for (var i = 0; i < 10; i++) {
+      index.add(codexRecord(STR."id\{i}", "album", i));
+    }
+    var first = index.search(new Search("album", 0, 0, 4, 0), null);
+    assertEquals(List.of("id0", "id1", "id2", "id3"), ids(first.response()));
+    // a codex registered before the cursor doesn't shift the next page
+    index.add(codexRecord("early", "album", -1));
+    var second = index.search(new Search("album", 0, 0, 4, 4), first.next());
+    assertEquals(List.of("id4", "id5", "id6", "id7"), ids(second.response()));
+    var third = index.search(new Search("album", 0, 0, 4, 8), second.next());
+    assertEquals(List.of("id8", "id9"), ids(third.response()));
+    // another page skips the results from the start
+    var other = index.search(new Search("album", 0, 0, 2, 3), first.next());
+    assertEquals(List.of("id2", "id3"), ids(other.response()));
+  }
+
+  @Test
+  public void lastDate() {
+    var index = new CodexSearchIndex(0);
+    index.add(codexRecord("1", "music", 1));
+    index.add(codexRecord("2", "music", Long.MAX_VALUE));
+    var atDate = new Search("music", Search.Option.AT_DATE.value(), Long.MAX_VALUE, 10, 0);
+    assertEquals(List.of("2"), ids(index.search(atDate, null).response()));
+    var afterDate = new Search("music", Search.Option.AFTER_DATE.value(), Long.MAX_VALUE, 10, 0);
+    assertEquals(List.of(), ids(index.search(afterDate, null).response()));
+  }
+
+  @Test
+  public void removed() {
+    var index = new CodexSearchIndex(0);
+    var music = codexRecord("1", "music", 1);
+    index.add(music);
+    index.add(codexRecord("2", "musical", 2));
+    index.remove(music);
+    assertEquals(List.of("2"), ids(index.search(new Search("music", 0, 0, 10, 0), null).response()));
+    assertEquals(1, index.size());
+    index.add(music);
+    assertEquals(List.of("1", "2"), ids(index.search(new Search("music", 0, 0, 10, 0), null).response()));
+  }
+}
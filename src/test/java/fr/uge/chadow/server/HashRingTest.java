@@ -0,0 +1,57 @@
+package fr.uge.chadow.server;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class HashRingTest {
+  private static String[] keys(int count) {
+    var random = new Random(0);
+    var keys = new String[count];
+    for (var i = 0; i < count; i++) {
+      keys[i] = Long.toHexString(random.nextLong()) + Long.toHexString(random.nextLong());
+    }
+    return keys;
+  }
+
+  @Test
+  public void singleNodeOwnsEverything() {
+    var ring = new HashRing(1);
+    for (var key : keys(100)) {
+      assertEquals(0, ring.owner(key));
+    }
+  }
+
+  @Test
+  public void keysAreSpreadEvenly() {
+    var nodes = 5;
+    var ring = new HashRing(nodes);
+    var keys = keys(50_000);
+    var owned = new int[nodes];
+    for (var key : keys) {
+      owned[ring.owner(key)]++;
+    }
+    for (var count : owned) {
+      assertTrue(STR."\{count} keys on a node", Math.abs(count - keys.length / nodes) < keys.length / nodes / 4);
+    }
+  }
+
+  @Test
+  public void addingANodeOnlyMovesKeysToIt() {
+    var before = new HashRing(4);
+    var after = new HashRing(5);
+    var keys = keys(50_000);
+    var moved = 0;
+    for (var key : keys) {
+      var owner = after.owner(key);
+      if (owner != before.owner(key)) {
+        assertEquals(4, owner);
+        moved++;
+      }
+    }
+    // about a fifth of the keys
+    assertTrue(STR."\{moved} keys moved", moved > keys.length / 8 && moved < keys.length / 3);
+  }
+}
@@ -0,0 +1,87 @@
+package fr.uge.chadow.server;
+
+import fr.uge.chadow.core.protocol.client.Propose;
+import fr.uge.chadow.core.protocol.client.Register;
+import fr.uge.chadow.core.protocol.field.Codex;
+import fr.uge.chadow.core.protocol.field.SocketField;
+import fr.uge.chadow.core.protocol.node.FrameBytes;
+import fr.uge.chadow.core.protocol.node.Forward;
+import fr.uge.chadow.core.protocol.node.Forwarded;
+import fr.uge.chadow.core.protocol.node.NodeHello;
+import fr.uge.chadow.core.protocol.server.OK;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+
+import static fr.uge.chadow.server.TestServers.*;
+import static org.junit.Assert.*;
+
+public class NodeLinkTest {
+  private static final Codex CODEX = new Codex("a".repeat(40), "codex", new Codex.FileInfo[0]);
+
+  private static void assertClosedByServer(Socket socket) throws IOException {
+    try {
+      assertNull(receive(socket));
+    } catch (SocketTimeoutException e) {
+      fail("The server did not close the connection");
+    }
+  }
+
+  private static void assertServing(int port, String login) throws IOException {
+    try (var client = connect(port)) {
+      send(client, new Register(login, 7777, new SocketField(new byte[]{127, 0, 0, 1}, 7777)));
+      assertTrue(receive(client) instanceof OK);
+    }
+  }
+
+  private static Forward forwardedPropose(long requestId, SocketField sharer) {
+    return new Forward(requestId, "mallory", sharer, FrameBytes.encode(new Propose(CODEX)));
+  }
+
+  @Test
+  public void nodeHelloRejectedOutsideACluster() throws IOException, InterruptedException {
+    var port = freePort();
+    startServer(port, "");
+    try (var socket = connect(port)) {
+      send(socket, new NodeHello(3));
+      assertClosedByServer(socket);
+    }
+    try (var socket = connect(port)) {
+      send(socket, forwardedPropose(0, new SocketField(new byte[]{127, 0, 0, 1}, 7777)));
+      assertClosedByServer(socket);
+    }
+    assertServing(port, "alice");
+  }
+
+  @Test
+  public void nodeHelloRejectedForAnotherIndex() throws IOException, InterruptedException {
+    var port = freePort();
+    var cluster = STR."--cluster:localhost/\{port},localhost/\{freePort()}--node:0--presenceInterval:60000";
+    startServer(port, cluster);
+    for (var node : new int[]{0, 2, -1}) {
+      try (var socket = connect(port)) {
+        send(socket, new NodeHello(node));
+        assertClosedByServer(socket);
+      }
+    }
+    assertServing(port, "alice");
+  }
+
+  @Test
+  public void invalidForwardedFrameIgnored() throws IOException, InterruptedException {
+    var port = freePort();
+    var cluster = STR."--cluster:localhost/\{port},localhost/\{freePort()}--node:0--presenceInterval:60000";
+    startServer(port, cluster);
+    try (var socket = connect(port)) {
+      send(socket, new NodeHello(1));
+      // an address of 3 bytes can't be the address of a sharer
+      send(socket, forwardedPropose(1, new SocketField(new byte[]{127, 0, 0}, 7777)));
+      var answer = receive(socket);
+      assertTrue(answer instanceof Forwarded forwarded && forwarded.requestId() == 1);
+      assertTrue(FrameBytes.decode(((Forwarded) answer).frames()).isEmpty());
+    }
+    assertServing(port, "alice");
+  }
+}
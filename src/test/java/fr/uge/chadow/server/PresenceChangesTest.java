@@ -0,0 +1,71 @@
+package fr.uge.chadow.server;
+
+import fr.uge.chadow.core.protocol.server.PresenceDigest;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class PresenceChangesTest {
+  private static List<String> joined(PresenceDigest digest) {
+    return Arrays.asList(digest.joined());
+  }
+
+  private static List<String> left(PresenceDigest digest) {
+    return Arrays.asList(digest.left());
+  }
+
+  @Test
+  public void noChange() {
+    assertTrue(new PresenceChanges().drain(10).isEmpty());
+  }
+
+  @Test
+  public void joinedAndLeftBetweenTwoDigests() {
+    var changes = new PresenceChanges();
+    changes.joined("a");
+    changes.joined("b");
+    changes.left("a");
+    changes.left("c");
+    var digest = changes.drain(10).orElseThrow();
+    assertEquals(List.of("b"), joined(digest));
+    // a client may have seen "a" in a directory sync
+    assertEquals(List.of("a", "c"), left(digest));
+    assertTrue(changes.drain(10).isEmpty());
+  }
+
+  @Test
+  public void leftAndJoinedAgain() {
+    var changes = new PresenceChanges();
+    changes.left("a");
+    changes.joined("a");
+    var digest = changes.drain(10).orElseThrow();
+    assertEquals(List.of("a"), joined(digest));
+    assertEquals(List.of("a"), left(digest));
+    // and left again before the digest
+    changes.left("a");
+    changes.joined("a");
+    changes.left("a");
+    digest = changes.drain(10).orElseThrow();
+    assertEquals(List.of(), joined(digest));
+    assertEquals(List.of("a"), left(digest));
+  }
+
+  @Test
+  public void burstSpreadOverDigests() {
+    var changes = new PresenceChanges();
+    for (var i = 0; i < 5; i++) {
+      changes.joined(STR."user\{i}");
+    }
+    changes.left("old");
+    var first = changes.drain(4).orElseThrow();
+    assertEquals(List.of("old"), left(first));
+    assertEquals(List.of("user0", "user1", "user2"), joined(first));
+    assertEquals(2, changes.size());
+    var second = changes.drain(4).orElseThrow();
+    assertEquals(List.of("user3", "user4"), joined(second));
+    assertEquals(0, changes.size());
+  }
+}
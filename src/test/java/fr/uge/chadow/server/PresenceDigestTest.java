@@ -0,0 +1,58 @@
+package fr.uge.chadow.server;
+
+import fr.uge.chadow.core.protocol.Frame;
+import fr.uge.chadow.core.protocol.client.DirectorySync;
+import fr.uge.chadow.core.protocol.client.Register;
+import fr.uge.chadow.core.protocol.field.SocketField;
+import fr.uge.chadow.core.protocol.server.DirectoryPage;
+import fr.uge.chadow.core.protocol.server.OK;
+import fr.uge.chadow.core.protocol.server.PresenceDigest;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.util.List;
+
+import static fr.uge.chadow.server.TestServers.*;
+import static org.junit.Assert.*;
+
+public class PresenceDigestTest {
+  private static Socket register(int port, String login) throws IOException {
+    var socket = connect(port);
+    send(socket, new Register(login, 7777, new SocketField(new byte[]{127, 0, 0, 1}, 7777)));
+    assertTrue(receive(socket) instanceof OK);
+    return socket;
+  }
+
+  /**
+   * @return the next frame of the type, skipping the others
+   */
+  private static <T extends Frame> T next(Socket socket, Class<T> type) throws IOException {
+    for (; ; ) {
+      var frame = receive(socket);
+      assertNotNull(frame);
+      if (type.isInstance(frame)) {
+        return type.cast(frame);
+      }
+    }
+  }
+
+  @Test
+  public void departureSentForALoginSeenInADirectorySync() throws IOException, InterruptedException {
+    var port = freePort();
+    // the user joins and leaves between two digests
+    startServer(port, "--presenceInterval:2000");
+    var ghost = register(port, "ghost");
+    try (var client = register(port, "client")) {
+      send(client, new DirectorySync(0, -1, ""));
+      assertTrue(List.of(next(client, DirectoryPage.class).usernames()).contains("ghost"));
+      ghost.close();
+      for (; ; ) {
+        var digest = next(client, PresenceDigest.class);
+        if (List.of(digest.left()).contains("ghost")) {
+          return;
+        }
+      }
+    }
+  }
+}
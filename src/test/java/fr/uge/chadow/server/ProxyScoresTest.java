@@ -0,0 +1,75 @@
+package fr.uge.chadow.server;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class ProxyScoresTest {
+  @Test
+  public void selectsTheLowestScore() {
+    var proxyScores = new ProxyScores();
+    proxyScores.add("a");
+    proxyScores.add("b");
+    proxyScores.add("c");
+    proxyScores.increment("a");
+    proxyScores.increment("b");
+    assertEquals("c", proxyScores.selectBest(_ -> false));
+    assertEquals("a", proxyScores.selectBest(Set.of("b", "c")::contains));
+    proxyScores.decrement("b");
+    assertEquals("b", proxyScores.selectBest(Set.of("c")::contains));
+    assertThrows(NoSuchElementException.class, () -> proxyScores.selectBest(Set.of("a", "b", "c")::contains));
+  }
+
+  @Test
+  public void sameScoreAsAScan() {
+    var random = new Random(0);
+    var proxyScores = new ProxyScores();
+    var scores = new HashMap<String, Integer>();
+    for (var i = 0; i < 20_000; i++) {
+      var username = STR."u\{random.nextInt(500)}";
+      switch (random.nextInt(5)) {
+        case 0 -> {
+          proxyScores.add(username);
+          scores.putIfAbsent(username, 0);
+        }
+        case 1 -> {
+          proxyScores.remove(username);
+          scores.remove(username);
+        }
+        case 2 -> {
+          proxyScores.increment(username);
+          scores.computeIfPresent(username, (_, score) -> score + 1);
+        }
+        case 3 -> {
+          proxyScores.decrement(username);
+          scores.computeIfPresent(username, (_, score) -> score - 1);
+        }
+        default -> {
+          var excluded = new HashSet<String>();
+          for (var j = 0; j < 20; j++) {
+            excluded.add(STR."u\{random.nextInt(500)}");
+          }
+          var best = scores.entrySet().stream()
+                  .filter(e -> !excluded.contains(e.getKey()))
+                  .mapToInt(e -> e.getValue())
+                  .min();
+          if (best.isEmpty()) {
+            assertThrows(NoSuchElementException.class, () -> proxyScores.selectBest(excluded::contains));
+          } else {
+            var selected = proxyScores.selectBest(excluded::contains);
+            assertFalse(excluded.contains(selected));
+            assertEquals(best.getAsInt(), (int) scores.get(selected));
+          }
+        }
+      }
+      assertEquals(scores.size(), proxyScores.size());
+    }
+    scores.forEach((username, score) -> assertEquals((int) score, proxyScores.score(username)));
+  }
+}
@@ -0,0 +1,82 @@
+package fr.uge.chadow.server;
+
+import fr.uge.chadow.Main;
+import fr.uge.chadow.core.protocol.Frame;
+import fr.uge.chadow.core.reader.FrameReader;
+import fr.uge.chadow.core.reader.Reader;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertNotEquals;
+
+/**
+ * Servers started on loopback and raw connections to them, shared by the server tests
+ */
+final class TestServers {
+  private static final int TIMEOUT_MILLIS = 5_000;
+
+  private TestServers() {
+  }
+
+  static int freePort() throws IOException {
+    try (var socket = new ServerSocket(0)) {
+      return socket.getLocalPort();
+    }
+  }
+
+  static void startServer(int port, String settings) throws IOException, InterruptedException {
+    var downloadPath = Files.createTempDirectory("chadow-server-test");
+    var server = new Server(Main.serverSettings().parse(STR."--port:\{port}--downloadPath:\{downloadPath}\{settings}"));
+    Thread.ofPlatform().daemon().start(() -> {
+      try {
+        server.start();
+      } catch (IOException e) {
+        throw new AssertionError(e);
+      }
+    });
+    for (; ; ) {
+      try (var _ = new Socket("localhost", port)) {
+        return;
+      } catch (IOException e) {
+        Thread.sleep(10);
+      }
+    }
+  }
+
+  static Socket connect(int port) throws IOException {
+    var socket = new Socket();
+    socket.connect(new InetSocketAddress("localhost", port));
+    socket.setSoTimeout(TIMEOUT_MILLIS);
+    return socket;
+  }
+
+  static void send(Socket socket, Frame frame) throws IOException {
+    socket.getOutputStream().write(frame.toByteBuffer().array());
+  }
+
+  /**
+   * @return the next frame, or null if the server closed the connection
+   */
+  static Frame receive(Socket socket) throws IOException {
+    var frameReader = new FrameReader();
+    var bb = ByteBuffer.allocate(1);
+    for (; ; ) {
+      var read = socket.getInputStream().read();
+      if (read == -1) {
+        return null;
+      }
+      bb.put((byte) read).flip();
+      var status = frameReader.read(bb);
+      bb.clear();
+      if (status == Reader.ProcessStatus.DONE) {
+        return frameReader.get();
+      }
+      assertNotEquals(Reader.ProcessStatus.ERROR, status);
+    }
+  }
+}
@@ -0,0 +1,94 @@
+package fr.uge.chadow.server;
+
+import fr.uge.chadow.core.protocol.server.DirectoryDelta;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class UserDirectoryTest {
+  private static final long EPOCH = 42;
+
+  @Test
+  public void pagesInUsernameOrder() {
+    var directory = new UserDirectory(EPOCH, 100);
+    for (var i = 0; i < 10; i++) {
+      directory.joined(STR."user\{i}");
+    }
+    var usernames = new ArrayList<String>();
+    var after = "";
+    var pages = 0;
+    do {
+      var page = directory.page(after, 3);
+      assertEquals(EPOCH, page.epoch());
+      assertEquals(10, page.version());
+      usernames.addAll(Arrays.asList(page.usernames()));
+      after = page.next();
+      pages++;
+    } while (!after.isEmpty());
+    assertEquals(4, pages);
+    assertEquals(List.of("user0", "user1", "user2", "user3", "user4", "user5", "user6", "user7", "user8", "user9"), usernames);
+  }
+
+  @Test
+  public void deltaHasTheLastPresenceOfEachUser() {
+    var directory = new UserDirectory(EPOCH, 100);
+    directory.joined("a");
+    directory.joined("b");
+    var since = directory.version();
+    directory.left("a");
+    directory.joined("c");
+    directory.left("c");
+    directory.joined("a");
+    directory.left("b");
+    directory.joined("d");
+    var delta = directory.delta(since, 10);
+    assertEquals(directory.version(), delta.version());
+    assertEquals(List.of("a", "d"), Arrays.asList(delta.joined()));
+    assertEquals(List.of("c", "b"), Arrays.asList(delta.left()));
+    assertEquals(1, delta.complete());
+    // nothing changed since
+    var empty = directory.delta(directory.version(), 10);
+    assertEquals(0, empty.joined().length + empty.left().length);
+  }
+
+  @Test
+  public void incompleteDelta() {
+    var directory = new UserDirectory(EPOCH, 100);
+    for (var i = 0; i < 5; i++) {
+      directory.joined(STR."user\{i}");
+    }
+    var first = directory.delta(0, 3);
+    assertEquals(0, first.complete());
+    assertEquals(3, first.version());
+    assertEquals(List.of("user0", "user1", "user2"), Arrays.asList(first.joined()));
+    DirectoryDelta second = directory.delta(first.version(), 3);
+    assertEquals(1, second.complete());
+    assertEquals(List.of("user3", "user4"), Arrays.asList(second.joined()));
+  }
+
+  @Test
+  public void forgottenChanges() {
+    var directory = new UserDirectory(EPOCH, 3);
+    directory.joined("a");
+    var since = directory.version();
+    directory.joined("b");
+    assertTrue(directory.knowsChangesSince(EPOCH, since));
+    assertFalse(directory.knowsChangesSince(EPOCH + 1, since));
+    assertFalse(directory.knowsChangesSince(EPOCH, -1));
+    directory.joined("c");
+    directory.joined("d");
+    directory.joined("e");
+    // the changes of a and b are forgotten, the changes after b are known
+    assertFalse(directory.knowsChangesSince(EPOCH, since));
+    assertTrue(directory.knowsChangesSince(EPOCH, since + 1));
+    // a user changing again only keeps its last change
+    directory.left("c");
+    directory.joined("c");
+    assertTrue(directory.knowsChangesSince(EPOCH, since + 1));
+    assertEquals(5, directory.size());
+  }
+}